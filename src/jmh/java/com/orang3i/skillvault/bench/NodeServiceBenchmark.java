@@ -0,0 +1,156 @@
+package com.orang3i.skillvault.bench;
+
+import com.orang3i.skillvault.SkillVaultApplication;
+import com.orang3i.skillvault.dto.NodeCreateRequest;
+import com.orang3i.skillvault.entity.Node;
+import com.orang3i.skillvault.dto.NodeImportResponse;
+import com.orang3i.skillvault.dto.NodeResponse;
+import com.orang3i.skillvault.dto.NodeTreeResponse;
+import com.orang3i.skillvault.service.NodeFields;
+import com.orang3i.skillvault.service.NodeImportService;
+import com.orang3i.skillvault.service.NodeService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * NodeService against a generated tree in an in-memory H2 database, one Spring context per trial.
+ * Run with {@code mvn -Pjmh test}; pass JMH options through -Djmh.args, e.g.
+ * {@code -Djmh.args="-p shape=DEEP -p size=100000 -p treeCache=false NodeServiceBenchmark.move"}.
+ * Results go to target/jmh-result.json.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class NodeServiceBenchmark {
+
+    @Param({"WIDE", "DEEP", "BALANCED"})
+    public TreeGenerator.Shape shape;
+
+    @Param({"1000", "10000", "100000", "1000000"})
+    public int size;
+
+    @Param({"true", "false"})
+    public boolean treeCache;
+
+    @Param({"10"})
+    public int fanout;
+
+    @Param({"100"})
+    public int deepChain;
+
+    private static final NodeFields SPARSE = NodeFields.parse("id,title,category,mastery,parentId");
+
+    private ConfigurableApplicationContext ctx;
+    private NodeService nodeService;
+
+    private UUID subtreeRoot; // first child of the root
+    private UUID busiestParent; // node with the most children
+    private UUID movingLeaf; // last node, moved back and forth between two parents
+    private UUID[] moveTargets;
+    private int moveCount;
+    private UUID scratch; // parent of the nodes created by the create and delete benchmarks
+
+    @Setup(Level.Trial)
+    public void startContext() {
+        ctx = new SpringApplicationBuilder(SkillVaultApplication.class)
+                .web(WebApplicationType.NONE)
+                .properties(
+                        "spring.datasource.url=jdbc:h2:mem:jmh;DB_CLOSE_DELAY=-1",
+                        "spring.jpa.hibernate.ddl-auto=create-drop",
+                        "skillvault.tree-cache.enabled=" + treeCache,
+                        "logging.level.root=WARN")
+                .run();
+        nodeService = ctx.getBean(NodeService.class);
+
+        NodeImportResponse imported = ctx.getBean(NodeImportService.class)
+                .importNodes(Node.DEFAULT_VAULT, TreeGenerator.generate(shape, size, fanout, deepChain));
+        subtreeRoot = imported.ids.get("n1");
+        busiestParent = imported.ids.get(shape == TreeGenerator.Shape.BALANCED ? "n1" : "n0");
+        movingLeaf = imported.ids.get("n" + (size - 1));
+        // the leaf has no descendants, so any other node is a valid target
+        moveTargets = new UUID[]{imported.ids.get("n0"), imported.ids.get("n" + (size / 2))};
+        newScratch();
+    }
+
+    @TearDown(Level.Trial)
+    public void stopContext() {
+        ctx.close();
+    }
+
+    // keep the tree at its generated size between iterations
+    @TearDown(Level.Iteration)
+    public void dropCreatedNodes() {
+        nodeService.delete(Node.DEFAULT_VAULT, scratch);
+        newScratch();
+    }
+
+    private void newScratch() {
+        NodeCreateRequest req = new NodeCreateRequest();
+        req.title = "Scratch";
+        scratch = nodeService.create(Node.DEFAULT_VAULT, req).id;
+    }
+
+    /** A fresh node for every delete invocation, so only the delete benchmark pays for the setup. */
+    @State(Scope.Thread)
+    public static class Doomed {
+        UUID id;
+
+        @Setup(Level.Invocation)
+        public void create(NodeServiceBenchmark bench) {
+            NodeCreateRequest req = new NodeCreateRequest();
+            req.title = "Doomed";
+            req.parentId = bench.scratch;
+            id = bench.nodeService.create(Node.DEFAULT_VAULT, req).id;
+        }
+    }
+
+    @Benchmark
+    public List<NodeTreeResponse> getFullTree() {
+        return nodeService.getFullTree(Node.DEFAULT_VAULT, null);
+    }
+
+    @Benchmark
+    public NodeTreeResponse getSubtree() {
+        return nodeService.getSubtree(Node.DEFAULT_VAULT, subtreeRoot, null);
+    }
+
+    @Benchmark
+    public List<NodeResponse> listChildren() {
+        return nodeService.listChildren(Node.DEFAULT_VAULT, busiestParent, NodeFields.ALL);
+    }
+
+    // the sparse set a tree view asks for: no description, no aggregate lookup
+    @Benchmark
+    public List<NodeResponse> listChildrenSparse() {
+        return nodeService.listChildren(Node.DEFAULT_VAULT, busiestParent, SPARSE);
+    }
+
+    // includes the cycle check against the new parent
+    @Benchmark
+    public NodeResponse move() {
+        return nodeService.move(Node.DEFAULT_VAULT, movingLeaf, moveTargets[moveCount++ & 1]);
+    }
+
+    @Benchmark
+    public NodeResponse create() {
+        NodeCreateRequest req = new NodeCreateRequest();
+        req.title = "Created";
+        req.mastery = 42;
+        req.parentId = scratch;
+        return nodeService.create(Node.DEFAULT_VAULT, req);
+    }
+
+    @Benchmark
+    public int delete(Doomed doomed) {
+        return nodeService.delete(Node.DEFAULT_VAULT, doomed.id);
+    }
+}
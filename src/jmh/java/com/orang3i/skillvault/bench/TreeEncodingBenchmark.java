@@ -0,0 +1,121 @@
+package com.orang3i.skillvault.bench;
+
+import com.orang3i.skillvault.dto.NodeAggregates;
+import com.orang3i.skillvault.dto.NodeImportItem;
+import com.orang3i.skillvault.dto.NodeTreeResponse;
+import org.openjdk.jmh.annotations.*;
+import tools.jackson.databind.ObjectMapper;
+import tools.jackson.databind.json.JsonMapper;
+import tools.jackson.dataformat.cbor.CBORMapper;
+import tools.jackson.dataformat.smile.SmileMapper;
+import tools.jackson.dataformat.smile.SmileWriteFeature;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Encode time and payload size of a /tree response (List&lt;NodeTreeResponse&gt;) per wire format,
+ * with and without gzip. The tree is built in memory from TreeGenerator, no database involved.
+ * The encoded size of one response is printed once per trial ("payload: ... bytes").
+ * Run with {@code mvn -Pjmh test -Djmh.args="-p size=10000,100000 TreeEncodingBenchmark"}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TreeEncodingBenchmark {
+
+    public enum Format {JSON, CBOR, SMILE}
+
+    @Param({"WIDE", "DEEP", "BALANCED"})
+    public TreeGenerator.Shape shape;
+
+    @Param({"1000", "10000", "100000"})
+    public int size;
+
+    @Param({"JSON", "CBOR", "SMILE"})
+    public Format format;
+
+    @Param({"false", "true"})
+    public boolean gzip;
+
+    private ObjectMapper mapper;
+    private List<NodeTreeResponse> tree;
+    private int expectedBytes;
+
+    @Setup(Level.Trial)
+    public void buildTree() throws IOException {
+        // configured the way BinaryFormatConfig configures the response converters
+        mapper = switch (format) {
+            case JSON -> JsonMapper.builder().build();
+            case CBOR -> CBORMapper.builder().build();
+            case SMILE -> SmileMapper.builder().enable(SmileWriteFeature.CHECK_SHARED_STRING_VALUES).build();
+        };
+        tree = List.of(toTree(TreeGenerator.generate(shape, size, 10, 100).nodes));
+        expectedBytes = write().size();
+        System.out.printf("payload: %s%s %s/%d: %d bytes%n", format, gzip ? "+gzip" : "", shape, size, expectedBytes);
+    }
+
+    @Benchmark
+    public int encode() throws IOException {
+        return write().size();
+    }
+
+    private ByteArrayOutputStream write() throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(Math.max(expectedBytes, 1024));
+        try (OutputStream out = gzip ? new GZIPOutputStream(buffer, 8192) : buffer) {
+            mapper.writeValue(out, tree);
+        }
+        return buffer;
+    }
+
+    // items come parent before child (parentIndex < index), so one backwards pass fills the rollups
+    private NodeTreeResponse toTree(List<NodeImportItem> items) {
+        int n = items.size();
+        int[] parent = new int[n];
+        long[] descendants = new long[n];
+        long[] sum = new long[n];
+        int[] min = new int[n];
+        int[] max = new int[n];
+        List<List<NodeTreeResponse>> children = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            int mastery = items.get(i).mastery;
+            parent[i] = (i == 0) ? -1 : TreeGenerator.parentIndex(shape, i, 10, 100);
+            sum[i] = mastery;
+            min[i] = mastery;
+            max[i] = mastery;
+            children.add(new ArrayList<>());
+        }
+        for (int i = n - 1; i > 0; i--) {
+            int p = parent[i];
+            descendants[p] += descendants[i] + 1;
+            sum[p] += sum[i];
+            min[p] = Math.min(min[p], min[i]);
+            max[p] = Math.max(max[p], max[i]);
+        }
+        NodeTreeResponse[] nodes = new NodeTreeResponse[n];
+        for (int i = n - 1; i >= 0; i--) {
+            NodeImportItem item = items.get(i);
+            NodeTreeResponse node = new NodeTreeResponse();
+            node.id = UUID.randomUUID();
+            node.title = item.title;
+            node.category = item.category;
+            node.mastery = item.mastery;
+            node.aggregates = NodeAggregates.of(descendants[i], sum[i], min[i], max[i]);
+            node.children = children.get(i).reversed();
+            nodes[i] = node;
+            if (i > 0) {
+                children.get(parent[i]).add(node);
+            }
+        }
+        return nodes[0];
+    }
+}
@@ -0,0 +1,49 @@
+package com.orang3i.skillvault.bench;
+
+import com.orang3i.skillvault.dto.NodeImportItem;
+import com.orang3i.skillvault.dto.NodeImportRequest;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Builds import requests for synthetic trees. Every item gets ref "n&lt;index&gt;"; n0 is the root.
+ * <ul>
+ *     <li>WIDE: every node hangs directly under the root.</li>
+ *     <li>DEEP: chains of {@code deepChain} nodes under the root. A single chain of a million nodes
+ *     would need ~5·10^11 closure rows, so depth is bounded and the chains repeat.</li>
+ *     <li>BALANCED: complete tree with {@code fanout} children per node.</li>
+ * </ul>
+ */
+public final class TreeGenerator {
+
+    public enum Shape {WIDE, DEEP, BALANCED}
+
+    private TreeGenerator() {
+    }
+
+    public static int parentIndex(Shape shape, int i, int fanout, int deepChain) {
+        return switch (shape) {
+            case WIDE -> 0;
+            case DEEP -> ((i - 1) % deepChain == 0) ? 0 : i - 1;
+            case BALANCED -> (i - 1) / fanout;
+        };
+    }
+
+    public static NodeImportRequest generate(Shape shape, int size, int fanout, int deepChain) {
+        List<NodeImportItem> items = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            NodeImportItem item = new NodeImportItem();
+            item.ref = "n" + i;
+            item.parentRef = (i == 0) ? null : "n" + parentIndex(shape, i, fanout, deepChain);
+            item.title = "Skill " + i;
+            item.description = "Generated node " + i + " of a " + shape.name().toLowerCase() + " tree";
+            item.category = "cat-" + (i % 20);
+            item.mastery = (int) ((i * 2654435761L) % 101);
+            items.add(item);
+        }
+        NodeImportRequest req = new NodeImportRequest();
+        req.nodes = items;
+        return req;
+    }
+}
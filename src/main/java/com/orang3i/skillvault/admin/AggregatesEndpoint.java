@@ -0,0 +1,27 @@
+package com.orang3i.skillvault.admin;
+
+import com.orang3i.skillvault.dto.AggregateRebuildReport;
+import com.orang3i.skillvault.service.NodeAggregateService;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.stereotype.Component;
+
+/**
+ * POST /actuator/aggregates: recomputes every rollup of every vault from scratch and reports how many
+ * stored rows had drifted. It spans all vaults, so it lives on the management port, not under /api.
+ */
+@Component
+@Endpoint(id = "aggregates")
+public class AggregatesEndpoint {
+
+    private final NodeAggregateService aggregateService;
+
+    public AggregatesEndpoint(NodeAggregateService aggregateService) {
+        this.aggregateService = aggregateService;
+    }
+
+    @WriteOperation
+    public AggregateRebuildReport rebuild() {
+        return aggregateService.rebuild();
+    }
+}
@@ -0,0 +1,26 @@
+package com.orang3i.skillvault.admin;
+
+import com.orang3i.skillvault.cache.TreeSnapshotCache;
+import com.orang3i.skillvault.dto.TreeCacheStats;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+/**
+ * GET /actuator/treecache: hit, miss and rebuild counters of the tree snapshot cache, summed over all vaults.
+ */
+@Component
+@Endpoint(id = "treecache")
+public class TreeCacheEndpoint {
+
+    private final TreeSnapshotCache treeCache;
+
+    public TreeCacheEndpoint(TreeSnapshotCache treeCache) {
+        this.treeCache = treeCache;
+    }
+
+    @ReadOperation
+    public TreeCacheStats stats() {
+        return treeCache.stats();
+    }
+}
@@ -0,0 +1,277 @@
+package com.orang3i.skillvault.cache;
+
+import java.util.AbstractCollection;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.UUID;
+
+/**
+ * Immutable map from node id to value, stored as a 32-way trie on the id bits (low half first).
+ * A change copies only the branches on the path to its entry, about log32(n) small arrays, and shares
+ * everything else with the map it started from.
+ * <p>
+ * Changes go through an Editor, which may change the branches it copied itself in place: a batch of
+ * changes to neighbouring ids copies each shared branch once rather than once per change.
+ */
+final class IdTrie<V> {
+
+    private static final int BITS = 5;
+    private static final int MASK = (1 << BITS) - 1;
+    private static final int LEVELS = (128 + BITS - 1) / BITS; // 26 chunks cover all bits of an id
+
+    private static final IdTrie<?> EMPTY = new IdTrie<>(new Branch(null, 0, new Object[0]), 0);
+
+    // slots hold Branches and Leaves; the bitmap has one bit per used 5-bit chunk value, slots in chunk order
+    private static final class Branch {
+        final Object owner; // the Editor that created it and may still change it
+        int bitmap;
+        Object[] slots;
+
+        Branch(Object owner, int bitmap, Object[] slots) {
+            this.owner = owner;
+            this.bitmap = bitmap;
+            this.slots = slots;
+        }
+    }
+
+    private record Leaf(UUID id, Object value) {
+    }
+
+    private final Branch root;
+    private final int size;
+
+    private IdTrie(Branch root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    @SuppressWarnings("unchecked")
+    static <V> IdTrie<V> empty() {
+        return (IdTrie<V>) EMPTY;
+    }
+
+    int size() {
+        return size;
+    }
+
+    @SuppressWarnings("unchecked")
+    V get(UUID id) {
+        return (V) lookup(root, id);
+    }
+
+    /** The values in id-bit order; a view, so it costs nothing until iterated. */
+    Collection<V> values() {
+        return new AbstractCollection<>() {
+            @Override
+            public Iterator<V> iterator() {
+                return new Values<>(root);
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    Editor<V> edit() {
+        return new Editor<>(this);
+    }
+
+    /** Changes to one map, published by done(); changes made after that copy again and leave it untouched. */
+    static final class Editor<V> {
+        private Object owner = new Object();
+        private Branch root;
+        private int size;
+
+        private Editor(IdTrie<V> from) {
+            this.root = from.root;
+            this.size = from.size;
+        }
+
+        @SuppressWarnings("unchecked")
+        V get(UUID id) {
+            return (V) lookup(root, id);
+        }
+
+        void put(UUID id, V value) {
+            root = put(root, 0, new Leaf(id, value));
+        }
+
+        void remove(UUID id) {
+            Branch r = remove(root, 0, id);
+            root = (r == null) ? new Branch(owner, 0, new Object[0]) : r;
+        }
+
+        IdTrie<V> done() {
+            owner = new Object();
+            return new IdTrie<>(root, size);
+        }
+
+        private Branch put(Branch b, int level, Leaf leaf) {
+            int bit = bit(leaf.id(), level);
+            int i = index(b.bitmap, bit);
+            if ((b.bitmap & bit) == 0) {
+                size++;
+                Object[] slots = new Object[b.slots.length + 1];
+                System.arraycopy(b.slots, 0, slots, 0, i);
+                slots[i] = leaf;
+                System.arraycopy(b.slots, i, slots, i + 1, b.slots.length - i);
+                return update(b, b.bitmap | bit, slots);
+            }
+            Object slot = b.slots[i];
+            Object replacement;
+            if (slot instanceof Branch child) {
+                replacement = put(child, level + 1, leaf);
+            } else if (((Leaf) slot).id().equals(leaf.id())) {
+                replacement = leaf;
+            } else {
+                size++;
+                replacement = split((Leaf) slot, leaf, level + 1);
+            }
+            return set(b, i, replacement);
+        }
+
+        // a branch holding two leaves whose ids agree on every chunk above level
+        private Branch split(Leaf a, Leaf b, int level) {
+            int bitA = bit(a.id(), level);
+            int bitB = bit(b.id(), level);
+            if (bitA == bitB) {
+                return new Branch(owner, bitA, new Object[]{split(a, b, level + 1)});
+            }
+            Object[] slots = (Integer.compareUnsigned(bitA, bitB) < 0) ? new Object[]{a, b} : new Object[]{b, a};
+            return new Branch(owner, bitA | bitB, slots);
+        }
+
+        // null once the branch is empty; a branch left with a single leaf is replaced by the leaf
+        private Branch remove(Branch b, int level, UUID id) {
+            int bit = bit(id, level);
+            if ((b.bitmap & bit) == 0) {
+                return b;
+            }
+            int i = index(b.bitmap, bit);
+            Object slot = b.slots[i];
+            if (slot instanceof Branch child) {
+                Branch left = remove(child, level + 1, id);
+                if (left == child) {
+                    return b;
+                }
+                if (left != null) {
+                    return set(b, i, (left.slots.length == 1 && left.slots[0] instanceof Leaf only) ? only : left);
+                }
+            } else if (!((Leaf) slot).id().equals(id)) {
+                return b;
+            } else {
+                size--;
+            }
+            if (b.slots.length == 1) {
+                return null;
+            }
+            Object[] slots = new Object[b.slots.length - 1];
+            System.arraycopy(b.slots, 0, slots, 0, i);
+            System.arraycopy(b.slots, i + 1, slots, i, b.slots.length - i - 1);
+            return update(b, b.bitmap & ~bit, slots);
+        }
+
+        private Branch set(Branch b, int i, Object slot) {
+            if (b.slots[i] == slot) {
+                return b;
+            }
+            if (b.owner == owner) {
+                b.slots[i] = slot;
+                return b;
+            }
+            Object[] slots = b.slots.clone();
+            slots[i] = slot;
+            return new Branch(owner, b.bitmap, slots);
+        }
+
+        private Branch update(Branch b, int bitmap, Object[] slots) {
+            if (b.owner == owner) {
+                b.bitmap = bitmap;
+                b.slots = slots;
+                return b;
+            }
+            return new Branch(owner, bitmap, slots);
+        }
+    }
+
+    private static Object lookup(Branch root, UUID id) {
+        Object n = root;
+        for (int level = 0; n instanceof Branch b; level++) {
+            int bit = bit(id, level);
+            if ((b.bitmap & bit) == 0) {
+                return null;
+            }
+            n = b.slots[index(b.bitmap, bit)];
+        }
+        Leaf leaf = (Leaf) n;
+        return leaf.id().equals(id) ? leaf.value() : null;
+    }
+
+    // depth-first over the branches, one slot array and position per level
+    private static final class Values<V> implements Iterator<V> {
+        private final Object[][] slots = new Object[LEVELS + 1][];
+        private final int[] positions = new int[LEVELS + 1];
+        private int depth;
+        private Leaf next;
+
+        Values(Branch root) {
+            slots[0] = root.slots;
+            advance();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public V next() {
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            V value = (V) next.value();
+            advance();
+            return value;
+        }
+
+        private void advance() {
+            next = null;
+            while (depth >= 0) {
+                if (positions[depth] == slots[depth].length) {
+                    depth--;
+                    continue;
+                }
+                Object slot = slots[depth][positions[depth]++];
+                if (slot instanceof Branch b) {
+                    slots[++depth] = b.slots;
+                    positions[depth] = 0;
+                } else {
+                    next = (Leaf) slot;
+                    return;
+                }
+            }
+        }
+    }
+
+    // two different ids differ in some chunk, so they always part by the last level
+    private static int bit(UUID id, int level) {
+        int shift = level * BITS;
+        long chunk;
+        if (shift == 0) {
+            chunk = id.getLeastSignificantBits();
+        } else if (shift < 64) {
+            chunk = (id.getLeastSignificantBits() >>> shift) | (id.getMostSignificantBits() << (64 - shift));
+        } else {
+            chunk = id.getMostSignificantBits() >>> (shift - 64);
+        }
+        return 1 << (int) (chunk & MASK);
+    }
+
+    private static int index(int bitmap, int bit) {
+        return Integer.bitCount(bitmap & (bit - 1));
+    }
+}
@@ -0,0 +1,355 @@
+package com.orang3i.skillvault.cache;
+
+import com.orang3i.skillvault.dto.NodeResponse;
+import com.orang3i.skillvault.repository.NodeRow;
+import com.orang3i.skillvault.repository.TreeRow;
+
+import java.time.Instant;
+import java.util.*;
+
+/**
+ * Immutable view of the whole tree: id -> compact node record, plus child id arrays.
+ * Changes go through an Edit, which builds a new snapshot and leaves this one untouched, so a reader
+ * holding a reference always sees one consistent tree. The two share every node the edit did not touch
+ * (see IdTrie), so a change costs the nodes it changes, not a copy of the vault.
+ * <p>
+ * Nodes keep their description, since child listings are served from the cache; only the throwaway
+ * snapshots of ofTree() leave it out.
+ * <p>
+ * Versions work like node_stats.subtree_version, but count changes applied to the snapshot rather than
+ * commits: each node carries the version of the last change anywhere in its subtree, and the snapshot
+ * that of the last change overall. The caller hands out the versions and keeps them increasing.
+ */
+public final class TreeSnapshot {
+
+    /** Same order H2 uses for uuid columns (unsigned high bits, then unsigned low bits). */
+    public static final Comparator<UUID> ID_ORDER = (a, b) -> {
+        int c = Long.compareUnsigned(a.getMostSignificantBits(), b.getMostSignificantBits());
+        return (c != 0) ? c : Long.compareUnsigned(a.getLeastSignificantBits(), b.getLeastSignificantBits());
+    };
+
+    /** Siblings in (createdAt, id) order, the same order the database queries return them. */
+    static final Comparator<CachedNode> SIBLING_ORDER = Comparator
+            .comparing(CachedNode::createdAt, Comparator.nullsFirst(Comparator.<Instant>naturalOrder()))
+            .thenComparing(CachedNode::id, ID_ORDER);
+
+    private static final UUID[] NO_CHILDREN = new UUID[0];
+
+    public record CachedNode(UUID id, UUID parentId, String title, String description, String category,
+                             int mastery, Instant createdAt, Instant updatedAt, UUID[] childIds, Rollup rollup,
+                             long version) {
+
+        CachedNode withChildren(UUID[] children) {
+            return new CachedNode(id, parentId, title, description, category, mastery, createdAt, updatedAt, children, rollup, version);
+        }
+
+        CachedNode withParent(UUID newParentId) {
+            return new CachedNode(id, newParentId, title, description, category, mastery, createdAt, updatedAt, childIds, rollup, version);
+        }
+
+        CachedNode withRollup(Rollup r, long v) {
+            return new CachedNode(id, parentId, title, description, category, mastery, createdAt, updatedAt, childIds, r, v);
+        }
+
+        // the stored fields alone, without the derived links, rollup and version
+        private CachedNode fields() {
+            return new CachedNode(id, parentId, title, description, category, mastery, createdAt, updatedAt, null, null, 0);
+        }
+    }
+
+    /** Same figures as node_stats: descendantCount excludes the node, the mastery figures include it. */
+    public record Rollup(long descendantCount, long masterySum, int masteryMin, int masteryMax) {
+    }
+
+    private final IdTrie<CachedNode> nodes;
+    private final UUID[] rootIds;
+    private final long version;
+
+    private TreeSnapshot(IdTrie<CachedNode> nodes, UUID[] rootIds, long version) {
+        this.nodes = nodes;
+        this.rootIds = rootIds;
+        this.version = version;
+    }
+
+    /** Builds a snapshot from every node in the database, all of them at the given version. */
+    public static TreeSnapshot of(List<NodeRow> rows, long version) {
+        List<CachedNode> nodes = new ArrayList<>(rows.size());
+        for (NodeRow n : rows) {
+            nodes.add(new CachedNode(n.id(), n.parentId(), n.title(), n.description(), n.category(),
+                    n.mastery(), n.createdAt(), n.updatedAt(), null, null, 0));
+        }
+        return ofNodes(nodes, version);
+    }
+
+    /**
+     * Builds a snapshot with only the tree fields (no description or updatedAt), enough for the tree writers.
+     * Not for the cache: its nodes lack the fields that child listings return.
+     */
+    public static TreeSnapshot ofTree(List<TreeRow> rows) {
+        return build(treeFields(rows), 0, null);
+    }
+
+    /**
+     * Same, for rows cut off some levels down: the rollups are the given ones (node_stats figures) rather
+     * than sums over the loaded rows, which would miss the nodes below the cut. Nodes without one get none.
+     */
+    public static TreeSnapshot ofTree(List<TreeRow> rows, Map<UUID, Rollup> rollups) {
+        return build(treeFields(rows), 0, rollups);
+    }
+
+    private static List<CachedNode> treeFields(List<TreeRow> rows) {
+        List<CachedNode> nodes = new ArrayList<>(rows.size());
+        for (TreeRow n : rows) {
+            nodes.add(new CachedNode(n.id(), n.parentId(), n.title(), null, n.category(), n.mastery(),
+                    n.createdAt(), null, null, null, 0));
+        }
+        return nodes;
+    }
+
+    /**
+     * Builds a snapshot from node fields alone, keeping every field given, description included; child arrays
+     * and rollups are derived from the parent links, and every node gets the given version.
+     */
+    public static TreeSnapshot ofNodes(Collection<CachedNode> fields, long version) {
+        return build(fields, version, null);
+    }
+
+    // rollups null to sum them up from the nodes
+    private static TreeSnapshot build(Collection<CachedNode> fields, long version, Map<UUID, Rollup> rollups) {
+        Map<UUID, List<CachedNode>> childrenByParent = new HashMap<>();
+        for (CachedNode n : fields) {
+            childrenByParent.computeIfAbsent(n.parentId(), k -> new ArrayList<>()).add(n);
+        }
+
+        IdTrie.Editor<CachedNode> nodes = IdTrie.<CachedNode>empty().edit();
+        for (CachedNode n : fields) {
+            nodes.put(n.id(), new CachedNode(n.id(), n.parentId(), n.title(), n.description(), n.category(),
+                    n.mastery(), n.createdAt(), n.updatedAt(), toArray(childrenByParent.get(n.id())),
+                    (rollups == null) ? null : rollups.get(n.id()), version));
+        }
+        if (rollups != null) {
+            return new TreeSnapshot(nodes.done(), toArray(childrenByParent.get(null)), version);
+        }
+
+        // rollups bottom-up: a pre-order listing visited in reverse has every child before its parent
+        List<UUID> preOrder = new ArrayList<>(fields.size());
+        Deque<UUID> stack = new ArrayDeque<>();
+        for (CachedNode n : fields) {
+            if (n.parentId() == null || nodes.get(n.parentId()) == null) stack.push(n.id());
+        }
+        while (!stack.isEmpty()) {
+            UUID id = stack.pop();
+            preOrder.add(id);
+            for (UUID child : nodes.get(id).childIds()) stack.push(child);
+        }
+        for (int i = preOrder.size() - 1; i >= 0; i--) {
+            CachedNode n = nodes.get(preOrder.get(i));
+            nodes.put(n.id(), n.withRollup(rollup(n, nodes), version));
+        }
+        return new TreeSnapshot(nodes.done(), toArray(childrenByParent.get(null)), version);
+    }
+
+    public CachedNode get(UUID id) {
+        return nodes.get(id);
+    }
+
+    public UUID[] rootIds() {
+        return rootIds;
+    }
+
+    /** Version of the last change applied to this snapshot. */
+    public long version() {
+        return version;
+    }
+
+    public int size() {
+        return nodes.size();
+    }
+
+    public Collection<CachedNode> nodes() {
+        return nodes.values();
+    }
+
+    /**
+     * True if both hold the same nodes with the same fields and links, whatever their versions
+     * (records compare arrays by reference).
+     */
+    public boolean sameContent(TreeSnapshot other) {
+        if (other.size() != size() || !Arrays.equals(rootIds, other.rootIds)) {
+            return false;
+        }
+        for (CachedNode a : nodes.values()) {
+            CachedNode b = other.get(a.id());
+            if (b == null || !Arrays.equals(a.childIds(), b.childIds())
+                    || !a.fields().equals(b.fields()) || !a.rollup().equals(b.rollup())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Starts a set of changes that all get the version and are published together by done(). */
+    public Edit edit(long version) {
+        return new Edit(version);
+    }
+
+    /**
+     * Changes applied to a private edit of the node map, which copies only the trie branches above the
+     * nodes it changes, each once per edit. The snapshot it was started from stays untouched.
+     */
+    public final class Edit {
+        private final IdTrie.Editor<CachedNode> copy = nodes.edit();
+        private UUID[] roots = rootIds;
+        private final long version;
+
+        private Edit(long version) {
+            this.version = version;
+        }
+
+        /** Insert or replace a node's fields; links it under its parent if it is not there yet. */
+        public Edit upsert(NodeResponse n) {
+            CachedNode existing = copy.get(n.id);
+            UUID[] children = (existing == null) ? NO_CHILDREN : existing.childIds();
+            copy.put(n.id, new CachedNode(n.id, n.parentId, n.title, n.description, n.category, n.mastery,
+                    n.createdAt, n.updatedAt, children, null, version));
+            if (existing == null) {
+                roots = link(copy, n.parentId, n.id, roots);
+            }
+            refreshRollups(copy, n.id, version);
+            return this;
+        }
+
+        /** True if ancestor is id itself or one of its ancestors, by the parent links so far. */
+        public boolean isWithin(UUID id, UUID ancestor) {
+            for (UUID cur = id; cur != null; ) {
+                if (cur.equals(ancestor)) {
+                    return true;
+                }
+                CachedNode n = copy.get(cur);
+                cur = (n == null) ? null : n.parentId();
+            }
+            return false;
+        }
+
+        /** Re-links a node (and with it its whole subtree) under a new parent in one step. */
+        public Edit move(UUID id, UUID newParentId) {
+            CachedNode node = copy.get(id);
+            if (node == null) {
+                return this;
+            }
+            roots = unlink(copy, node.parentId(), id, roots);
+            copy.put(id, node.withParent(newParentId));
+            roots = link(copy, newParentId, id, roots);
+            refreshRollups(copy, node.parentId(), version);
+            refreshRollups(copy, newParentId, version);
+            return this;
+        }
+
+        /** Removes a node and all of its descendants. */
+        public Edit remove(UUID id) {
+            CachedNode node = copy.get(id);
+            if (node == null) {
+                return this;
+            }
+            roots = unlink(copy, node.parentId(), id, roots);
+            Deque<UUID> stack = new ArrayDeque<>();
+            stack.push(id);
+            while (!stack.isEmpty()) {
+                UUID next = stack.pop();
+                CachedNode removed = copy.get(next);
+                if (removed != null) {
+                    copy.remove(next);
+                    for (UUID child : removed.childIds()) stack.push(child);
+                }
+            }
+            refreshRollups(copy, node.parentId(), version);
+            return this;
+        }
+
+        public TreeSnapshot done() {
+            return new TreeSnapshot(copy.done(), roots, version);
+        }
+    }
+
+    /** Recomputes the rollup of a node and every ancestor above it, and moves them all to the version. */
+    private static void refreshRollups(IdTrie.Editor<CachedNode> copy, UUID from, long version) {
+        UUID id = from;
+        while (id != null) {
+            CachedNode n = copy.get(id);
+            if (n == null) {
+                return;
+            }
+            copy.put(id, n.withRollup(rollup(n, copy), version));
+            id = n.parentId();
+        }
+    }
+
+    private static Rollup rollup(CachedNode n, IdTrie.Editor<CachedNode> nodes) {
+        long count = 0;
+        long sum = n.mastery();
+        int min = n.mastery();
+        int max = n.mastery();
+        for (UUID childId : n.childIds()) {
+            Rollup c = nodes.get(childId).rollup();
+            count += c.descendantCount() + 1;
+            sum += c.masterySum();
+            min = Math.min(min, c.masteryMin());
+            max = Math.max(max, c.masteryMax());
+        }
+        return new Rollup(count, sum, min, max);
+    }
+
+    // the child must already be in copy, so its sort key can be read
+    private static UUID[] link(IdTrie.Editor<CachedNode> copy, UUID parentId, UUID childId, UUID[] roots) {
+        if (parentId == null) {
+            return insertSorted(copy, roots, childId);
+        }
+        CachedNode parent = copy.get(parentId);
+        if (parent != null) {
+            copy.put(parentId, parent.withChildren(insertSorted(copy, parent.childIds(), childId)));
+        }
+        return roots;
+    }
+
+    private static UUID[] unlink(IdTrie.Editor<CachedNode> copy, UUID parentId, UUID childId, UUID[] roots) {
+        if (parentId == null) {
+            return without(roots, childId);
+        }
+        CachedNode parent = copy.get(parentId);
+        if (parent != null) {
+            copy.put(parentId, parent.withChildren(without(parent.childIds(), childId)));
+        }
+        return roots;
+    }
+
+    private static UUID[] insertSorted(IdTrie.Editor<CachedNode> copy, UUID[] ids, UUID id) {
+        int pos = Arrays.binarySearch(ids, id, Comparator.comparing(copy::get, SIBLING_ORDER));
+        if (pos >= 0) {
+            return ids;
+        }
+        int at = -pos - 1;
+        UUID[] out = new UUID[ids.length + 1];
+        System.arraycopy(ids, 0, out, 0, at);
+        out[at] = id;
+        System.arraycopy(ids, at, out, at + 1, ids.length - at);
+        return out;
+    }
+
+    private static UUID[] without(UUID[] ids, UUID id) {
+        int pos = Arrays.asList(ids).indexOf(id);
+        if (pos < 0) {
+            return ids;
+        }
+        UUID[] out = new UUID[ids.length - 1];
+        System.arraycopy(ids, 0, out, 0, pos);
+        System.arraycopy(ids, pos + 1, out, pos, ids.length - pos - 1);
+        return out;
+    }
+
+    private static UUID[] toArray(List<CachedNode> siblings) {
+        if (siblings == null) {
+            return NO_CHILDREN;
+        }
+        return siblings.stream().sorted(SIBLING_ORDER).map(CachedNode::id).toArray(UUID[]::new);
+    }
+}
@@ -0,0 +1,274 @@
+package com.orang3i.skillvault.cache;
+
+import com.orang3i.skillvault.dto.TreeCacheStats;
+import com.orang3i.skillvault.event.NodeChangedEvent;
+import com.orang3i.skillvault.event.NodesChangedEvent;
+import com.orang3i.skillvault.event.NodesImportedEvent;
+import com.orang3i.skillvault.repository.NodeRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiFunction;
+
+/**
+ * Holds one TreeSnapshot per vault. Readers just dereference the vault's volatile reference and never block.
+ * Committed writes are applied copy-on-write under the vault's writer lock and published with one
+ * reference swap, so a reader sees a move either entirely or not at all. Vaults share nothing: a write
+ * copies only its own vault's snapshot and never waits for a write to another vault.
+ * A vault's snapshot is loaded lazily on its first read after startup (a miss), unless TreeSnapshotStore
+ * preloaded it from the snapshot file.
+ * <p>
+ * Every installed snapshot and every applied change takes the next value of one clock, which is what
+ * version() tags bodies read from the cache with. node_stats versions move at commit, before the change
+ * reaches the snapshot, so they cannot tag a snapshot body.
+ */
+@Component
+public class TreeSnapshotCache {
+
+    private final NodeRepository nodeRepository;
+    private final boolean enabled;
+
+    private final ConcurrentHashMap<String, Slot> slots = new ConcurrentHashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final AtomicLong rebuilds = new AtomicLong();
+    private final AtomicLong lastRebuildMillis = new AtomicLong();
+    private final AtomicLong totalRebuildMillis = new AtomicLong();
+
+    private final AtomicLong clock = new AtomicLong();
+    // the clock restarts with the process; its start time keeps tags from an earlier run from matching
+    private final String epoch = Long.toString(System.currentTimeMillis(), 36);
+
+    // the snapshot of one vault; the slot itself is the writer lock
+    private static final class Slot {
+        final AtomicReference<TreeSnapshot> current = new AtomicReference<>();
+        final Object rebuildLock = new Object();
+        // bumped on every applied write, so a rebuild that raced with a write is not installed
+        long writeEpoch;
+    }
+
+    public TreeSnapshotCache(NodeRepository nodeRepository,
+                             @Value("${skillvault.tree-cache.enabled:true}") boolean enabled) {
+        this.nodeRepository = nodeRepository;
+        this.enabled = enabled;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /** Returns the vault's current snapshot, loading it on a miss. Only call when the cache is enabled. */
+    public TreeSnapshot snapshot(String vault) {
+        Slot slot = slot(vault);
+        TreeSnapshot s = slot.current.get();
+        if (s != null) {
+            hits.increment();
+            return s;
+        }
+        misses.increment();
+        return rebuild(vault, slot);
+    }
+
+    /** The vault's loaded snapshot, or null; unlike snapshot() it never loads and is not counted as a hit or miss. */
+    public TreeSnapshot peek(String vault) {
+        Slot slot = slots.get(vault);
+        return (slot == null) ? null : slot.current.get();
+    }
+
+    /**
+     * ETag version of a body read from the vault's snapshot: of the subtree under id, or of the whole
+     * vault for a null id. Empty if the snapshot has no such node. Loads the snapshot on a miss.
+     */
+    public Optional<String> version(String vault, UUID id) {
+        Slot slot = slot(vault);
+        TreeSnapshot s = slot.current.get();
+        if (s == null) {
+            misses.increment();
+            s = rebuild(vault, slot);
+        }
+        if (id == null) {
+            return Optional.of(epoch + "." + s.version());
+        }
+        TreeSnapshot.CachedNode n = s.get(id);
+        return (n == null) ? Optional.empty() : Optional.of(epoch + "." + n.version());
+    }
+
+    /** Every loaded snapshot by vault. */
+    public Map<String, TreeSnapshot> loaded() {
+        Map<String, TreeSnapshot> out = new HashMap<>();
+        slots.forEach((vault, slot) -> {
+            TreeSnapshot s = slot.current.get();
+            if (s != null) out.put(vault, s);
+        });
+        return out;
+    }
+
+    /** Installs nodes that were loaded from elsewhere (the snapshot file), unless a snapshot is loaded already. */
+    public boolean preload(String vault, Collection<TreeSnapshot.CachedNode> nodes) {
+        Slot slot = slot(vault);
+        synchronized (slot) {
+            if (slot.current.get() != null) {
+                return false;
+            }
+            slot.writeEpoch++;
+            slot.current.set(TreeSnapshot.ofNodes(nodes, clock.incrementAndGet()));
+            return true;
+        }
+    }
+
+    /**
+     * Compares every loaded snapshot with a fresh load of its vault. On a mismatch the fresh one
+     * replaces it, or, if writes were applied in the meantime, the snapshot is dropped and reloads on
+     * the next read. Returns false if any vault mismatched.
+     */
+    public boolean verify() {
+        boolean matched = true;
+        for (Map.Entry<String, Slot> e : slots.entrySet()) {
+            matched &= verify(e.getKey(), e.getValue());
+        }
+        return matched;
+    }
+
+    private boolean verify(String vault, Slot slot) {
+        long epoch;
+        TreeSnapshot loaded;
+        synchronized (slot) {
+            epoch = slot.writeEpoch;
+            loaded = slot.current.get();
+        }
+        if (loaded == null) {
+            return true;
+        }
+        TreeSnapshot fresh = TreeSnapshot.of(nodeRepository.findAllRows(vault, true), clock.incrementAndGet());
+        if (fresh.sameContent(loaded)) {
+            return true;
+        }
+        synchronized (slot) {
+            if (slot.writeEpoch == epoch) {
+                slot.current.set(fresh);
+            } else {
+                slot.writeEpoch++;
+                slot.current.set(null);
+            }
+        }
+        return false;
+    }
+
+    public void invalidate(String vault) {
+        apply(vault, (s, v) -> null);
+    }
+
+    public void invalidate() {
+        slots.keySet().forEach(this::invalidate);
+    }
+
+    @TransactionalEventListener
+    public void onNodeChanged(NodeChangedEvent e) {
+        if (enabled) {
+            apply(e.vaultId(), (s, v) -> applyAll(s.edit(v), List.of(e)));
+        }
+    }
+
+    // a batch is applied to one copy of the vault's snapshot, not one copy per node
+    @TransactionalEventListener
+    public void onNodesChanged(NodesChangedEvent e) {
+        if (enabled) {
+            apply(e.vaultId(), (s, v) -> applyAll(s.edit(v), e.changes()));
+        }
+    }
+
+    private static TreeSnapshot applyAll(TreeSnapshot.Edit edit, List<NodeChangedEvent> changes) {
+        for (NodeChangedEvent e : changes) {
+            switch (e.type()) {
+                case CREATED, UPDATED -> edit.upsert(e.node());
+                case MOVED -> {
+                    // Moves of related nodes commit in order (they lock each other's paths), but their after-commit
+                    // events can still arrive swapped. Applying such a move would loop the snapshot; reload instead.
+                    if (e.node().parentId != null && edit.isWithin(e.node().parentId, e.nodeId())) {
+                        return null;
+                    }
+                    edit.move(e.nodeId(), e.node().parentId).upsert(e.node());
+                }
+                case DELETED -> edit.remove(e.nodeId());
+            }
+        }
+        return edit.done();
+    }
+
+    // bulk writes are cheaper to reload than to apply one copy-on-write step per node
+    @TransactionalEventListener
+    public void onNodesImported(NodesImportedEvent e) {
+        invalidate(e.vaultId());
+    }
+
+    public TreeCacheStats stats() {
+        TreeCacheStats r = new TreeCacheStats();
+        Map<String, TreeSnapshot> loaded = loaded();
+        r.enabled = enabled;
+        r.loaded = !loaded.isEmpty();
+        r.vaults = loaded.size();
+        r.size = loaded.values().stream().mapToInt(TreeSnapshot::size).sum();
+        r.hits = hits.sum();
+        r.misses = misses.sum();
+        r.rebuilds = rebuilds.get();
+        r.lastRebuildMillis = lastRebuildMillis.get();
+        r.totalRebuildMillis = totalRebuildMillis.get();
+        return r;
+    }
+
+    private Slot slot(String vault) {
+        return slots.computeIfAbsent(vault, k -> new Slot());
+    }
+
+    // The snapshot operations are idempotent, so applying a write that a concurrent rebuild already saw is harmless.
+    // A change that returns null drops the snapshot; the next read reloads it. The change gets the version to stamp.
+    private void apply(String vault, BiFunction<TreeSnapshot, Long, TreeSnapshot> change) {
+        Slot slot = slot(vault);
+        synchronized (slot) {
+            slot.writeEpoch++;
+            TreeSnapshot s = slot.current.get();
+            if (s != null) {
+                slot.current.set(change.apply(s, clock.incrementAndGet()));
+            }
+        }
+    }
+
+    private TreeSnapshot rebuild(String vault, Slot slot) {
+        synchronized (slot.rebuildLock) {
+            TreeSnapshot s = slot.current.get();
+            if (s != null) {
+                return s;
+            }
+            long epoch;
+            synchronized (slot) {
+                epoch = slot.writeEpoch;
+            }
+
+            long start = System.nanoTime();
+            TreeSnapshot built = TreeSnapshot.of(nodeRepository.findAllRows(vault, true), clock.incrementAndGet());
+            long millis = (System.nanoTime() - start) / 1_000_000;
+            rebuilds.incrementAndGet();
+            lastRebuildMillis.set(millis);
+            totalRebuildMillis.addAndGet(millis);
+
+            synchronized (slot) {
+                if (slot.writeEpoch == epoch) {
+                    slot.current.set(built);
+                }
+            }
+            return built;
+        }
+    }
+}
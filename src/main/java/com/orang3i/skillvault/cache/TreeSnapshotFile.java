@@ -0,0 +1,170 @@
+package com.orang3i.skillvault.cache;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * On-disk form of the cached TreeSnapshots: a header with the change log id they include every change up to,
+ * then per vault its id and the fields of every node, then a CRC32 of everything before it. Child arrays
+ * and rollups are not stored; they are derived from the parent links when the cache installs the nodes.
+ * <pre>
+ * int magic, int format, long changeId, int vaults,
+ * vaults x { str vault, int count,
+ *            count x { uuid id, byte hasParent, [uuid parent], str title, str description, str category,
+ *                      int mastery, instant createdAt, instant updatedAt } },
+ * long crc
+ * </pre>
+ * A str is an int byte length (-1 for null) and UTF-8 bytes; an instant is long seconds
+ * (Long.MIN_VALUE for null) and int nanos. Files are written to a temporary name and moved into place,
+ * so a reader never sees a half-written file; a file that fails the checksum is rejected whole.
+ */
+final class TreeSnapshotFile {
+
+    private static final int MAGIC = 0x53565453; // "SVTS"
+    private static final int FORMAT = 3;
+
+    /** The database state a snapshot matches: ChangeLogService.lastId() when it was taken. */
+    record Stamp(long changeId) {
+    }
+
+    record Loaded(Stamp stamp, Map<String, List<TreeSnapshot.CachedNode>> vaults) {
+    }
+
+    private TreeSnapshotFile() {
+    }
+
+    static void write(Path file, Stamp stamp, Map<String, TreeSnapshot> snapshots) throws IOException {
+        Path dir = file.toAbsolutePath().getParent();
+        Files.createDirectories(dir);
+        Path tmp = Files.createTempFile(dir, file.getFileName().toString(), ".tmp");
+        try {
+            try (OutputStream raw = new BufferedOutputStream(Files.newOutputStream(tmp), 1 << 16)) {
+                CheckedOutputStream checked = new CheckedOutputStream(raw, new CRC32());
+                DataOutputStream out = new DataOutputStream(checked);
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT);
+                out.writeLong(stamp.changeId());
+                out.writeInt(snapshots.size());
+                for (Map.Entry<String, TreeSnapshot> vault : snapshots.entrySet()) {
+                    writeString(out, vault.getKey());
+                    out.writeInt(vault.getValue().size());
+                    for (TreeSnapshot.CachedNode n : vault.getValue().nodes()) {
+                        writeUuid(out, n.id());
+                        out.writeBoolean(n.parentId() != null);
+                        if (n.parentId() != null) {
+                            writeUuid(out, n.parentId());
+                        }
+                        writeString(out, n.title());
+                        writeString(out, n.description());
+                        writeString(out, n.category());
+                        out.writeInt(n.mastery());
+                        writeInstant(out, n.createdAt());
+                        writeInstant(out, n.updatedAt());
+                    }
+                }
+                out.flush();
+                new DataOutputStream(raw).writeLong(checked.getChecksum().getValue());
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    /** Reads a snapshot file through a read-only memory mapping. Throws IOException if it is damaged. */
+    static Loaded read(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < 28 || size > Integer.MAX_VALUE) {
+                throw new IOException("Snapshot file has an unexpected size: " + size);
+            }
+            MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+
+            CRC32 crc = new CRC32();
+            crc.update(buf.slice(0, (int) size - 8));
+            if (crc.getValue() != buf.getLong((int) size - 8)) {
+                throw new IOException("Snapshot file checksum mismatch");
+            }
+            if (buf.getInt() != MAGIC || buf.getInt() != FORMAT) {
+                throw new IOException("Not a snapshot file of format " + FORMAT);
+            }
+            Stamp stamp = new Stamp(buf.getLong());
+            int vaults = buf.getInt();
+            Map<String, List<TreeSnapshot.CachedNode>> byVault = new HashMap<>();
+            for (int v = 0; v < vaults; v++) {
+                String vault = readString(buf);
+                int count = buf.getInt();
+                List<TreeSnapshot.CachedNode> nodes = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    UUID id = readUuid(buf);
+                    UUID parentId = (buf.get() != 0) ? readUuid(buf) : null;
+                    nodes.add(new TreeSnapshot.CachedNode(id, parentId, readString(buf), readString(buf),
+                            readString(buf), buf.getInt(), readInstant(buf), readInstant(buf), null, null, 0));
+                }
+                byVault.put(vault, nodes);
+            }
+            return new Loaded(stamp, byVault);
+        } catch (RuntimeException e) {
+            // BufferUnderflowException and friends: a file that passed the checksum but does not parse
+            throw new IOException("Unreadable snapshot file", e);
+        }
+    }
+
+    private static void writeUuid(DataOutputStream out, UUID id) throws IOException {
+        out.writeLong(id.getMostSignificantBits());
+        out.writeLong(id.getLeastSignificantBits());
+    }
+
+    private static UUID readUuid(ByteBuffer buf) {
+        return new UUID(buf.getLong(), buf.getLong());
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        if (s == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer buf) {
+        int length = buf.getInt();
+        if (length < 0) {
+            return null;
+        }
+        String s = StandardCharsets.UTF_8.decode(buf.slice(buf.position(), length)).toString();
+        buf.position(buf.position() + length);
+        return s;
+    }
+
+    private static void writeInstant(DataOutputStream out, Instant t) throws IOException {
+        out.writeLong((t == null) ? Long.MIN_VALUE : t.getEpochSecond());
+        out.writeInt((t == null) ? 0 : t.getNano());
+    }
+
+    private static Instant readInstant(ByteBuffer buf) {
+        long seconds = buf.getLong();
+        int nanos = buf.getInt();
+        return (seconds == Long.MIN_VALUE) ? null : Instant.ofEpochSecond(seconds, nanos);
+    }
+}
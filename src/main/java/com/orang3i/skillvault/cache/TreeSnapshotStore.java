@@ -0,0 +1,175 @@
+package com.orang3i.skillvault.cache;
+
+import com.orang3i.skillvault.service.ChangeLogService;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Warm start for the TreeSnapshotCache. The loaded snapshots of all vaults are saved to one file next to
+ * the H2 database periodically and on shutdown. At startup, before the web server takes requests, the file
+ * is memory-mapped and its vaults installed if its stamp still matches the database, so the first tree
+ * reads skip the full load through JPA; vaults that were not loaded when it was saved load on first use.
+ * A background check then compares it with a fresh load and replaces or drops it on any difference,
+ * which also covers changes made outside the application.
+ * H2 closes the database from its own shutdown hook, concurrently with Spring's, so the shutdown save
+ * can lose that race; the file then keeps the last periodic save, and a stale file is simply not used.
+ */
+@Component
+public class TreeSnapshotStore implements SmartInitializingSingleton {
+
+    private static final Logger log = LoggerFactory.getLogger(TreeSnapshotStore.class);
+
+    private final TreeSnapshotCache cache;
+    private final ChangeLogService changeLog;
+    private final boolean enabled;
+    private final Path file;
+    private final long intervalMillis;
+    private final ScheduledExecutorService worker = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "tree-snapshot-file");
+        t.setDaemon(true);
+        return t;
+    });
+
+    // stamp and snapshots of the last file written or loaded, so an unchanged tree is not written again
+    private TreeSnapshotFile.Stamp saved;
+    private Map<String, TreeSnapshot> savedSnapshots;
+
+    public TreeSnapshotStore(TreeSnapshotCache cache, ChangeLogService changeLog,
+                             @Value("${skillvault.snapshot.enabled:true}") boolean enabled,
+                             @Value("${skillvault.snapshot.file:./data/tree-snapshot.bin}") Path file,
+                             @Value("${skillvault.snapshot.interval-ms:60000}") long intervalMillis) {
+        this.cache = cache;
+        this.changeLog = changeLog;
+        this.enabled = enabled && cache.isEnabled();
+        this.file = file;
+        this.intervalMillis = intervalMillis;
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        if (!enabled) {
+            return;
+        }
+        if (load()) {
+            worker.execute(this::verify);
+        }
+        worker.scheduleWithFixedDelay(this::saveSafely, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (!enabled) {
+            return;
+        }
+        worker.shutdownNow();
+        synchronized (this) {
+            if (cache.loaded().equals(savedSnapshots)) {
+                return; // the file is current; no need to race H2's shutdown hook for the stamp
+            }
+        }
+        try {
+            save();
+        } catch (IOException | RuntimeException e) {
+            log.info("Tree snapshot file not saved on shutdown ({}); it keeps the state of the last save",
+                    e.getMessage());
+        }
+    }
+
+    /** Installs the snapshot file if it matches the database. Returns whether any vault was installed. */
+    public synchronized boolean load() {
+        if (!Files.exists(file)) {
+            return false;
+        }
+        long start = System.nanoTime();
+        TreeSnapshotFile.Loaded loaded;
+        try {
+            loaded = TreeSnapshotFile.read(file);
+        } catch (IOException e) {
+            log.warn("Ignoring tree snapshot file {}: {}", file, e.getMessage());
+            return false;
+        }
+        TreeSnapshotFile.Stamp stamp = stamp();
+        if (!loaded.stamp().equals(stamp)) {
+            log.info("Tree snapshot file {} is stale ({} vs database {})", file, loaded.stamp(), stamp);
+            return false;
+        }
+        int installed = 0;
+        int nodes = 0;
+        for (Map.Entry<String, List<TreeSnapshot.CachedNode>> e : loaded.vaults().entrySet()) {
+            if (cache.preload(e.getKey(), e.getValue())) {
+                installed++;
+                nodes += e.getValue().size();
+            }
+        }
+        if (installed == 0) {
+            return false;
+        }
+        saved = stamp;
+        savedSnapshots = cache.loaded();
+        log.info("Tree snapshot loaded from {}: {} nodes in {} vaults in {} ms", file, nodes, installed,
+                (System.nanoTime() - start) / 1_000_000);
+        return true;
+    }
+
+    /** Compares the cached snapshots with the database. Returns false if any differed and was replaced. */
+    public boolean verify() {
+        long start = System.nanoTime();
+        try {
+            boolean matched = cache.verify();
+            if (matched) {
+                log.info("Tree snapshot file verified against the database in {} ms",
+                        (System.nanoTime() - start) / 1_000_000);
+            } else {
+                log.warn("Tree snapshot file did not match the database; the snapshot was reloaded");
+            }
+            return matched;
+        } catch (RuntimeException e) {
+            log.warn("Tree snapshot verification failed, dropping the preloaded snapshot", e);
+            cache.invalidate();
+            return false;
+        }
+    }
+
+    /**
+     * Writes the cached snapshots if they changed since the last save. The stamp is ChangeLogService's
+     * high-water mark, taken before the snapshots: every change up to it has already been applied to them,
+     * so a file never claims a database state its contents do not include. A change applied after the
+     * mark may be in the file too; such a file is only ever rejected as stale, never loaded as current.
+     */
+    public synchronized boolean save() throws IOException {
+        TreeSnapshotFile.Stamp stamp = stamp();
+        Map<String, TreeSnapshot> snapshots = cache.loaded();
+        if (snapshots.isEmpty() || (stamp.equals(saved) && snapshots.equals(savedSnapshots))) {
+            return false;
+        }
+        TreeSnapshotFile.write(file, stamp, snapshots);
+        saved = stamp;
+        savedSnapshots = snapshots;
+        return true;
+    }
+
+    private void saveSafely() {
+        try {
+            save();
+        } catch (IOException | RuntimeException e) {
+            log.warn("Could not write tree snapshot file {}", file, e);
+        }
+    }
+
+    private TreeSnapshotFile.Stamp stamp() {
+        return new TreeSnapshotFile.Stamp(changeLog.lastId());
+    }
+}
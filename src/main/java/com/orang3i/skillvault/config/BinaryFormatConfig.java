@@ -0,0 +1,40 @@
+package com.orang3i.skillvault.config;
+
+import org.springframework.boot.http.converter.autoconfigure.ServerHttpMessageConvertersCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.cbor.JacksonCborHttpMessageConverter;
+import org.springframework.http.converter.smile.JacksonSmileHttpMessageConverter;
+import tools.jackson.dataformat.cbor.CBORMapper;
+import tools.jackson.dataformat.smile.SmileMapper;
+import tools.jackson.dataformat.smile.SmileWriteFeature;
+
+/**
+ * Binary alternatives to JSON for clients that send Accept: application/cbor or
+ * application/x-jackson-smile. Both write UUIDs as 16 raw bytes instead of 36-character strings.
+ * Smile also back-references repeated field names and, with shared string values on, repeated
+ * short values such as categories, which is most of what a large tree response repeats.
+ * JSON stays the default when the Accept header does not ask for either.
+ */
+@Configuration(proxyBeanMethods = false)
+public class BinaryFormatConfig {
+
+    public static final String SMILE_VALUE = "application/x-jackson-smile";
+    public static final MediaType APPLICATION_SMILE = MediaType.parseMediaType(SMILE_VALUE);
+
+    @Bean
+    SmileMapper smileMapper() {
+        return SmileMapper.builder()
+                .enable(SmileWriteFeature.CHECK_SHARED_STRING_VALUES)
+                .build();
+    }
+
+    // CBORMapper is Boot's, so spring.jackson.* settings apply to it as they do to JSON
+    @Bean
+    ServerHttpMessageConvertersCustomizer binaryConverters(CBORMapper cborMapper, SmileMapper smileMapper) {
+        return converters -> converters
+                .withCborConverter(new JacksonCborHttpMessageConverter(cborMapper))
+                .withSmileConverter(new JacksonSmileHttpMessageConverter(smileMapper));
+    }
+}
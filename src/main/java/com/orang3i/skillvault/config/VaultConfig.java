@@ -0,0 +1,54 @@
+package com.orang3i.skillvault.config;
+
+import com.orang3i.skillvault.controller.CurrentVault;
+import com.orang3i.skillvault.entity.Node;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.MethodParameter;
+import org.springframework.web.bind.support.WebDataBinderFactory;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.method.support.HandlerMethodArgumentResolver;
+import org.springframework.web.method.support.ModelAndViewContainer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Every node belongs to one vault, and each request works in exactly one: the one named by the
+ * X-Vault-Id header, or the default vault without it. Handlers take it as a {@code @CurrentVault String}
+ * parameter. An id that is not 1-64 letters, digits, '.', '_' or '-' is a 400.
+ */
+@Configuration(proxyBeanMethods = false)
+public class VaultConfig implements WebMvcConfigurer {
+
+    public static final String VAULT_HEADER = "X-Vault-Id";
+
+    private static final Pattern VAULT_ID = Pattern.compile("[A-Za-z0-9._-]{1,64}");
+
+    @Override
+    public void addArgumentResolvers(List<HandlerMethodArgumentResolver> resolvers) {
+        resolvers.add(new HandlerMethodArgumentResolver() {
+            @Override
+            public boolean supportsParameter(MethodParameter parameter) {
+                return parameter.hasParameterAnnotation(CurrentVault.class)
+                        && parameter.getParameterType() == String.class;
+            }
+
+            @Override
+            public Object resolveArgument(MethodParameter parameter, ModelAndViewContainer mavContainer,
+                                          NativeWebRequest webRequest, WebDataBinderFactory binderFactory) {
+                return vaultId(webRequest.getHeader(VAULT_HEADER));
+            }
+        });
+    }
+
+    private static String vaultId(String header) {
+        if (header == null) {
+            return Node.DEFAULT_VAULT;
+        }
+        if (!VAULT_ID.matcher(header).matches()) {
+            throw new IllegalArgumentException(VAULT_HEADER + " must be 1-64 letters, digits, '.', '_' or '-'");
+        }
+        return header;
+    }
+}
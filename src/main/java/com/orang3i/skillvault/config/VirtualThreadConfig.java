@@ -0,0 +1,44 @@
+package com.orang3i.skillvault.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+import javax.sql.DataSource;
+
+/**
+ * Extra wiring for spring.threads.virtual.enabled=true. Boot then runs Tomcat requests and its
+ * task executors on virtual threads, so request concurrency is no longer bounded by a thread pool.
+ * Blocking JDBC calls would then pile onto the connection pool all at once, and H2 pins virtual
+ * threads to their carriers inside its synchronized driver code; a fair semaphore in front of the
+ * DataSource keeps the number of threads inside JDBC at the pool size.
+ */
+@Configuration(proxyBeanMethods = false)
+@ConditionalOnProperty(name = "spring.threads.virtual.enabled", havingValue = "true")
+public class VirtualThreadConfig {
+
+    private static final Logger log = LoggerFactory.getLogger(VirtualThreadConfig.class);
+
+    @Bean
+    static BeanPostProcessor connectionLimiter(Environment env) {
+        int poolSize = env.getProperty("spring.datasource.hikari.maximum-pool-size", Integer.class, 10);
+        int maxConcurrent = env.getProperty("skillvault.db.max-concurrent", Integer.class, poolSize);
+        long timeoutMillis = env.getProperty("skillvault.db.acquire-timeout-ms", Long.class, 5000L);
+
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof DataSource ds && !(bean instanceof ConnectionLimitingDataSource)) {
+                    log.info("Virtual threads enabled; at most {} concurrent JDBC connections for '{}'",
+                            maxConcurrent, beanName);
+                    return new ConnectionLimitingDataSource(ds, maxConcurrent, timeoutMillis);
+                }
+                return bean;
+            }
+        };
+    }
+}
@@ -0,0 +1,15 @@
+package com.orang3i.skillvault.controller;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Binds a String handler parameter to the caller's vault id: the X-Vault-Id header, or
+ * Node.DEFAULT_VAULT when the request has none. Resolved by VaultConfig.
+ */
+@Target(ElementType.PARAMETER)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface CurrentVault {
+}
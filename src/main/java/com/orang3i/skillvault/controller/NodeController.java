@@ -1,62 +1,325 @@
 package com.orang3i.skillvault.controller;
 
 
+import com.orang3i.skillvault.cache.TreeSnapshot;
+import com.orang3i.skillvault.cache.TreeSnapshotCache;
+import com.orang3i.skillvault.config.BinaryFormatConfig;
+import com.orang3i.skillvault.config.VaultConfig;
 import com.orang3i.skillvault.dto.*;
+import com.orang3i.skillvault.feed.ChangeFeed;
+import com.orang3i.skillvault.metrics.RequestMetrics;
+import com.orang3i.skillvault.search.SearchIndex;
+import com.orang3i.skillvault.service.ChangeLogService;
+import com.orang3i.skillvault.service.MasteryWriteBehind;
+import com.orang3i.skillvault.service.NodeAggregateService;
+import com.orang3i.skillvault.service.NodeBatchService;
+import com.orang3i.skillvault.service.NodeFields;
+import com.orang3i.skillvault.service.NodeImportService;
 import com.orang3i.skillvault.service.NodeService;
+import com.orang3i.skillvault.service.SubtreeDeleteJobs;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.UUID;
 
+// every endpoint works inside the caller's vault (X-Vault-Id, see VaultConfig)
 @CrossOrigin(origins = "http://localhost:5173")
 @RestController
 @RequestMapping("/api/nodes")
 public class NodeController {
     private final NodeService nodeService;
+    private final TreeSnapshotCache treeCache;
+    private final NodeImportService importService;
+    private final NodeAggregateService aggregateService;
+    private final NodeBatchService batchService;
+    private final SearchIndex searchIndex;
+    private final SubtreeDeleteJobs deleteJobs;
+    private final TreeStreamWriter treeWriter;
+    private final ChangeFeed changeFeed;
+    private final ChangeLogService changeLogService;
+    private final MasteryWriteBehind masteryWrites;
 
-    public NodeController(NodeService nodeService) {
+    public NodeController(NodeService nodeService, NodeImportService importService,
+                          NodeAggregateService aggregateService, NodeBatchService batchService,
+                          TreeSnapshotCache treeCache,
+                          SearchIndex searchIndex, SubtreeDeleteJobs deleteJobs, TreeStreamWriter treeWriter,
+                          ChangeFeed changeFeed, ChangeLogService changeLogService,
+                          MasteryWriteBehind masteryWrites) {
         this.nodeService = nodeService;
+        this.importService = importService;
+        this.aggregateService = aggregateService;
+        this.batchService = batchService;
+        this.searchIndex = searchIndex;
+        this.deleteJobs = deleteJobs;
+        this.treeCache = treeCache;
+        this.treeWriter = treeWriter;
+        this.changeFeed = changeFeed;
+        this.changeLogService = changeLogService;
+        this.masteryWrites = masteryWrites;
     }
 
     @PostMapping
-    public NodeResponse create(@Valid @RequestBody NodeCreateRequest req) {
-        return nodeService.create(req);
+    public NodeResponse create(@CurrentVault String vault, @Valid @RequestBody NodeCreateRequest req) {
+        return nodeService.create(vault, req);
     }
 
+    @PostMapping("/import")
+    public NodeImportResponse importNodes(@CurrentVault String vault, @Valid @RequestBody NodeImportRequest req) {
+        return importService.importNodes(vault, req);
+    }
+
+    // ordered creates, updates, moves and deletes applied all-or-nothing in one transaction
+    @PostMapping("/batch")
+    public NodeBatchResponse batch(@CurrentVault String vault, @Valid @RequestBody NodeBatchRequest req) {
+        // an update sets the mastery, so increments queued before it must not be added on top later
+        masteryWrites.flushBefore(req.operations.stream()
+                .filter(op -> op != null && "update".equals(op.op) && op.id != null)
+                .map(op -> op.id)
+                .toList());
+        return batchService.apply(vault, req);
+    }
+
+    @GetMapping("/search")
+    public List<NodeSearchResult> search(@CurrentVault String vault, @RequestParam String q,
+                                         @RequestParam(defaultValue = "20") int limit) {
+        if (limit < 1 || limit > 200) {
+            throw new IllegalArgumentException("limit must be between 1 and 200");
+        }
+        return searchIndex.search(vault, q, limit);
+    }
+
+    // Server-Sent Events: one event per committed change, optionally only those under ?root=
+    @GetMapping(value = "/changes", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter changes(@CurrentVault String vault, @RequestParam(required = false) UUID root) {
+        if (root != null) {
+            nodeService.get(vault, root); // 404 for an unknown root
+        }
+        return changeFeed.subscribe(vault, root);
+    }
+
+    // changes since a token from an earlier call; no token, or one too old, answers with resync
+    @GetMapping("/delta")
+    public NodeDeltaResponse delta(@CurrentVault String vault, @RequestParam(required = false) Long since,
+                                   @RequestParam(defaultValue = "1000") int limit) {
+        return changeLogService.changesSince(vault, since, limit);
+    }
+
+    // unflushed mastery increments are not in the stored version, so such a node is never answered with 304
     @GetMapping("/{id}")
-    public NodeResponse get(@PathVariable UUID id) {
-        return nodeService.get(id);
+    public NodeResponse get(@CurrentVault String vault, @PathVariable UUID id, WebRequest request) {
+        if (!masteryWrites.hasPending(id) && notModified(request, aggregateService.subtreeVersion(vault, id))) {
+            return null;
+        }
+        return masteryWrites.read(id, () -> nodeService.get(vault, id));
     }
 
     @PutMapping("/{id}")
-    public NodeResponse update(@PathVariable UUID id, @Valid @RequestBody NodeUpdateRequest req) {
-        return nodeService.update(id, req);
+    public NodeResponse update(@CurrentVault String vault, @PathVariable UUID id,
+                               @Valid @RequestBody NodeUpdateRequest req) {
+        masteryWrites.flushBefore(List.of(id));
+        return nodeService.update(vault, id, req);
     }
 
+    // the list endpoints take ?fields=title,mastery,... and then answer with only those properties
     @GetMapping
-    public List<NodeResponse> list(@RequestParam(required = false) UUID parentId) {
-        return nodeService.listChildren(parentId);
+    public List<?> list(@CurrentVault String vault, @RequestParam(required = false) UUID parentId,
+                        @RequestParam(required = false) String fields, WebRequest request) {
+        NodeFields selected = NodeFields.parse(fields);
+        if (notModified(request, cachedVersion(vault, parentId))) {
+            return null;
+        }
+        return sparse(nodeService.listChildren(vault, parentId, selected), selected);
+    }
+
+    @GetMapping("/children")
+    public Object listPage(@CurrentVault String vault,
+                           @RequestParam(required = false) UUID parentId,
+                           @RequestParam(required = false) String cursor,
+                           @RequestParam(defaultValue = "50") int limit,
+                           @RequestParam(required = false) String fields,
+                           WebRequest request) {
+        NodeFields selected = NodeFields.parse(fields);
+        if (notModified(request, parentVersion(vault, parentId))) {
+            return null;
+        }
+        return sparse(nodeService.listChildrenPage(vault, parentId, cursor, limit, selected), selected);
+    }
+
+    // every node of one category, paged like /children
+    @GetMapping("/by-category")
+    public Object listByCategory(@CurrentVault String vault,
+                                 @RequestParam String category,
+                                 @RequestParam(required = false) String cursor,
+                                 @RequestParam(defaultValue = "50") int limit,
+                                 @RequestParam(required = false) String fields,
+                                 WebRequest request) {
+        NodeFields selected = NodeFields.parse(fields);
+        if (notModified(request, Optional.of(aggregateService.treeVersion(vault)))) {
+            return null;
+        }
+        return sparse(nodeService.listByCategoryPage(vault, category, cursor, limit, selected), selected);
+    }
+
+    // NodeResponse as is, or one map per node holding just the selected properties
+    private static List<?> sparse(List<NodeResponse> nodes, NodeFields fields) {
+        return fields.isAll() ? nodes : nodes.stream().map(fields::select).toList();
+    }
+
+    private static Object sparse(NodePageResponse page, NodeFields fields) {
+        if (fields.isAll()) {
+            return page;
+        }
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("items", sparse(page.items, fields));
+        out.put("next", page.next);
+        return out;
+    }
+
+    // count and average mastery per category, optionally only under ?root=
+    @GetMapping("/categories")
+    public List<CategoryFacet> categories(@CurrentVault String vault, @RequestParam(required = false) UUID root,
+                                          WebRequest request) {
+        if (notModified(request, parentVersion(vault, root))) {
+            return null;
+        }
+        return nodeService.categoryFacets(vault, root);
     }
 
     @DeleteMapping("/{id}")
-    public void delete(@PathVariable UUID id) {
-        nodeService.delete(id);
+    public void delete(@CurrentVault String vault, @PathVariable UUID id) {
+        nodeService.delete(vault, id);
+    }
+
+    // ?async=true answers 202 with a job to poll instead of waiting for a large branch to go
+    @DeleteMapping(value = "/{id}", params = "async=true")
+    public ResponseEntity<DeleteJobResponse> deleteAsync(@CurrentVault String vault, @PathVariable UUID id) {
+        return ResponseEntity.accepted().body(deleteJobs.submit(vault, id));
+    }
+
+    @GetMapping("/delete-jobs/{jobId}")
+    public DeleteJobResponse deleteJob(@CurrentVault String vault, @PathVariable UUID jobId) {
+        return deleteJobs.get(vault, jobId);
     }
 
     @GetMapping("/{id}/subtree")
-    public NodeTreeResponse subtree(@PathVariable UUID id) {
-        return nodeService.getSubtree(id);
+    public NodeTreeResponse subtree(@CurrentVault String vault, @PathVariable UUID id,
+                                    @RequestParam(required = false) Integer depth, WebRequest request) {
+        if (notModified(request, cachedVersion(vault, id))) {
+            return null;
+        }
+        return nodeService.getSubtree(vault, id, depth);
+    }
+
+    @GetMapping("/{id}/descendant-count")
+    public long descendantCount(@CurrentVault String vault, @PathVariable UUID id) {
+        return nodeService.countDescendants(vault, id);
+    }
+
+    // ?stream=true writes the same document directly to the response instead of building the DTO tree
+    @GetMapping(value = "/{id}/subtree", params = "stream=true", produces = {
+            MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_CBOR_VALUE, BinaryFormatConfig.SMILE_VALUE})
+    public ResponseEntity<StreamingResponseBody> subtreeStream(@CurrentVault String vault,
+                                                               @PathVariable UUID id,
+                                                               @RequestParam(required = false) Integer depth,
+                                                               @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+                                                               WebRequest request) {
+        if (notModified(request, cachedVersion(vault, id))) {
+            return null;
+        }
+        TreeSnapshot snapshot = nodeService.subtreeSnapshot(vault, id, depth);
+        int maxDepth = (depth == null) ? Integer.MAX_VALUE : depth;
+        MediaType format = treeWriter.negotiate(accept);
+        RequestMetrics metrics = RequestMetrics.current(); // the body is written on another thread
+        return ResponseEntity.ok()
+                .contentType(format)
+                .body(out -> record(metrics, treeWriter.writeSubtree(format, snapshot, id, maxDepth, out)));
     }
 
     @GetMapping("/tree")
-    public List<NodeTreeResponse> fullTree() {
-        return nodeService.getFullTree();
+    public List<NodeTreeResponse> fullTree(@CurrentVault String vault, @RequestParam(required = false) Integer depth,
+                                           WebRequest request) {
+        if (notModified(request, cachedVersion(vault, null))) {
+            return null;
+        }
+        return nodeService.getFullTree(vault, depth);
+    }
+
+    @GetMapping(value = "/tree", params = "stream=true", produces = {
+            MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_CBOR_VALUE, BinaryFormatConfig.SMILE_VALUE})
+    public ResponseEntity<StreamingResponseBody> fullTreeStream(@CurrentVault String vault,
+                                                                @RequestParam(required = false) Integer depth,
+                                                                @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+                                                                WebRequest request) {
+        if (notModified(request, cachedVersion(vault, null))) {
+            return null;
+        }
+        TreeSnapshot snapshot = nodeService.treeSnapshot(vault, depth);
+        int maxDepth = (depth == null) ? Integer.MAX_VALUE : depth;
+        MediaType format = treeWriter.negotiate(accept);
+        RequestMetrics metrics = RequestMetrics.current();
+        return ResponseEntity.ok()
+                .contentType(format)
+                .body(out -> record(metrics, treeWriter.writeForest(format, snapshot, snapshot.rootIds(), maxDepth, out)));
+    }
+
+    private static void record(RequestMetrics metrics, int nodesWritten) {
+        if (metrics != null) {
+            metrics.addNodes(nodesWritten);
+        }
+    }
+
+    // lightweight mastery change for high-frequency callers: merged per node and written in batches
+    @PostMapping("/{id}/mastery")
+    public MasteryIncrementResponse incrementMastery(@CurrentVault String vault, @PathVariable UUID id,
+                                                     @Valid @RequestBody MasteryIncrementRequest req) {
+        return masteryWrites.increment(vault, id, req.delta);
     }
 
     @PatchMapping("/{id}/move")
-    public NodeResponse move(@PathVariable java.util.UUID id, @RequestBody NodeMoveRequest req) {
-        return nodeService.move(id, req.newParentId);
+    public NodeResponse move(@CurrentVault String vault, @PathVariable java.util.UUID id,
+                             @RequestBody NodeMoveRequest req) {
+        return nodeService.move(vault, id, req.newParentId);
+    }
+
+    // the children of a node change with its subtree version; the roots with the whole vault
+    private Optional<?> parentVersion(String vault, UUID parentId) {
+        return (parentId == null)
+                ? Optional.of(aggregateService.treeVersion(vault))
+                : aggregateService.subtreeVersion(vault, parentId);
+    }
+
+    // Same for reads whose body comes from the tree cache when it is on. The stored versions move at commit,
+    // before the change reaches the snapshot, so such a body is tagged with the snapshot's own version.
+    private Optional<?> cachedVersion(String vault, UUID id) {
+        return treeCache.isEnabled() ? treeCache.version(vault, id) : parentVersion(vault, id);
+    }
+
+    /**
+     * Conditional GET: sets the ETag from the version and answers 304 when it matches
+     * If-None-Match. The version is read before the data, so a write in between can only make
+     * the tag older than the body, never newer. An unknown id gets no ETag and falls through to the 404.
+     */
+    private static boolean notModified(WebRequest request, Optional<?> version) {
+        // one version is served as JSON, CBOR or Smile, and the same URL names a different tree in each
+        // vault, so caches must key on Accept and the vault header as well
+        if (request instanceof NativeWebRequest nativeRequest
+                && nativeRequest.getNativeResponse() instanceof HttpServletResponse response) {
+            response.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT);
+            response.addHeader(HttpHeaders.VARY, VaultConfig.VAULT_HEADER);
+        }
+        return version.isPresent() && request.checkNotModified("W/\"" + version.get() + "\"");
     }
 
 }
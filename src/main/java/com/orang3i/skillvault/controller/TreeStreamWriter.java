@@ -0,0 +1,190 @@
+package com.orang3i.skillvault.controller;
+
+import com.orang3i.skillvault.cache.TreeSnapshot;
+import com.orang3i.skillvault.config.BinaryFormatConfig;
+import com.orang3i.skillvault.dto.NodeTreeResponse;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import tools.jackson.core.JsonGenerator;
+import tools.jackson.core.StreamWriteCapability;
+import tools.jackson.core.StreamWriteFeature;
+import tools.jackson.databind.json.JsonMapper;
+import tools.jackson.databind.ObjectWriter;
+import tools.jackson.dataformat.cbor.CBORMapper;
+import tools.jackson.dataformat.smile.SmileMapper;
+
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Writes NodeTreeResponse-shaped documents straight from a TreeSnapshot to an output stream,
+ * without building the DTO graph. The walk is iterative, so memory on top of the snapshot
+ * is one stack frame per level of the tree currently being written.
+ * Nodes at the depth cutoff get an empty children array and a childCount.
+ * Both write methods return the number of nodes written.
+ * Field order must stay the same as NodeTreeResponse (alphabetic), and ids are written the way
+ * Jackson's UUID serializer writes them (binary where the format has it), so the bytes match
+ * the non-streaming endpoints in JSON, CBOR and Smile alike.
+ */
+@Component
+class TreeStreamWriter {
+
+    static final List<MediaType> FORMATS = List.of(
+            MediaType.APPLICATION_JSON, MediaType.APPLICATION_CBOR, BinaryFormatConfig.APPLICATION_SMILE);
+
+    private final Map<MediaType, ObjectWriter> writers = new LinkedHashMap<>();
+
+    TreeStreamWriter(JsonMapper mapper, CBORMapper cborMapper, SmileMapper smileMapper) {
+        // the servlet container owns the response stream
+        writers.put(MediaType.APPLICATION_JSON, mapper.writer().without(StreamWriteFeature.AUTO_CLOSE_TARGET));
+        writers.put(MediaType.APPLICATION_CBOR, cborMapper.writer().without(StreamWriteFeature.AUTO_CLOSE_TARGET));
+        writers.put(BinaryFormatConfig.APPLICATION_SMILE, smileMapper.writer().without(StreamWriteFeature.AUTO_CLOSE_TARGET));
+    }
+
+    /**
+     * The format with the highest quality in the Accept header; the first listed wins a tie,
+     * and JSON is used when there is no header or it names none of the formats.
+     */
+    MediaType negotiate(String accept) {
+        if (accept == null || accept.isBlank()) {
+            return MediaType.APPLICATION_JSON;
+        }
+        MediaType best = MediaType.APPLICATION_JSON;
+        double bestQuality = -1;
+        for (MediaType accepted : MediaType.parseMediaTypes(accept)) {
+            for (MediaType format : FORMATS) {
+                if (accepted.includes(format) && accepted.getQualityValue() > bestQuality) {
+                    best = format;
+                    bestQuality = accepted.getQualityValue();
+                }
+            }
+        }
+        return best;
+    }
+
+    int writeForest(MediaType format, TreeSnapshot snapshot, UUID[] rootIds, int maxDepth, OutputStream out) {
+        int written = 0;
+        try (JsonGenerator g = writers.get(format).createGenerator(out)) {
+            g.writeStartArray(rootIds, rootIds.length);
+            for (UUID rootId : rootIds) {
+                written += writeTree(g, snapshot, snapshot.get(rootId), maxDepth);
+            }
+            g.writeEndArray();
+        }
+        return written;
+    }
+
+    int writeSubtree(MediaType format, TreeSnapshot snapshot, UUID rootId, int maxDepth, OutputStream out) {
+        try (JsonGenerator g = writers.get(format).createGenerator(out)) {
+            return writeTree(g, snapshot, snapshot.get(rootId), maxDepth);
+        }
+    }
+
+    private int writeTree(JsonGenerator g, TreeSnapshot snapshot, TreeSnapshot.CachedNode root, int maxDepth) {
+        Deque<Frame> stack = new ArrayDeque<>();
+        open(g, root, maxDepth == 0);
+        stack.push(new Frame(root, maxDepth == 0));
+        int written = 1;
+
+        while (!stack.isEmpty()) {
+            Frame top = stack.peek();
+            UUID[] childIds = top.node.childIds();
+            if (!top.cutoff && top.next < childIds.length) {
+                TreeSnapshot.CachedNode child = snapshot.get(childIds[top.next++]);
+                // the stack holds the root plus one frame per level, so its size is the child's level
+                boolean cutoff = stack.size() == maxDepth;
+                open(g, child, cutoff);
+                stack.push(new Frame(child, cutoff));
+                written++;
+            } else {
+                close(g, top.node);
+                stack.pop();
+            }
+        }
+        return written;
+    }
+
+    // everything up to and including the start of "children"
+    private void open(JsonGenerator g, TreeSnapshot.CachedNode node, boolean cutoff) {
+        g.writeStartObject();
+        g.writeName("aggregates");
+        writeAggregates(g, node.rollup());
+        g.writeName("category");
+        if (node.category() == null) {
+            g.writeNull();
+        } else {
+            g.writeString(node.category());
+        }
+        if (cutoff) {
+            g.writeName("childCount");
+            g.writeNumber(node.childIds().length);
+        }
+        g.writeName("children");
+        // sized like a List, so CBOR gets the same definite-length array header Jackson writes
+        g.writeStartArray(node.childIds(), cutoff ? 0 : node.childIds().length);
+    }
+
+    private void close(JsonGenerator g, TreeSnapshot.CachedNode node) {
+        g.writeEndArray();
+        g.writeName("id");
+        writeUuid(g, node.id());
+        g.writeName("mastery");
+        g.writeNumber(node.mastery());
+        g.writeName("title");
+        if (node.title() == null) {
+            g.writeNull();
+        } else {
+            g.writeString(node.title());
+        }
+        g.writeEndObject();
+    }
+
+    // 16 bytes, most significant half first, in formats with native binary; the string form otherwise
+    private static void writeUuid(JsonGenerator g, UUID id) {
+        if (g.has(StreamWriteCapability.CAN_WRITE_BINARY_NATIVELY)) {
+            g.writeBinary(ByteBuffer.allocate(16)
+                    .putLong(id.getMostSignificantBits())
+                    .putLong(id.getLeastSignificantBits())
+                    .array());
+        } else {
+            g.writeString(id.toString());
+        }
+    }
+
+    // same figures and field order as NodeAggregates
+    private void writeAggregates(JsonGenerator g, TreeSnapshot.Rollup rollup) {
+        if (rollup == null) {
+            g.writeNull();
+            return;
+        }
+        g.writeStartObject();
+        g.writeName("descendantCount");
+        g.writeNumber(rollup.descendantCount());
+        g.writeName("masteryAvg");
+        g.writeNumber((double) rollup.masterySum() / (rollup.descendantCount() + 1));
+        g.writeName("masteryMax");
+        g.writeNumber(rollup.masteryMax());
+        g.writeName("masteryMin");
+        g.writeNumber(rollup.masteryMin());
+        g.writeName("masterySum");
+        g.writeNumber(rollup.masterySum());
+        g.writeEndObject();
+    }
+
+    private static final class Frame {
+        final TreeSnapshot.CachedNode node;
+        final boolean cutoff;
+        int next;
+
+        Frame(TreeSnapshot.CachedNode node, boolean cutoff) {
+            this.node = node;
+            this.cutoff = cutoff;
+        }
+    }
+}
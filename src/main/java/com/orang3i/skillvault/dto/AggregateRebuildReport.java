@@ -0,0 +1,10 @@
+package com.orang3i.skillvault.dto;
+
+public class AggregateRebuildReport {
+    public int nodes;
+    public int drifted; // stored rows that did not match the recomputed values
+    public int missing; // nodes without a stored row
+    public int orphaned; // stored rows whose node no longer exists
+    public int skipped; // rows a concurrent write changed during the rebuild; left as that write set them
+    public long millis;
+}
@@ -0,0 +1,7 @@
+package com.orang3i.skillvault.dto;
+
+public class CategoryFacet {
+    public String category; // null for nodes without a category
+    public long count;
+    public double masteryAvg;
+}
@@ -0,0 +1,15 @@
+package com.orang3i.skillvault.dto;
+
+import java.time.Instant;
+import java.util.UUID;
+
+public class DeleteJobResponse {
+    public UUID id;
+    public UUID nodeId;
+    public String status; // PENDING, RUNNING, DONE or FAILED
+    public long nodes; // size of the subtree when the job was accepted
+    public Integer deleted; // set once DONE
+    public String error; // set once FAILED
+    public Instant submittedAt;
+    public Instant finishedAt;
+}
@@ -0,0 +1,11 @@
+package com.orang3i.skillvault.dto;
+
+import jakarta.validation.constraints.*;
+
+public class MasteryIncrementRequest {
+
+    @NotNull(message = "Delta is required")
+    @Min(value = -100, message = "Delta must be at least -100")
+    @Max(value = 100, message = "Delta cannot exceed 100")
+    public Integer delta;
+}
@@ -0,0 +1,9 @@
+package com.orang3i.skillvault.dto;
+
+import java.util.UUID;
+
+public class MasteryIncrementResponse {
+    public UUID id;
+    public int mastery; // what the node reads as from now on, unflushed increments included
+    public int pendingDelta; // sum of this node's increments not yet written to the database
+}
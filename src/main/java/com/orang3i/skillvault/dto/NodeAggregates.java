@@ -0,0 +1,23 @@
+package com.orang3i.skillvault.dto;
+
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+
+// Subtree rollup: descendantCount excludes the node, the mastery figures include it
+@JsonPropertyOrder(alphabetic = true)
+public class NodeAggregates {
+    public long descendantCount;
+    public long masterySum;
+    public int masteryMin;
+    public int masteryMax;
+    public double masteryAvg;
+
+    public static NodeAggregates of(long descendantCount, long masterySum, int masteryMin, int masteryMax) {
+        NodeAggregates a = new NodeAggregates();
+        a.descendantCount = descendantCount;
+        a.masterySum = masterySum;
+        a.masteryMin = masteryMin;
+        a.masteryMax = masteryMax;
+        a.masteryAvg = (double) masterySum / (descendantCount + 1);
+        return a;
+    }
+}
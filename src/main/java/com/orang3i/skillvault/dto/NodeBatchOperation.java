@@ -0,0 +1,31 @@
+package com.orang3i.skillvault.dto;
+
+import java.util.UUID;
+
+/**
+ * One step of a batch. The node an update, move or delete applies to is either an existing
+ * node (id) or one created earlier in the same batch (nodeRef); the same goes for the parent
+ * of a create or the new parent of a move (parentId / parentRef, neither means root).
+ * Field constraints are the ones on NodeCreateRequest and NodeUpdateRequest.
+ */
+public class NodeBatchOperation {
+    public String op; // create, update, move or delete
+
+    public String ref; // create: name later operations can use as nodeRef / parentRef
+
+    public UUID id;
+
+    public String nodeRef;
+
+    public UUID parentId;
+
+    public String parentRef;
+
+    public String title;
+
+    public String description;
+
+    public String category;
+
+    public int mastery;
+}
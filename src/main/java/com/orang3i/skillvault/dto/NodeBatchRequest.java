@@ -0,0 +1,12 @@
+package com.orang3i.skillvault.dto;
+
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+
+import java.util.List;
+
+public class NodeBatchRequest {
+    @NotEmpty(message = "At least one operation is required")
+    @Size(max = 10000, message = "A batch cannot have more than 10000 operations")
+    public List<NodeBatchOperation> operations;
+}
@@ -0,0 +1,10 @@
+package com.orang3i.skillvault.dto;
+
+import java.util.Map;
+import java.util.UUID;
+
+public class NodeBatchResponse {
+    public int applied;
+    public int deleted; // nodes removed, descendants of deleted nodes included
+    public Map<String, UUID> ids; // ref -> generated id, for creates that had a ref
+}
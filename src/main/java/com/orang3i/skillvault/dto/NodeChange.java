@@ -0,0 +1,11 @@
+package com.orang3i.skillvault.dto;
+
+import java.util.UUID;
+
+public class NodeChange {
+    public long seq; // increases by one per change sent by this server
+    public String type; // CREATED, UPDATED, MOVED or DELETED
+    public UUID nodeId;
+    public UUID previousParentId; // MOVED and DELETED only; null for a subscribed root deleted with an ancestor
+    public NodeResponse node; // state after the change, null for DELETED
+}
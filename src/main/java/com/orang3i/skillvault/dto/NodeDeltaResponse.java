@@ -0,0 +1,12 @@
+package com.orang3i.skillvault.dto;
+
+import java.util.List;
+import java.util.UUID;
+
+public class NodeDeltaResponse {
+    public long token; // pass as ?since= next time
+    public boolean resync; // the token was too old or unknown: reload /tree, then sync from this token
+    public boolean hasMore; // more changes are waiting; call again right away
+    public List<NodeResponse> nodes; // created, updated or moved since the token, in their current state
+    public List<UUID> deleted; // deleted since the token, each with its whole subtree
+}
@@ -0,0 +1,27 @@
+package com.orang3i.skillvault.dto;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * One node of a bulk import. The parent is either the enclosing item (nested children),
+ * another item of the same request (parentRef), an existing node (parentId) or nothing (root).
+ * Field constraints are the ones on NodeCreateRequest.
+ */
+public class NodeImportItem {
+    public String ref; // client-side temporary id, only needed when other items point at this one
+
+    public String parentRef;
+
+    public UUID parentId;
+
+    public String title;
+
+    public String description;
+
+    public String category;
+
+    public int mastery;
+
+    public List<NodeImportItem> children;
+}
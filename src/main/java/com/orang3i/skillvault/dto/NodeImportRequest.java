@@ -0,0 +1,10 @@
+package com.orang3i.skillvault.dto;
+
+import jakarta.validation.constraints.NotEmpty;
+
+import java.util.List;
+
+public class NodeImportRequest {
+    @NotEmpty(message = "At least one node is required")
+    public List<NodeImportItem> nodes;
+}
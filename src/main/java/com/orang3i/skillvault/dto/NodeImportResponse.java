@@ -0,0 +1,9 @@
+package com.orang3i.skillvault.dto;
+
+import java.util.Map;
+import java.util.UUID;
+
+public class NodeImportResponse {
+    public int created;
+    public Map<String, UUID> ids; // ref -> generated id, for items that had a ref
+}
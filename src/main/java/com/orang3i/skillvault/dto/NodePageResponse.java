@@ -0,0 +1,8 @@
+package com.orang3i.skillvault.dto;
+
+import java.util.List;
+
+public class NodePageResponse {
+    public List<NodeResponse> items;
+    public String next; // opaque cursor for the following page, null on the last page
+}
@@ -12,4 +12,5 @@ public class NodeResponse {
     public UUID parentId;
     public Instant createdAt;
     public Instant updatedAt;
+    public NodeAggregates aggregates;
 }
@@ -0,0 +1,18 @@
+package com.orang3i.skillvault.dto;
+
+import java.util.List;
+import java.util.UUID;
+
+public class NodeSearchResult {
+    public UUID id;
+    public String title;
+    public String category;
+    public int mastery;
+    public double score;
+    public List<PathEntry> path; // ancestors from the root down to the parent
+
+    public static class PathEntry {
+        public UUID id;
+        public String title;
+    }
+}
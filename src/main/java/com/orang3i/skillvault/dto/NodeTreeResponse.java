@@ -1,12 +1,22 @@
 package com.orang3i.skillvault.dto;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+
 import java.util.List;
 import java.util.UUID;
 
+// Pinned so the streaming writer (TreeStreamWriter) produces the same bytes
+@JsonPropertyOrder(alphabetic = true)
 public class NodeTreeResponse {
     public UUID id;
     public String title;
     public String category;
     public int mastery;
     public List<NodeTreeResponse> children;
+    public NodeAggregates aggregates;
+
+    // only set on nodes at the depth cutoff, whose children were not loaded
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public Integer childCount;
 }
@@ -0,0 +1,13 @@
+package com.orang3i.skillvault.dto;
+
+public class TreeCacheStats {
+    public boolean enabled;
+    public boolean loaded;
+    public int vaults; // vaults with a loaded snapshot; size counts the nodes of all of them
+    public int size;
+    public long hits;
+    public long misses;
+    public long rebuilds;
+    public long lastRebuildMillis;
+    public long totalRebuildMillis;
+}
@@ -0,0 +1,59 @@
+package com.orang3i.skillvault.entity;
+
+import jakarta.persistence.*;
+import org.hibernate.annotations.ColumnDefault;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * Append-only record of node writes, read by the delta sync endpoint. Ids come from a sequence and
+ * readers stop at ChangeLogService's high-water mark, so a client that has read up to id N has seen every
+ * change with an id up to N.
+ * A DELETED row stands for the node's whole subtree. Ids are shared by all vaults; each vault reads its own rows.
+ */
+@Entity
+@Table(name = "node_change_log", indexes = {
+        // compaction finds the first entry newer than the retention cutoff
+        @Index(name = "idx_node_change_log_time", columnList = "changed_at"),
+        // a delta reads one vault's entries after a token
+        @Index(name = "idx_node_change_log_vault", columnList = "vault_id, id")
+})
+public class ChangeLogEntry {
+
+    @Id
+    private long id;
+
+    @Column(name = "vault_id", nullable = false, length = 64)
+    @ColumnDefault("'" + Node.DEFAULT_VAULT + "'")
+    private String vaultId;
+
+    @Column(name = "node_id", nullable = false)
+    private UUID nodeId;
+
+    @Column(nullable = false, length = 16)
+    private String type; // CREATED, UPDATED, MOVED or DELETED
+
+    @Column(name = "changed_at", nullable = false)
+    private Instant changedAt;
+
+    public long getId() {
+        return id;
+    }
+
+    public String getVaultId() {
+        return vaultId;
+    }
+
+    public UUID getNodeId() {
+        return nodeId;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public Instant getChangedAt() {
+        return changedAt;
+    }
+}
@@ -0,0 +1,26 @@
+package com.orang3i.skillvault.entity;
+
+import jakarta.persistence.*;
+
+/**
+ * The single row (id 1) tracking the change log: the last id compaction may have removed. Writers do not
+ * touch it; their ids come from node_change_log_seq.
+ */
+@Entity
+@Table(name = "node_change_log_head")
+public class ChangeLogHead {
+
+    @Id
+    private int id;
+
+    @Column(nullable = false)
+    private long compactedThrough;
+
+    public int getId() {
+        return id;
+    }
+
+    public long getCompactedThrough() {
+        return compactedThrough;
+    }
+}
@@ -0,0 +1,30 @@
+package com.orang3i.skillvault.entity;
+
+import jakarta.persistence.*;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * A mastery journal segment whose increments are in the database. The row is written in the same
+ * transaction as the increments, so a segment file that is still on disk after a crash is only
+ * replayed if it has no row here.
+ */
+@Entity
+@Table(name = "mastery_journal_flushed")
+public class MasteryJournalFlush {
+
+    @Id
+    private UUID segmentId;
+
+    @Column(nullable = false)
+    private Instant flushedAt;
+
+    public UUID getSegmentId() {
+        return segmentId;
+    }
+
+    public Instant getFlushedAt() {
+        return flushedAt;
+    }
+}
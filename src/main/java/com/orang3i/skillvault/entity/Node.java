@@ -2,6 +2,7 @@ package com.orang3i.skillvault.entity;
 
 
 import jakarta.persistence.*;
+import org.hibernate.annotations.ColumnDefault;
 import org.hibernate.annotations.CreationTimestamp;
 import org.hibernate.annotations.UpdateTimestamp;
 import org.hibernate.annotations.UuidGenerator;
@@ -10,14 +11,30 @@ import java.time.Instant;
 import java.util.UUID;
 
 @Entity
-@Table(name = "nodes")
+@Table(name = "nodes", indexes = {
+        // Every index leads with the vault, so a query for one vault only ever ranges over that vault's rows.
+        // keyset pagination of children: WHERE vault_id = ? AND parent_id = ? AND (created_at, id) > (?, ?)
+        @Index(name = "idx_nodes_vault_parent_created", columnList = "vault_id, parent_id, created_at, id"),
+        // per-category pages and facet counts
+        @Index(name = "idx_nodes_vault_category_created", columnList = "vault_id, category, created_at, id"),
+        // recently changed nodes of a vault
+        @Index(name = "idx_nodes_vault_updated", columnList = "vault_id, updated_at, id")
+})
 public class Node {
 
+    /** Vault of requests that do not name one, and of every node written before vaults existed. */
+    public static final String DEFAULT_VAULT = "default";
+
     @Id
     @GeneratedValue
     @UuidGenerator
     private UUID id;
 
+    // a node never changes vault; moves across vaults are rejected
+    @Column(name = "vault_id", nullable = false, updatable = false, length = 64)
+    @ColumnDefault("'" + DEFAULT_VAULT + "'")
+    private String vaultId;
+
     @Column(nullable = false)
     private String title;
 
@@ -41,6 +58,11 @@ public class Node {
     @UpdateTimestamp
     private Instant updatedAt;
 
+    @Version
+    @ColumnDefault("0")
+    @Column(nullable = false)
+    private long version;
+
     public UUID getId() {
         return id;
     }
@@ -49,6 +71,14 @@ public class Node {
         this.id = id;
     }
 
+    public String getVaultId() {
+        return vaultId;
+    }
+
+    public void setVaultId(String vaultId) {
+        this.vaultId = vaultId;
+    }
+
     public String getTitle() {
         return title;
     }
@@ -104,4 +134,8 @@ public class Node {
     public Instant getUpdatedAt() {
         return updatedAt;
     }
+
+    public long getVersion() {
+        return version;
+    }
 }
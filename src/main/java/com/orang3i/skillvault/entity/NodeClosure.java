@@ -0,0 +1,67 @@
+package com.orang3i.skillvault.entity;
+
+import jakarta.persistence.*;
+
+import java.io.Serializable;
+import java.util.Objects;
+import java.util.UUID;
+
+/**
+ * One row per (ancestor, descendant) pair, including the depth-0 self row of every node.
+ * Lets "is X under Y" and "all descendants of X" be answered without walking parent links.
+ */
+@Entity
+@Table(name = "node_closure", indexes = {
+        @Index(name = "idx_node_closure_descendant", columnList = "descendant_id, depth")
+})
+@IdClass(NodeClosure.Key.class)
+public class NodeClosure {
+
+    @Id
+    @Column(name = "ancestor_id", nullable = false)
+    private UUID ancestorId;
+
+    @Id
+    @Column(name = "descendant_id", nullable = false)
+    private UUID descendantId;
+
+    @Column(nullable = false)
+    private int depth;
+
+    public UUID getAncestorId() {
+        return ancestorId;
+    }
+
+    public UUID getDescendantId() {
+        return descendantId;
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    public static class Key implements Serializable {
+        private UUID ancestorId;
+        private UUID descendantId;
+
+        public Key() {
+        }
+
+        public Key(UUID ancestorId, UUID descendantId) {
+            this.ancestorId = ancestorId;
+            this.descendantId = descendantId;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key key)) return false;
+            return Objects.equals(ancestorId, key.ancestorId) && Objects.equals(descendantId, key.descendantId);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(ancestorId, descendantId);
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.orang3i.skillvault.entity;
+
+import jakarta.persistence.*;
+import org.hibernate.annotations.ColumnDefault;
+
+import java.util.UUID;
+
+/**
+ * Rollup of a node's subtree, kept in step with every write by NodeAggregateService.
+ * descendantCount excludes the node itself; the mastery figures include it.
+ * subtreeVersion changes whenever anything in the subtree does and backs the ETags of tree reads.
+ */
+@Entity
+@Table(name = "node_stats", indexes = {
+        // max(subtree_version) for the whole-tree ETag
+        @Index(name = "idx_node_stats_version", columnList = "subtree_version")
+})
+public class NodeStats {
+
+    @Id
+    @Column(name = "node_id", nullable = false)
+    private UUID nodeId;
+
+    @Column(nullable = false)
+    private long descendantCount;
+
+    @Column(nullable = false)
+    private long masterySum;
+
+    @Column(nullable = false)
+    private int masteryMin;
+
+    @Column(nullable = false)
+    private int masteryMax;
+
+    @ColumnDefault("0")
+    @Column(nullable = false)
+    private long subtreeVersion;
+
+    public UUID getNodeId() {
+        return nodeId;
+    }
+
+    public long getDescendantCount() {
+        return descendantCount;
+    }
+
+    public long getMasterySum() {
+        return masterySum;
+    }
+
+    public int getMasteryMin() {
+        return masteryMin;
+    }
+
+    public int getMasteryMax() {
+        return masteryMax;
+    }
+
+    public long getSubtreeVersion() {
+        return subtreeVersion;
+    }
+}
@@ -0,0 +1,37 @@
+package com.orang3i.skillvault.event;
+
+import com.orang3i.skillvault.dto.NodeResponse;
+
+import java.util.UUID;
+
+/**
+ * Published by NodeService inside the write transaction; NodeBatchService publishes a list of them as
+ * one NodesChangedEvent.
+ * Listeners that mirror the tree (caches, indexes) should consume it after commit.
+ *
+ * @param vaultId        vault of the node; listeners keep one partition per vault
+ * @param node           state after the write, null for DELETED
+ * @param previousParent parent before a MOVED or DELETED, otherwise null
+ */
+public record NodeChangedEvent(Type type, String vaultId, UUID nodeId, NodeResponse node, UUID previousParent) {
+
+    public enum Type {
+        CREATED, UPDATED, MOVED, DELETED
+    }
+
+    public static NodeChangedEvent created(String vaultId, NodeResponse node) {
+        return new NodeChangedEvent(Type.CREATED, vaultId, node.id, node, null);
+    }
+
+    public static NodeChangedEvent updated(String vaultId, NodeResponse node) {
+        return new NodeChangedEvent(Type.UPDATED, vaultId, node.id, node, null);
+    }
+
+    public static NodeChangedEvent moved(String vaultId, NodeResponse node, UUID previousParent) {
+        return new NodeChangedEvent(Type.MOVED, vaultId, node.id, node, previousParent);
+    }
+
+    public static NodeChangedEvent deleted(String vaultId, UUID nodeId, UUID previousParent) {
+        return new NodeChangedEvent(Type.DELETED, vaultId, nodeId, null, previousParent);
+    }
+}
@@ -0,0 +1,11 @@
+package com.orang3i.skillvault.event;
+
+import java.util.List;
+
+/**
+ * Published once per batch write instead of one NodeChangedEvent per node, so listeners can apply the
+ * whole batch in one step. The changes are in the order they should be applied: deletes first, then the
+ * surviving nodes parents first. A batch writes into one vault.
+ */
+public record NodesChangedEvent(String vaultId, List<NodeChangedEvent> changes) {
+}
@@ -0,0 +1,10 @@
+package com.orang3i.skillvault.event;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Published once per bulk import instead of one NodeChangedEvent per node. An import writes into one vault.
+ */
+public record NodesImportedEvent(String vaultId, List<UUID> nodeIds) {
+}
@@ -1,6 +1,9 @@
 package com.orang3i.skillvault.exception;
 
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.dao.DataAccessResourceFailureException;
 import org.springframework.http.HttpStatus;
+import org.springframework.transaction.CannotCreateTransactionException;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.*;
 
@@ -32,6 +35,15 @@ public class GlobalExceptionHandler {
         );
     }
 
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    @ExceptionHandler(ImportValidationException.class)
+    public Map<String, Object> importValidation(ImportValidationException e) {
+        return Map.of(
+                "error", "VALIDATION_ERROR",
+                "items", e.getItems()
+        );
+    }
+
     @ResponseStatus(HttpStatus.BAD_REQUEST)
     @ExceptionHandler(IllegalArgumentException.class)
     public Map<String, Object> badRequest(IllegalArgumentException e) {
@@ -40,4 +52,24 @@ public class GlobalExceptionHandler {
                 "message", e.getMessage()
         );
     }
+
+    // lost a lock or version race with a concurrent write, even after retrying
+    @ResponseStatus(HttpStatus.CONFLICT)
+    @ExceptionHandler(ConcurrencyFailureException.class)
+    public Map<String, Object> conflict(ConcurrencyFailureException e) {
+        return Map.of(
+                "error", "CONFLICT",
+                "message", "concurrent update, retry later"
+        );
+    }
+
+    // no database connection within the acquire timeout
+    @ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+    @ExceptionHandler({CannotCreateTransactionException.class, DataAccessResourceFailureException.class})
+    public Map<String, Object> unavailable(RuntimeException e) {
+        return Map.of(
+                "error", "SERVICE_UNAVAILABLE",
+                "message", "database busy, retry later"
+        );
+    }
 }
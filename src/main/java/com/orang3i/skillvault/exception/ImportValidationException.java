@@ -0,0 +1,19 @@
+package com.orang3i.skillvault.exception;
+
+import java.util.Map;
+
+/**
+ * Bulk import rejected; errors are keyed by item path (e.g. "nodes[2].children[0]"), then by field.
+ */
+public class ImportValidationException extends RuntimeException {
+    private final Map<String, Map<String, String>> items;
+
+    public ImportValidationException(Map<String, Map<String, String>> items) {
+        super("import rejected: " + items.size() + " invalid item(s)");
+        this.items = items;
+    }
+
+    public Map<String, Map<String, String>> getItems() {
+        return items;
+    }
+}
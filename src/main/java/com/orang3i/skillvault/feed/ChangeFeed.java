@@ -0,0 +1,303 @@
+package com.orang3i.skillvault.feed;
+
+import com.orang3i.skillvault.dto.NodeChange;
+import com.orang3i.skillvault.entity.NodeClosure;
+import com.orang3i.skillvault.event.NodeChangedEvent;
+import com.orang3i.skillvault.event.NodesChangedEvent;
+import com.orang3i.skillvault.event.NodesImportedEvent;
+import com.orang3i.skillvault.repository.NodeClosureRepository;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pushes committed node changes to Server-Sent Events subscribers. A subscriber only gets the changes of
+ * its own vault, optionally limited to one subtree.
+ * <p>
+ * Writers never wait on clients: after commit each change is offered to every matching subscriber's
+ * bounded buffer and the writer moves on. Each buffer is drained on its own virtual thread, so a slow
+ * connection only holds up itself. When a buffer fills, its pending changes are dropped and replaced by
+ * a single "resync" event; the client should re-fetch its tree (or subtree) and carry on from there.
+ * Bulk imports are sent as "resync" too, for the same reason the tree cache reloads on them.
+ * A subtree subscriber whose root is deleted, itself or with one of its ancestors, gets a "deleted"
+ * event for the root and then its stream is completed.
+ */
+@Component
+public class ChangeFeed {
+
+    private static final Message RESYNC = new Message("resync", null);
+    private static final Message HEARTBEAT = new Message(null, null);
+
+    private final NodeClosureRepository closureRepository;
+    private final int bufferSize;
+    private final long timeoutMillis;
+
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+    private final AtomicLong seq = new AtomicLong();
+    private final ExecutorService senders = Executors.newVirtualThreadPerTaskExecutor();
+    private final ScheduledExecutorService heartbeats = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "change-feed-heartbeat");
+        t.setDaemon(true);
+        return t;
+    });
+
+    public ChangeFeed(NodeClosureRepository closureRepository,
+                      @Value("${skillvault.feed.buffer-size:256}") int bufferSize,
+                      @Value("${skillvault.feed.timeout-ms:1800000}") long timeoutMillis,
+                      @Value("${skillvault.feed.heartbeat-ms:15000}") long heartbeatMillis) {
+        this.closureRepository = closureRepository;
+        this.bufferSize = bufferSize;
+        this.timeoutMillis = timeoutMillis;
+        // also how a closed connection is noticed when nothing else is being sent
+        heartbeats.scheduleWithFixedDelay(() -> subscribers.forEach(s -> offer(s, HEARTBEAT)),
+                heartbeatMillis, heartbeatMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @param root only changes inside this subtree (the node itself included), null for the whole vault
+     */
+    public SseEmitter subscribe(String vault, UUID root) {
+        SseEmitter emitter = new SseEmitter(timeoutMillis);
+        Subscriber s = new Subscriber(emitter, vault, root, new ArrayBlockingQueue<>(bufferSize));
+        emitter.onCompletion(() -> subscribers.remove(s));
+        emitter.onTimeout(() -> subscribers.remove(s));
+        emitter.onError(e -> subscribers.remove(s));
+        subscribers.add(s);
+        return emitter;
+    }
+
+    public int subscriberCount() {
+        return subscribers.size();
+    }
+
+    /*
+     * Changes are collected per transaction while it runs. Just before commit the ancestor chains
+     * the subtree filters need are read in one query (a deleted node's own chain is gone by then,
+     * so deletes are matched through their former parent), and after commit the batch is sent.
+     * When the transaction deletes anything, the same query reads the subscribed roots of that vault:
+     * a root without its own closure row was deleted with a subtree. A rollback sends nothing.
+     */
+    @EventListener
+    public void onNodeChanged(NodeChangedEvent e) {
+        collect(List.of(e));
+    }
+
+    // a batch is still sent as one event per node
+    @EventListener
+    public void onNodesChanged(NodesChangedEvent e) {
+        collect(e.changes());
+    }
+
+    private void collect(List<NodeChangedEvent> changes) {
+        if (subscribers.isEmpty()) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            Pending pending = new Pending();
+            pending.events.addAll(changes);
+            pending.beforeCommit(false);
+            pending.afterCommit();
+            return;
+        }
+        Pending pending = (Pending) TransactionSynchronizationManager.getResource(this);
+        if (pending == null) {
+            pending = new Pending();
+            TransactionSynchronizationManager.bindResource(this, pending);
+            TransactionSynchronizationManager.registerSynchronization(pending);
+        }
+        pending.events.addAll(changes);
+    }
+
+    @TransactionalEventListener
+    public void onNodesImported(NodesImportedEvent e) {
+        for (Subscriber s : subscribers) {
+            if (s.vault.equals(e.vaultId())) offer(s, RESYNC);
+        }
+    }
+
+    private final class Pending implements TransactionSynchronization {
+        final List<NodeChangedEvent> events = new ArrayList<>();
+        Map<UUID, Set<UUID>> ancestors = Map.of(); // node -> itself and all its ancestors
+        Set<UUID> deletedRoots = Set.of();
+
+        @Override
+        public void beforeCommit(boolean readOnly) {
+            boolean filtered = subscribers.stream().anyMatch(s -> s.root != null);
+            if (!filtered) {
+                return;
+            }
+            Set<UUID> ids = new HashSet<>();
+            Set<String> deletedIn = new HashSet<>();
+            for (NodeChangedEvent e : events) {
+                if (e.type() != NodeChangedEvent.Type.DELETED) ids.add(e.nodeId());
+                else deletedIn.add(e.vaultId());
+                if (e.previousParent() != null) ids.add(e.previousParent());
+            }
+            Set<UUID> roots = new HashSet<>();
+            for (Subscriber s : subscribers) {
+                if (s.root != null && deletedIn.contains(s.vault)) roots.add(s.root);
+            }
+            ids.addAll(roots);
+            ancestors = new HashMap<>();
+            for (NodeClosure c : closureRepository.findByDescendantIdIn(ids)) {
+                ancestors.computeIfAbsent(c.getDescendantId(), k -> new HashSet<>()).add(c.getAncestorId());
+            }
+            roots.removeAll(ancestors.keySet());
+            deletedRoots = roots;
+        }
+
+        @Override
+        public void afterCommit() {
+            publish(events, ancestors, deletedRoots);
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            TransactionSynchronizationManager.unbindResourceIfPossible(ChangeFeed.this);
+        }
+    }
+
+    // synchronized so seq order is buffer order when two transactions commit at once; it only enqueues
+    private synchronized void publish(List<NodeChangedEvent> events, Map<UUID, Set<UUID>> ancestors,
+                                      Set<UUID> deletedRoots) {
+        for (NodeChangedEvent e : events) {
+            NodeChange change = new NodeChange();
+            change.seq = seq.incrementAndGet();
+            change.type = e.type().name();
+            change.nodeId = e.nodeId();
+            change.previousParentId = e.previousParent();
+            change.node = e.node();
+            Message m = new Message(change.type.toLowerCase(Locale.ROOT), change);
+
+            for (Subscriber s : subscribers) {
+                if (s.vault.equals(e.vaultId()) && (s.root == null || matches(s.root, e, ancestors))) {
+                    offer(s, m);
+                }
+            }
+        }
+        if (deletedRoots.isEmpty()) {
+            return;
+        }
+        for (Subscriber s : subscribers) {
+            if (s.root == null || !deletedRoots.contains(s.root)) {
+                continue;
+            }
+            // deleted with an ancestor: the events above name the ancestor, so tell it about its root
+            boolean sent = events.stream().anyMatch(
+                    e -> e.type() == NodeChangedEvent.Type.DELETED && e.nodeId().equals(s.root));
+            if (!sent) {
+                NodeChange change = new NodeChange();
+                change.seq = seq.incrementAndGet();
+                change.type = NodeChangedEvent.Type.DELETED.name();
+                change.nodeId = s.root;
+                offer(s, new Message("deleted", change));
+            }
+            close(s);
+        }
+    }
+
+    // no more changes are offered; the stream completes once what is buffered has been sent
+    private void close(Subscriber s) {
+        subscribers.remove(s);
+        s.closed = true;
+        if (s.draining.compareAndSet(false, true)) {
+            senders.execute(() -> drain(s));
+        }
+    }
+
+    // inside the subtree now, or just left it (moved out, or deleted from it)
+    private static boolean matches(UUID root, NodeChangedEvent e, Map<UUID, Set<UUID>> ancestors) {
+        if (root.equals(e.nodeId())) {
+            return true;
+        }
+        if (e.type() != NodeChangedEvent.Type.DELETED
+                && ancestors.getOrDefault(e.nodeId(), Set.of()).contains(root)) {
+            return true;
+        }
+        return e.previousParent() != null
+                && ancestors.getOrDefault(e.previousParent(), Set.of()).contains(root);
+    }
+
+    private void offer(Subscriber s, Message m) {
+        if (!s.buffer.offer(m)) {
+            if (m == HEARTBEAT) {
+                return;
+            }
+            // too slow to keep up: replace what it has not read with one resync
+            s.buffer.clear();
+            s.buffer.offer(RESYNC);
+        }
+        if (s.draining.compareAndSet(false, true)) {
+            senders.execute(() -> drain(s));
+        }
+    }
+
+    private void drain(Subscriber s) {
+        try {
+            Message m;
+            while ((m = s.buffer.poll()) != null) {
+                if (m == HEARTBEAT) {
+                    s.emitter.send(SseEmitter.event().comment("heartbeat"));
+                } else if (m.data == null) {
+                    s.emitter.send(SseEmitter.event().name(m.name).data(""));
+                } else {
+                    NodeChange c = (NodeChange) m.data;
+                    s.emitter.send(SseEmitter.event().id(Long.toString(c.seq)).name(m.name).data(c));
+                }
+            }
+            if (s.closed) {
+                s.emitter.complete();
+                return;
+            }
+        } catch (IOException | IllegalStateException e) {
+            // client went away, or the emitter already completed
+            subscribers.remove(s);
+            s.buffer.clear();
+            return;
+        } finally {
+            s.draining.set(false);
+        }
+        // something may have been offered, or the subscriber closed, between the last poll and releasing the flag
+        if ((!s.buffer.isEmpty() || s.closed) && s.draining.compareAndSet(false, true)) {
+            senders.execute(() -> drain(s));
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        heartbeats.shutdownNow();
+        subscribers.forEach(s -> s.emitter.complete());
+        subscribers.clear();
+        senders.shutdownNow();
+    }
+
+    private record Message(String name, Object data) {
+    }
+
+    private static final class Subscriber {
+        final SseEmitter emitter;
+        final String vault;
+        final UUID root;
+        final BlockingQueue<Message> buffer;
+        final AtomicBoolean draining = new AtomicBoolean();
+        volatile boolean closed; // its root was deleted
+
+        Subscriber(SseEmitter emitter, String vault, UUID root, BlockingQueue<Message> buffer) {
+            this.emitter = emitter;
+            this.vault = vault;
+            this.root = root;
+            this.buffer = buffer;
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.orang3i.skillvault.metrics;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.InitializeCollectionEventListener;
+import org.hibernate.event.spi.LoadEventListener;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.springframework.boot.hibernate.autoconfigure.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.stereotype.Component;
+
+/**
+ * Feeds RequestMetrics from Hibernate. Hibernate's own statistics are totals for the whole
+ * session factory, so per-request figures come from a statement inspector (every SQL string
+ * Hibernate prepares) and from load listeners: a proxy being initialized or a lazy collection
+ * being filled is one lazy load, the usual signature of an N+1.
+ * SQL sent through JdbcTemplate (bulk import, batch writes) is not seen here.
+ */
+@Component
+public class HibernateRequestCounters {
+
+    HibernateRequestCounters(EntityManagerFactory emf) {
+        EventListenerRegistry registry = emf.unwrap(SessionFactoryImplementor.class)
+                .getServiceRegistry().getService(EventListenerRegistry.class);
+        registry.appendListeners(EventType.LOAD, (LoadEventListener) (event, loadType) -> {
+            if (loadType == LoadEventListener.IMMEDIATE_LOAD) {
+                RequestMetrics.lazyLoaded();
+            }
+        });
+        registry.appendListeners(EventType.INIT_COLLECTION,
+                (InitializeCollectionEventListener) event -> RequestMetrics.lazyLoaded());
+    }
+
+    // static: it has to exist before the EntityManagerFactory this component depends on
+    @Bean
+    static HibernatePropertiesCustomizer statementCounter() {
+        StatementInspector inspector = sql -> {
+            RequestMetrics.statementExecuted();
+            return sql;
+        };
+        return props -> props.put("hibernate.session_factory.statement_inspector", inspector);
+    }
+}
@@ -0,0 +1,51 @@
+package com.orang3i.skillvault.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counters for the request the current thread is serving: SQL statements, lazy loads and tree
+ * nodes materialized. Opened and recorded by RequestMetricsFilter; the static hooks are no-ops
+ * outside a request (startup runners, background jobs).
+ */
+public final class RequestMetrics {
+
+    private static final ThreadLocal<RequestMetrics> CURRENT = new ThreadLocal<>();
+
+    final AtomicLong statements = new AtomicLong();
+    final AtomicLong lazyLoads = new AtomicLong();
+    final AtomicLong nodes = new AtomicLong();
+
+    static RequestMetrics open() {
+        RequestMetrics m = new RequestMetrics();
+        CURRENT.set(m);
+        return m;
+    }
+
+    static void close() {
+        CURRENT.remove();
+    }
+
+    /** The current request's counters, or null; capture it to report from another thread. */
+    public static RequestMetrics current() {
+        return CURRENT.get();
+    }
+
+    public static void nodesMaterialized(long count) {
+        RequestMetrics m = CURRENT.get();
+        if (m != null) m.addNodes(count);
+    }
+
+    static void statementExecuted() {
+        RequestMetrics m = CURRENT.get();
+        if (m != null) m.statements.incrementAndGet();
+    }
+
+    static void lazyLoaded() {
+        RequestMetrics m = CURRENT.get();
+        if (m != null) m.lazyLoads.incrementAndGet();
+    }
+
+    public void addNodes(long count) {
+        nodes.addAndGet(count);
+    }
+}
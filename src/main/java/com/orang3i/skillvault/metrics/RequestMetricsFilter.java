@@ -0,0 +1,191 @@
+package com.orang3i.skillvault.metrics;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.*;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpServletResponseWrapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Records per-request figures for /api requests, tagged by the matched route:
+ * SQL statements, lazy loads, tree nodes materialized and response bytes. Streaming responses
+ * are recorded when the async write completes. Requests slower than the threshold, or with more
+ * lazy loads than allowed, are logged with all of those figures.
+ */
+@Component
+public class RequestMetricsFilter extends OncePerRequestFilter {
+
+    private static final Logger log = LoggerFactory.getLogger(RequestMetricsFilter.class);
+
+    private final MeterRegistry registry;
+    private final long slowMillis;
+    private final long lazyLoadLimit;
+
+    public RequestMetricsFilter(MeterRegistry registry,
+                                @Value("${skillvault.metrics.slow-request-ms:500}") long slowMillis,
+                                @Value("${skillvault.metrics.lazy-load-limit:20}") long lazyLoadLimit) {
+        this.registry = registry;
+        this.slowMillis = slowMillis;
+        this.lazyLoadLimit = lazyLoadLimit;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !request.getRequestURI().startsWith("/api/");
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        long start = System.nanoTime();
+        RequestMetrics metrics = RequestMetrics.open();
+        CountingResponse counting = new CountingResponse(response);
+        try {
+            chain.doFilter(request, counting);
+            counting.flushWriter();
+        } finally {
+            RequestMetrics.close();
+        }
+
+        if (request.isAsyncStarted()) {
+            request.getAsyncContext().addListener(new AsyncListener() {
+                @Override
+                public void onComplete(AsyncEvent event) {
+                    record(request, response, metrics, counting.bytes.get(), start);
+                }
+
+                @Override
+                public void onTimeout(AsyncEvent event) {
+                }
+
+                @Override
+                public void onError(AsyncEvent event) {
+                }
+
+                @Override
+                public void onStartAsync(AsyncEvent event) {
+                }
+            });
+        } else {
+            record(request, response, metrics, counting.bytes.get(), start);
+        }
+    }
+
+    private void record(HttpServletRequest request, HttpServletResponse response, RequestMetrics m,
+                        long bytes, long start) {
+        long millis = (System.nanoTime() - start) / 1_000_000;
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        String uri = (pattern == null) ? "UNKNOWN" : pattern.toString();
+        String method = request.getMethod();
+
+        summary("skillvault.request.statements", "SQL statements prepared by Hibernate per request", null, method, uri)
+                .record(m.statements.get());
+        summary("skillvault.request.lazy.loads", "Proxies and collections initialized lazily per request", null, method, uri)
+                .record(m.lazyLoads.get());
+        summary("skillvault.request.nodes", "Tree nodes materialized per request", null, method, uri)
+                .record(m.nodes.get());
+        summary("skillvault.request.payload", "Response body size", "bytes", method, uri)
+                .record(bytes);
+
+        if (millis >= slowMillis || m.lazyLoads.get() > lazyLoadLimit) {
+            log.warn("{} request {} {} ({}): status={} millis={} statements={} lazyLoads={} nodes={} bytes={}",
+                    millis >= slowMillis ? "Slow" : "Lazy-loading", method, request.getRequestURI(), uri,
+                    response.getStatus(), millis, m.statements.get(), m.lazyLoads.get(), m.nodes.get(), bytes);
+        }
+    }
+
+    private DistributionSummary summary(String name, String description, String unit, String method, String uri) {
+        return DistributionSummary.builder(name)
+                .description(description)
+                .baseUnit(unit)
+                .tags("method", method, "uri", uri)
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+
+    /** Counts body bytes on their way to the real response. */
+    private static final class CountingResponse extends HttpServletResponseWrapper {
+        final AtomicLong bytes = new AtomicLong();
+        private ServletOutputStream stream;
+        private PrintWriter writer;
+
+        CountingResponse(HttpServletResponse response) {
+            super(response);
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() throws IOException {
+            if (stream == null) {
+                ServletOutputStream target = super.getOutputStream();
+                stream = new ServletOutputStream() {
+                    @Override
+                    public void write(int b) throws IOException {
+                        target.write(b);
+                        bytes.incrementAndGet();
+                    }
+
+                    @Override
+                    public void write(byte[] b, int off, int len) throws IOException {
+                        target.write(b, off, len);
+                        bytes.addAndGet(len);
+                    }
+
+                    @Override
+                    public void flush() throws IOException {
+                        target.flush();
+                    }
+
+                    @Override
+                    public void close() throws IOException {
+                        target.close();
+                    }
+
+                    @Override
+                    public boolean isReady() {
+                        return target.isReady();
+                    }
+
+                    @Override
+                    public void setWriteListener(WriteListener listener) {
+                        target.setWriteListener(listener);
+                    }
+                };
+            }
+            return stream;
+        }
+
+        @Override
+        public PrintWriter getWriter() throws IOException {
+            if (writer == null) {
+                String encoding = (getCharacterEncoding() == null) ? StandardCharsets.UTF_8.name() : getCharacterEncoding();
+                writer = new PrintWriter(new OutputStreamWriter(getOutputStream(), encoding));
+            }
+            return writer;
+        }
+
+        @Override
+        public void flushBuffer() throws IOException {
+            flushWriter();
+            super.flushBuffer();
+        }
+
+        void flushWriter() {
+            if (writer != null) {
+                writer.flush();
+            }
+        }
+    }
+}
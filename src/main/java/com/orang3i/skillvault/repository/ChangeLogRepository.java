@@ -0,0 +1,24 @@
+package com.orang3i.skillvault.repository;
+
+import com.orang3i.skillvault.entity.ChangeLogEntry;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.Instant;
+import java.util.List;
+
+public interface ChangeLogRepository extends JpaRepository<ChangeLogEntry, Long> {
+
+    // one vault's entries in (after, upTo], in id order
+    @Query("select e from ChangeLogEntry e where e.vaultId = :vault and e.id > :after and e.id <= :upTo order by e.id")
+    List<ChangeLogEntry> findRange(@Param("vault") String vault, @Param("after") long after, @Param("upTo") long upTo,
+                                   Limit limit);
+
+    @Query("select min(e.id) from ChangeLogEntry e where e.changedAt >= :cutoff")
+    Long findFirstIdSince(@Param("cutoff") Instant cutoff);
+
+    @Query("select max(e.id) from ChangeLogEntry e")
+    Long findMaxId();
+}
@@ -0,0 +1,88 @@
+package com.orang3i.skillvault.repository;
+
+import com.orang3i.skillvault.entity.NodeClosure;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+public interface NodeClosureRepository extends JpaRepository<NodeClosure, NodeClosure.Key> {
+
+    long countByAncestorIdAndDepthGreaterThan(UUID ancestorId, int depth);
+
+    long countByDepth(int depth);
+
+    List<NodeClosure> findByDescendantIdIn(Collection<UUID> descendantIds);
+
+    // (descendant, ancestor) pairs, each descendant's nearest first; scalar so every call reads fresh rows
+    @Query("select c.descendantId, c.ancestorId from NodeClosure c where c.descendantId in :ids order by c.descendantId, c.depth")
+    List<Object[]> findPaths(@Param("ids") Collection<UUID> ids);
+
+    // The node itself first, then its parent, grandparent, ... up to the root
+    @Query("select c.ancestorId from NodeClosure c where c.descendantId = :id order by c.depth")
+    List<UUID> findAncestorIds(@Param("id") UUID id);
+
+    // New node: its self row plus one row per ancestor of the parent (if any)
+    @Modifying
+    @Query(value = "INSERT INTO node_closure (ancestor_id, descendant_id, depth) VALUES (:id, :id, 0)",
+            nativeQuery = true)
+    int insertSelf(@Param("id") UUID id);
+
+    @Modifying
+    @Query(value = """
+            INSERT INTO node_closure (ancestor_id, descendant_id, depth)
+            SELECT ancestor_id, :id, depth + 1 FROM node_closure WHERE descendant_id = :parentId
+            """, nativeQuery = true)
+    int insertUnderParent(@Param("id") UUID id, @Param("parentId") UUID parentId);
+
+    // Move, step 1: cut every link between the subtree and the node's old ancestors
+    @Modifying
+    @Query(value = """
+            DELETE FROM node_closure
+            WHERE descendant_id IN (SELECT descendant_id FROM node_closure WHERE ancestor_id = :id)
+              AND ancestor_id IN (SELECT ancestor_id FROM node_closure WHERE descendant_id = :id AND ancestor_id <> :id)
+            """, nativeQuery = true)
+    int detachSubtree(@Param("id") UUID id);
+
+    // Move, step 2: cross join the new parent's ancestors with the subtree's descendants
+    @Modifying
+    @Query(value = """
+            INSERT INTO node_closure (ancestor_id, descendant_id, depth)
+            SELECT a.ancestor_id, d.descendant_id, a.depth + d.depth + 1
+            FROM node_closure a JOIN node_closure d ON d.ancestor_id = :id
+            WHERE a.descendant_id = :newParentId
+            """, nativeQuery = true)
+    int attachSubtree(@Param("id") UUID id, @Param("newParentId") UUID newParentId);
+
+    @Modifying
+    @Query(value = """
+            DELETE FROM node_closure
+            WHERE descendant_id IN (SELECT descendant_id FROM node_closure WHERE ancestor_id = :id)
+            """, nativeQuery = true)
+    int deleteSubtree(@Param("id") UUID id);
+
+    // Full rebuild from parent_id, one statement per tree level
+    @Modifying
+    @Query(value = "DELETE FROM node_closure", nativeQuery = true)
+    int deleteAllRows();
+
+    @Modifying
+    @Query(value = """
+            INSERT INTO node_closure (ancestor_id, descendant_id, depth)
+            SELECT id, id, 0 FROM nodes
+            """, nativeQuery = true)
+    int insertAllSelfRows();
+
+    @Modifying
+    @Query(value = """
+            INSERT INTO node_closure (ancestor_id, descendant_id, depth)
+            SELECT c.ancestor_id, n.id, c.depth + 1
+            FROM node_closure c JOIN nodes n ON n.parent_id = c.descendant_id
+            WHERE c.depth = :depth
+            """, nativeQuery = true)
+    int insertNextLevel(@Param("depth") int depth);
+}
@@ -1,18 +1,179 @@
 package com.orang3i.skillvault.repository;
 
 import com.orang3i.skillvault.entity.Node;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
 public interface NodeRepository extends JpaRepository<Node, UUID> {
 
-    List<Node> findByParentId(UUID parentId);
+    // Constructor-expression projections: only the listed columns are read and nothing enters the
+    // persistence context. The description (up to 5000 characters) is only selected when asked for.
+    String NODE_ROW = """
+            select new com.orang3i.skillvault.repository.NodeRow(n.id, n.parent.id, n.title,
+                   case when :withDescription = true then n.description end,
+                   n.category, n.mastery, n.createdAt, n.updatedAt)
+            """;
+    String TREE_ROW = """
+            select new com.orang3i.skillvault.repository.TreeRow(n.id, n.parent.id, n.title, n.category, n.mastery,
+                   n.createdAt)
+            """;
 
-    // For roots (parent is null)
-    List<Node> findByParentIsNull();
+    // Every query a request drives names its vault, the leading column of the nodes indexes. Ids are
+    // global primary keys, so a lookup by id also checks the vault; one from another vault finds nothing.
+    // Lists and trees return siblings in (createdAt, id) order, the order /children pages them in.
 
-    Optional<Node> findById(UUID id);
+    @Query(NODE_ROW + " from Node n where n.vaultId = :vault and n.parent.id = :parentId order by n.createdAt, n.id")
+    List<NodeRow> findChildRows(@Param("vault") String vault, @Param("parentId") UUID parentId,
+                                @Param("withDescription") boolean withDescription);
+
+    @Query(NODE_ROW + " from Node n where n.vaultId = :vault and n.parent is null order by n.createdAt, n.id")
+    List<NodeRow> findRootRows(@Param("vault") String vault, @Param("withDescription") boolean withDescription);
+
+    Optional<Node> findByIdAndVaultId(UUID id, String vaultId);
+
+    boolean existsByIdAndVaultId(UUID id, String vaultId);
+
+    List<Node> findByVaultIdAndIdIn(String vaultId, Collection<UUID> ids);
+
+    // [id, vaultId] for the ids that exist, whichever vault they are in
+    @Query("select n.id, n.vaultId from Node n where n.id in :ids")
+    List<Object[]> findVaults(@Param("ids") Collection<UUID> ids);
+
+    // SELECT ... FOR UPDATE in id order, so writers locking overlapping sets queue instead of deadlocking.
+    // Only called with ids already checked against the caller's vault.
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select n from Node n where n.id in :ids order by n.id")
+    List<Node> lockAll(@Param("ids") Collection<UUID> ids);
+
+    // Keyset pages of children ordered by (createdAt, id). The leading ">=" keeps the predicate
+    // an index range seek on (vault_id, parent_id, created_at, id); the OR only breaks ties inside it.
+    @Query(NODE_ROW + " from Node n where n.vaultId = :vault and n.parent.id = :parentId order by n.createdAt, n.id")
+    List<NodeRow> findChildrenFirstPage(@Param("vault") String vault, @Param("parentId") UUID parentId,
+                                        @Param("withDescription") boolean withDescription, Limit limit);
+
+    @Query(NODE_ROW + """
+            from Node n where n.vaultId = :vault and n.parent.id = :parentId
+              and n.createdAt >= :createdAt and (n.createdAt > :createdAt or n.id > :id)
+            order by n.createdAt, n.id
+            """)
+    List<NodeRow> findChildrenPageAfter(@Param("vault") String vault, @Param("parentId") UUID parentId,
+                                        @Param("createdAt") Instant createdAt, @Param("id") UUID id,
+                                        @Param("withDescription") boolean withDescription, Limit limit);
+
+    @Query(NODE_ROW + " from Node n where n.vaultId = :vault and n.parent is null order by n.createdAt, n.id")
+    List<NodeRow> findRootsFirstPage(@Param("vault") String vault, @Param("withDescription") boolean withDescription,
+                                     Limit limit);
+
+    @Query(NODE_ROW + """
+            from Node n where n.vaultId = :vault and n.parent is null
+              and n.createdAt >= :createdAt and (n.createdAt > :createdAt or n.id > :id)
+            order by n.createdAt, n.id
+            """)
+    List<NodeRow> findRootsPageAfter(@Param("vault") String vault, @Param("createdAt") Instant createdAt,
+                                     @Param("id") UUID id, @Param("withDescription") boolean withDescription,
+                                     Limit limit);
+
+    // Keyset pages of one category, over the (vault_id, category, created_at, id) index
+    @Query(NODE_ROW + " from Node n where n.vaultId = :vault and n.category = :category order by n.createdAt, n.id")
+    List<NodeRow> findCategoryFirstPage(@Param("vault") String vault, @Param("category") String category,
+                                        @Param("withDescription") boolean withDescription, Limit limit);
+
+    @Query(NODE_ROW + """
+            from Node n where n.vaultId = :vault and n.category = :category
+              and n.createdAt >= :createdAt and (n.createdAt > :createdAt or n.id > :id)
+            order by n.createdAt, n.id
+            """)
+    List<NodeRow> findCategoryPageAfter(@Param("vault") String vault, @Param("category") String category,
+                                        @Param("createdAt") Instant createdAt, @Param("id") UUID id,
+                                        @Param("withDescription") boolean withDescription, Limit limit);
+
+    // [category, count, avg mastery] per category; a null category is its own group
+    @Query("select n.category, count(n), avg(n.mastery) from Node n where n.vaultId = :vault group by n.category")
+    List<Object[]> countByCategory(@Param("vault") String vault);
+
+    // same, for the subtree under rootId (the root included), through the closure table
+    @Query("""
+            select n.category, count(n), avg(n.mastery)
+            from NodeClosure c join Node n on n.id = c.descendantId
+            where c.ancestorId = :rootId and n.vaultId = :vault
+            group by n.category
+            """)
+    List<Object[]> countByCategoryUnder(@Param("vault") String vault, @Param("rootId") UUID rootId);
+
+    // [id, parentId, mastery] for every node of every vault, for the aggregate rebuild
+    @Query("select n.id, n.parent.id, n.mastery from Node n")
+    List<Object[]> findAllMasteryRows();
+
+    // [id, parentId, title, description, category, mastery, vaultId] for every node, for the search index
+    @Query("select n.id, n.parent.id, n.title, n.description, n.category, n.mastery, n.vaultId from Node n")
+    List<Object[]> findAllSearchRows();
+
+    // Set-based subtree delete: unlink the rows first so the self-referencing parent_id key never
+    // sees a parent removed before its children, then delete them all in one statement
+    @Modifying(flushAutomatically = true)
+    @Query(value = """
+            UPDATE nodes SET parent_id = NULL
+            WHERE id IN (SELECT descendant_id FROM node_closure WHERE ancestor_id = :id)
+            """, nativeQuery = true)
+    int unlinkSubtree(@Param("id") UUID id);
+
+    @Modifying(clearAutomatically = true)
+    @Query(value = """
+            DELETE FROM nodes
+            WHERE id IN (SELECT descendant_id FROM node_closure WHERE ancestor_id = :id)
+            """, nativeQuery = true)
+    int deleteSubtree(@Param("id") UUID id);
+
+    @Query("select n.id, n.mastery from Node n where n.vaultId = :vault and n.id in :ids")
+    List<Object[]> findMasteries(@Param("vault") String vault, @Param("ids") Collection<UUID> ids);
+
+    @Query("select n.id from Node n where n.vaultId = :vault and n.id in :ids")
+    List<UUID> findExistingIds(@Param("vault") String vault, @Param("ids") Collection<UUID> ids);
+
+    // Every node of a vault in one statement, in the same order the children queries return them
+    @Query(NODE_ROW + " from Node n where n.vaultId = :vault order by n.createdAt, n.id")
+    List<NodeRow> findAllRows(@Param("vault") String vault, @Param("withDescription") boolean withDescription);
+
+    @Query(TREE_ROW + " from Node n where n.vaultId = :vault order by n.createdAt, n.id")
+    List<TreeRow> findAllTreeRows(@Param("vault") String vault);
+
+    // The root and all of its descendants in one statement, found through the closure table
+    @Query(TREE_ROW + """
+            from NodeClosure c join Node n on n.id = c.descendantId
+            where c.ancestorId = :rootId and n.vaultId = :vault order by n.createdAt, n.id
+            """)
+    List<TreeRow> findSubtreeRows(@Param("vault") String vault, @Param("rootId") UUID rootId);
+
+    // Same, but only down to "depth" levels below the root
+    @Query(TREE_ROW + """
+            from NodeClosure c join Node n on n.id = c.descendantId
+            where c.ancestorId = :rootId and c.depth <= :depth and n.vaultId = :vault order by n.createdAt, n.id
+            """)
+    List<TreeRow> findSubtreeRowsToDepth(@Param("vault") String vault, @Param("rootId") UUID rootId,
+                                         @Param("depth") int depth);
+
+    // Every root of a vault and its descendants down to "depth" levels
+    @Query(TREE_ROW + """
+            from NodeClosure c join Node n on n.id = c.descendantId join Node r on r.id = c.ancestorId
+            where r.vaultId = :vault and r.parent is null and c.depth <= :depth order by n.createdAt, n.id
+            """)
+    List<TreeRow> findForestRowsToDepth(@Param("vault") String vault, @Param("depth") int depth);
+
+    // [parentId, number of children] per parent, answered from the (vault_id, parent_id) index without loading children
+    @Query("""
+            select n.parent.id, count(n) from Node n
+            where n.vaultId = :vault and n.parent.id in :parentIds group by n.parent.id
+            """)
+    List<Object[]> countChildren(@Param("vault") String vault, @Param("parentIds") Collection<UUID> parentIds);
 }
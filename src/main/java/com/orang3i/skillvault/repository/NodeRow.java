@@ -0,0 +1,13 @@
+package com.orang3i.skillvault.repository;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * Read-only projection of a node for the list reads and the snapshot load: every column but the version,
+ * with description null when the query was asked to leave it out. Not an entity, so Hibernate keeps no
+ * managed copy or dirty-checking snapshot of it.
+ */
+public record NodeRow(UUID id, UUID parentId, String title, String description, String category, int mastery,
+                      Instant createdAt, Instant updatedAt) {
+}
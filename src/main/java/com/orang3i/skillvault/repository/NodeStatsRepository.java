@@ -0,0 +1,136 @@
+package com.orang3i.skillvault.repository;
+
+import com.orang3i.skillvault.entity.NodeStats;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+public interface NodeStatsRepository extends JpaRepository<NodeStats, UUID> {
+
+    // Read as a projection so the values come from the database even after native updates in the same transaction
+    interface Totals {
+        long getDescendantCount();
+
+        long getMasterySum();
+
+        int getMasteryMin();
+
+        int getMasteryMax();
+    }
+
+    @Query("""
+            select s.descendantCount as descendantCount, s.masterySum as masterySum,
+                   s.masteryMin as masteryMin, s.masteryMax as masteryMax
+            from NodeStats s where s.nodeId = :id
+            """)
+    Optional<Totals> findTotals(@Param("id") UUID id);
+
+    @Modifying
+    @Query(value = """
+            INSERT INTO node_stats (node_id, descendant_count, mastery_sum, mastery_min, mastery_max)
+            VALUES (:id, 0, :mastery, :mastery, :mastery)
+            """, nativeQuery = true)
+    int insertLeaf(@Param("id") UUID id, @Param("mastery") int mastery);
+
+    // Adds a subtree's totals to a node and all of its ancestors; min/max can only widen
+    @Modifying
+    @Query(value = """
+            UPDATE node_stats SET
+                descendant_count = descendant_count + :count,
+                mastery_sum = mastery_sum + :sum,
+                mastery_min = LEAST(mastery_min, :min),
+                mastery_max = GREATEST(mastery_max, :max)
+            WHERE node_id IN (SELECT ancestor_id FROM node_closure WHERE descendant_id = :nodeId)
+            """, nativeQuery = true)
+    int addToChain(@Param("nodeId") UUID nodeId, @Param("count") long count, @Param("sum") long sum,
+                   @Param("min") int min, @Param("max") int max);
+
+    // Removes a subtree's totals from a node and all of its ancestors; min/max must be recomputed afterwards
+    @Modifying
+    @Query(value = """
+            UPDATE node_stats SET
+                descendant_count = descendant_count - :count,
+                mastery_sum = mastery_sum - :sum
+            WHERE node_id IN (SELECT ancestor_id FROM node_closure WHERE descendant_id = :nodeId)
+            """, nativeQuery = true)
+    int subtractFromChain(@Param("nodeId") UUID nodeId, @Param("count") long count, @Param("sum") long sum);
+
+    @Modifying
+    @Query(value = """
+            UPDATE node_stats SET mastery_sum = mastery_sum + :delta
+            WHERE node_id IN (SELECT ancestor_id FROM node_closure WHERE descendant_id = :nodeId)
+            """, nativeQuery = true)
+    int addMasteryToChain(@Param("nodeId") UUID nodeId, @Param("delta") long delta);
+
+    /**
+     * [own mastery, stored min, stored max, min over children, max over children] for one node.
+     * The children figures are null for a leaf.
+     */
+    @Query(value = """
+            SELECT n.mastery, s.mastery_min, s.mastery_max,
+                   (SELECT MIN(cs.mastery_min) FROM nodes c JOIN node_stats cs ON cs.node_id = c.id WHERE c.parent_id = n.id),
+                   (SELECT MAX(cs.mastery_max) FROM nodes c JOIN node_stats cs ON cs.node_id = c.id WHERE c.parent_id = n.id)
+            FROM nodes n JOIN node_stats s ON s.node_id = n.id
+            WHERE n.id = :id
+            """, nativeQuery = true)
+    List<Object[]> findMinMaxInputs(@Param("id") UUID id);
+
+    @Modifying
+    @Query(value = "UPDATE node_stats SET mastery_min = :min, mastery_max = :max WHERE node_id = :id",
+            nativeQuery = true)
+    int updateMinMax(@Param("id") UUID id, @Param("min") int min, @Param("max") int max);
+
+    /**
+     * [parent id, descendant count incl. the children themselves, mastery sum, min, max] over the
+     * children of the given nodes that are not in the set themselves, one row per parent.
+     */
+    @Query("""
+            select c.parent.id, sum(s.descendantCount + 1), sum(s.masterySum), min(s.masteryMin), max(s.masteryMax)
+            from Node c join NodeStats s on s.nodeId = c.id
+            where c.parent.id in :ids and c.id not in :ids
+            group by c.parent.id
+            """)
+    List<Object[]> sumChildrenOutside(@Param("ids") Collection<UUID> ids);
+
+    @Modifying
+    @Query(value = """
+            UPDATE node_stats SET subtree_version = :version
+            WHERE node_id IN (SELECT ancestor_id FROM node_closure WHERE descendant_id = :nodeId)
+            """, nativeQuery = true)
+    int touchChain(@Param("nodeId") UUID nodeId, @Param("version") long version);
+
+    @Query("""
+            select s.subtreeVersion from NodeStats s join Node n on n.id = s.nodeId
+            where s.nodeId = :id and n.vaultId = :vault
+            """)
+    Optional<Long> findSubtreeVersion(@Param("vault") String vault, @Param("id") UUID id);
+
+    @Query("select max(s.subtreeVersion) from NodeStats s")
+    Long findMaxVersion();
+
+    // [row count, max subtree_version] of one vault, read from its roots alone: every write stamps the whole
+    // chain up to the root, and the roots' descendant counts add up to the vault's size
+    @Query("""
+            select coalesce(sum(s.descendantCount + 1), 0), coalesce(max(s.subtreeVersion), 0)
+            from Node n join NodeStats s on s.nodeId = n.id
+            where n.vaultId = :vault and n.parent is null
+            """)
+    List<Object[]> findVaultVersion(@Param("vault") String vault);
+
+    @Modifying
+    @Query(value = """
+            DELETE FROM node_stats
+            WHERE node_id IN (SELECT descendant_id FROM node_closure WHERE ancestor_id = :id)
+            """, nativeQuery = true)
+    int deleteSubtree(@Param("id") UUID id);
+
+    @Modifying
+    @Query(value = "DELETE FROM node_stats WHERE node_id NOT IN (SELECT id FROM nodes)", nativeQuery = true)
+    int deleteOrphans();
+}
@@ -0,0 +1,8 @@
+package com.orang3i.skillvault.repository;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/** Read-only projection with just the columns a tree node shows. */
+public record TreeRow(UUID id, UUID parentId, String title, String category, int mastery, Instant createdAt) {
+}
@@ -0,0 +1,322 @@
+package com.orang3i.skillvault.search;
+
+import com.orang3i.skillvault.dto.NodeResponse;
+import com.orang3i.skillvault.dto.NodeSearchResult;
+import com.orang3i.skillvault.event.NodeChangedEvent;
+import com.orang3i.skillvault.event.NodesChangedEvent;
+import com.orang3i.skillvault.event.NodesImportedEvent;
+import com.orang3i.skillvault.entity.Node;
+import com.orang3i.skillvault.repository.NodeRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
+
+/**
+ * In-memory inverted index over title, description and category, one partition per vault, so a query
+ * only ever scans the postings of the caller's vault.
+ * Terms are kept in a sorted map so a query token also matches every term it is a prefix of.
+ * A document matches when every query token matches one of its terms; the score adds up the
+ * field weights of the matching terms, with exact matches counting double.
+ * Built in parallel at startup and kept current from committed NodeChangedEvents and NodesChangedEvents.
+ */
+@Component
+public class SearchIndex implements ApplicationRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(SearchIndex.class);
+
+    private static final float TITLE_WEIGHT = 3f;
+    private static final float CATEGORY_WEIGHT = 2f;
+    private static final float DESCRIPTION_WEIGHT = 1f;
+    private static final float EXACT_BOOST = 2f;
+    // a one-letter prefix can expand to a large part of the vocabulary; stop collecting after this many terms
+    private static final int MAX_PREFIX_TERMS = 2000;
+    private static final int BUILD_CHUNK = 5000;
+
+    private record Doc(UUID id, UUID parentId, String title, String category, int mastery, Set<String> terms) {
+    }
+
+    private static final class Partition {
+        final NavigableMap<String, Map<UUID, Float>> postings = new TreeMap<>();
+        final Map<UUID, Doc> docs = new HashMap<>();
+        final Map<UUID, Set<UUID>> children = new HashMap<>();
+    }
+
+    private final NodeRepository nodeRepository;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private Map<String, Partition> partitions = new HashMap<>();
+    // changes applied while a rebuild reads and builds; replayed onto its result before the swap (write lock)
+    private List<Consumer<Map<String, Partition>>> replay;
+    private final Object rebuildLock = new Object();
+
+    public SearchIndex(NodeRepository nodeRepository) {
+        this.nodeRepository = nodeRepository;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        rebuild();
+    }
+
+    /**
+     * Reloads every node and replaces the index. Tokenizing and building run in parallel over chunks
+     * of rows without the lock, so searches and change events go on meanwhile; the changes applied in
+     * the meantime are replayed onto the new partitions, which are then swapped in under the write lock.
+     */
+    public void rebuild() {
+        synchronized (rebuildLock) {
+            long start = System.nanoTime();
+            lock.writeLock().lock();
+            try {
+                replay = new ArrayList<>();
+            } finally {
+                lock.writeLock().unlock();
+            }
+
+            Map<String, Partition> built = new HashMap<>();
+            try {
+                List<Object[]> rows = nodeRepository.findAllSearchRows();
+                int chunks = (rows.size() + BUILD_CHUNK - 1) / BUILD_CHUNK;
+                IntStream.range(0, chunks).parallel()
+                        .mapToObj(c -> {
+                            Map<String, Partition> local = new HashMap<>();
+                            for (Object[] row : rows.subList(c * BUILD_CHUNK, Math.min(rows.size(), (c + 1) * BUILD_CHUNK))) {
+                                add(partition(local, (String) row[6]), (UUID) row[0], (UUID) row[1], (String) row[2],
+                                        (String) row[3], (String) row[4], ((Number) row[5]).intValue());
+                            }
+                            return local;
+                        })
+                        .toList()
+                        .forEach(chunk -> merge(built, chunk));
+            } catch (RuntimeException e) {
+                lock.writeLock().lock();
+                try {
+                    replay = null;
+                } finally {
+                    lock.writeLock().unlock();
+                }
+                throw e;
+            }
+
+            int changes;
+            lock.writeLock().lock();
+            try {
+                changes = replay.size();
+                replay.forEach(change -> change.accept(built));
+                replay = null;
+                partitions = built;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            log.info("Built search index for {} nodes ({} terms, {} changes replayed) in {} ms",
+                    built.values().stream().mapToInt(p -> p.docs.size()).sum(),
+                    built.values().stream().mapToInt(p -> p.postings.size()).sum(),
+                    changes, (System.nanoTime() - start) / 1_000_000);
+        }
+    }
+
+    public List<NodeSearchResult> search(String vault, String query, int limit) {
+        List<String> tokens = Tokenizer.tokens(query);
+        if (tokens.isEmpty()) {
+            return List.of();
+        }
+
+        lock.readLock().lock();
+        try {
+            Partition p = partitions.get(vault);
+            if (p == null) {
+                return List.of();
+            }
+            NavigableMap<String, Map<UUID, Float>> postings = p.postings;
+            Map<UUID, Doc> docs = p.docs;
+            Map<UUID, Float> scores = null;
+            for (String token : new LinkedHashSet<>(tokens)) {
+                Map<UUID, Float> tokenScores = new HashMap<>();
+                int expanded = 0;
+                for (Map.Entry<String, Map<UUID, Float>> e : postings.subMap(token, true, token + Character.MAX_VALUE, false).entrySet()) {
+                    float boost = e.getKey().equals(token) ? EXACT_BOOST : 1f;
+                    e.getValue().forEach((id, w) -> tokenScores.merge(id, w * boost, Math::max));
+                    if (++expanded == MAX_PREFIX_TERMS) break;
+                }
+                if (scores == null) {
+                    scores = tokenScores;
+                } else {
+                    // every token has to match
+                    Map<UUID, Float> previous = scores;
+                    scores = new HashMap<>();
+                    for (Map.Entry<UUID, Float> e : tokenScores.entrySet()) {
+                        Float s = previous.get(e.getKey());
+                        if (s != null) scores.put(e.getKey(), s + e.getValue());
+                    }
+                }
+                if (scores.isEmpty()) {
+                    return List.of();
+                }
+            }
+
+            Comparator<Map.Entry<UUID, Float>> byScore = Map.Entry.<UUID, Float>comparingByValue().reversed();
+            return scores.entrySet().stream()
+                    .sorted(byScore.thenComparing(e -> docs.get(e.getKey()).title(), Comparator.nullsLast(Comparator.naturalOrder())))
+                    .limit(limit)
+                    .map(e -> toResult(docs, docs.get(e.getKey()), e.getValue()))
+                    .toList();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @TransactionalEventListener
+    public void onNodeChanged(NodeChangedEvent e) {
+        apply(target -> applyChange(partition(target, e.vaultId()), e));
+    }
+
+    // the whole batch under one write lock
+    @TransactionalEventListener
+    public void onNodesChanged(NodesChangedEvent e) {
+        apply(target -> {
+            Partition p = partition(target, e.vaultId());
+            for (NodeChangedEvent c : e.changes()) {
+                applyChange(p, c);
+            }
+        });
+    }
+
+    private static void applyChange(Partition p, NodeChangedEvent e) {
+        if (e.type() == NodeChangedEvent.Type.DELETED) {
+            removeSubtree(p, e.nodeId());
+        } else {
+            upsert(p, e.node().id, e.node().parentId, e.node().title, e.node().description,
+                    e.node().category, e.node().mastery);
+        }
+    }
+
+    @TransactionalEventListener
+    public void onNodesImported(NodesImportedEvent e) {
+        List<Node> nodes = nodeRepository.findAllById(e.nodeIds());
+        apply(target -> {
+            Partition p = partition(target, e.vaultId());
+            for (Node n : nodes) {
+                upsert(p, n.getId(), (n.getParent() == null) ? null : n.getParent().getId(), n.getTitle(),
+                        n.getDescription(), n.getCategory(), n.getMastery());
+            }
+        });
+    }
+
+    // changes set a document to its committed state, so replaying one the rebuild already read is harmless
+    private void apply(Consumer<Map<String, Partition>> change) {
+        lock.writeLock().lock();
+        try {
+            change.accept(partitions);
+            if (replay != null) {
+                replay.add(change);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private static Partition partition(Map<String, Partition> target, String vault) {
+        return target.computeIfAbsent(vault, k -> new Partition());
+    }
+
+    // adds a document that is not in the partition yet
+    private static void add(Partition p, UUID id, UUID parentId, String title, String description, String category,
+                            int mastery) {
+        Map<String, Float> weights = weights(title, description, category);
+        weights.forEach((term, w) -> p.postings.computeIfAbsent(term, k -> new HashMap<>()).put(id, w));
+        p.docs.put(id, new Doc(id, parentId, title, category, mastery, weights.keySet()));
+        if (parentId != null) {
+            p.children.computeIfAbsent(parentId, k -> new HashSet<>()).add(id);
+        }
+    }
+
+    // folds the partitions of one build chunk into another; chunks hold disjoint documents
+    private static void merge(Map<String, Partition> into, Map<String, Partition> from) {
+        from.forEach((vault, p) -> {
+            Partition target = partition(into, vault);
+            p.postings.forEach((term, ids) -> target.postings.merge(term, ids, (a, b) -> {
+                a.putAll(b);
+                return a;
+            }));
+            target.docs.putAll(p.docs);
+            p.children.forEach((parent, kids) -> target.children.merge(parent, kids, (a, b) -> {
+                a.addAll(b);
+                return a;
+            }));
+        });
+    }
+
+    private static void upsert(Partition p, UUID id, UUID parentId, String title, String description, String category,
+                               int mastery) {
+        removeDoc(p, id);
+        add(p, id, parentId, title, description, category, mastery);
+    }
+
+    private static void removeSubtree(Partition p, UUID id) {
+        Deque<UUID> stack = new ArrayDeque<>();
+        stack.push(id);
+        while (!stack.isEmpty()) {
+            UUID cur = stack.pop();
+            Set<UUID> kids = p.children.remove(cur);
+            if (kids != null) kids.forEach(stack::push);
+            removeDoc(p, cur);
+        }
+    }
+
+    private static void removeDoc(Partition p, UUID id) {
+        Doc old = p.docs.remove(id);
+        if (old == null) {
+            return;
+        }
+        for (String term : old.terms()) {
+            Map<UUID, Float> ids = p.postings.get(term);
+            if (ids != null && ids.remove(id) != null && ids.isEmpty()) {
+                p.postings.remove(term);
+            }
+        }
+        if (old.parentId() != null) {
+            Set<UUID> siblings = p.children.get(old.parentId());
+            if (siblings != null) siblings.remove(id);
+        }
+    }
+
+    private static NodeSearchResult toResult(Map<UUID, Doc> docs, Doc doc, float score) {
+        NodeSearchResult r = new NodeSearchResult();
+        r.id = doc.id();
+        r.title = doc.title();
+        r.category = doc.category();
+        r.mastery = doc.mastery();
+        r.score = score;
+
+        LinkedList<NodeSearchResult.PathEntry> path = new LinkedList<>();
+        Set<UUID> seen = new HashSet<>();
+        Doc cur = (doc.parentId() == null) ? null : docs.get(doc.parentId());
+        while (cur != null && seen.add(cur.id())) {
+            NodeSearchResult.PathEntry p = new NodeSearchResult.PathEntry();
+            p.id = cur.id();
+            p.title = cur.title();
+            path.addFirst(p);
+            cur = (cur.parentId() == null) ? null : docs.get(cur.parentId());
+        }
+        r.path = path;
+        return r;
+    }
+
+    // term -> weight of the best field it occurs in
+    private static Map<String, Float> weights(String title, String description, String category) {
+        Map<String, Float> w = new HashMap<>();
+        for (String t : Tokenizer.tokens(description)) w.merge(t, DESCRIPTION_WEIGHT, Math::max);
+        for (String t : Tokenizer.tokens(category)) w.merge(t, CATEGORY_WEIGHT, Math::max);
+        for (String t : Tokenizer.tokens(title)) w.merge(t, TITLE_WEIGHT, Math::max);
+        return w;
+    }
+}
@@ -0,0 +1,286 @@
+package com.orang3i.skillvault.service;
+
+import com.orang3i.skillvault.dto.NodeDeltaResponse;
+import com.orang3i.skillvault.dto.NodeResponse;
+import com.orang3i.skillvault.entity.ChangeLogEntry;
+import com.orang3i.skillvault.event.NodeChangedEvent;
+import com.orang3i.skillvault.event.NodesChangedEvent;
+import com.orang3i.skillvault.event.NodesImportedEvent;
+import com.orang3i.skillvault.repository.ChangeLogRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes the node change log and answers "what changed since token N".
+ * <p>
+ * Entries are collected while a write transaction runs and inserted just before it commits, in the same
+ * transaction. Their ids come from a sequence, so writers never wait for each other, but they can commit
+ * out of id order. Readers therefore stop at a high-water mark: the highest id below which every handed-out
+ * id has finished, committed or rolled back. An id only counts as finished after its transaction's
+ * after-commit listeners ran, so everything up to the mark is also applied to the tree cache. The mark is
+ * kept in memory, which assumes this process is the only one writing to the database.
+ * <p>
+ * Entries older than the retention are compacted away hourly; a token from before the compacted range
+ * gets a resync response instead of a silently incomplete delta.
+ * <p>
+ * Tokens count the changes of all vaults together, but a delta only reads the caller's vault's entries
+ * (through the (vault_id, id) index), so it costs the same however busy other vaults are.
+ */
+@Service
+public class ChangeLogService implements ApplicationRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(ChangeLogService.class);
+
+    public static final int MAX_DELTA_SIZE = 10000;
+    private static final int BATCH_SIZE = 1000;
+    private static final String INSERT_ENTRY =
+            "INSERT INTO node_change_log (id, vault_id, node_id, type, changed_at) VALUES (?, ?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbc;
+    private final ChangeLogRepository changeLogRepository;
+    private final NodeService nodeService;
+    private final Duration retention;
+    // ids handed out but not finished, by first id of each transaction's range; guarded by itself
+    private final TreeSet<Long> inFlight = new TreeSet<>();
+    private long allocated;
+    private final ScheduledExecutorService compactor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "change-log-compaction");
+        t.setDaemon(true);
+        return t;
+    });
+
+    public ChangeLogService(JdbcTemplate jdbc, ChangeLogRepository changeLogRepository, NodeService nodeService,
+                            @Value("${skillvault.changelog.retention-days:30}") long retentionDays) {
+        this.jdbc = jdbc;
+        this.changeLogRepository = changeLogRepository;
+        this.nodeService = nodeService;
+        this.retention = Duration.ofDays(retentionDays);
+    }
+
+    @PostConstruct
+    void init() {
+        // the head row and the sequence; a database that already had log entries keeps counting after the newest one
+        if (jdbc.queryForObject("SELECT count(*) FROM node_change_log_head", Long.class) == 0) {
+            jdbc.update("INSERT INTO node_change_log_head (id, compacted_through) VALUES (1, 0)");
+        }
+        // NO CACHE: the sequence restarts where it stopped, so lastId() reads the same across a restart
+        jdbc.execute("CREATE SEQUENCE IF NOT EXISTS node_change_log_seq NO CACHE");
+        Long max = changeLogRepository.findMaxId();
+        long next = jdbc.queryForObject("SELECT BASE_VALUE FROM INFORMATION_SCHEMA.SEQUENCES "
+                + "WHERE SEQUENCE_NAME = 'NODE_CHANGE_LOG_SEQ'", Long.class);
+        allocated = Math.max((max == null) ? 0 : max, next - 1);
+        if (next <= allocated) {
+            jdbc.execute("ALTER SEQUENCE node_change_log_seq RESTART WITH " + (allocated + 1));
+        }
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        compactor.scheduleWithFixedDelay(this::compactSafely, 1, 60, TimeUnit.MINUTES);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        compactor.shutdownNow();
+    }
+
+    @EventListener
+    public void onNodeChanged(NodeChangedEvent e) {
+        pending().add(e.vaultId(), e.nodeId(), e.type().name());
+    }
+
+    @EventListener
+    public void onNodesChanged(NodesChangedEvent e) {
+        Pending pending = pending();
+        for (NodeChangedEvent c : e.changes()) {
+            pending.add(c.vaultId(), c.nodeId(), c.type().name());
+        }
+    }
+
+    @EventListener
+    public void onNodesImported(NodesImportedEvent e) {
+        Pending pending = pending();
+        for (UUID id : e.nodeIds()) {
+            pending.add(e.vaultId(), id, NodeChangedEvent.Type.CREATED.name());
+        }
+    }
+
+    private Pending pending() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            throw new IllegalStateException("node changes must be published inside a transaction");
+        }
+        Pending pending = (Pending) TransactionSynchronizationManager.getResource(this);
+        if (pending == null) {
+            pending = new Pending();
+            TransactionSynchronizationManager.bindResource(this, pending);
+            TransactionSynchronizationManager.registerSynchronization(pending);
+        }
+        return pending;
+    }
+
+    private final class Pending implements TransactionSynchronization {
+        final List<String> vaults = new ArrayList<>();
+        final List<UUID> nodeIds = new ArrayList<>();
+        final List<String> types = new ArrayList<>();
+        long first = -1;
+
+        void add(String vault, UUID nodeId, String type) {
+            vaults.add(vault);
+            nodeIds.add(nodeId);
+            types.add(type);
+        }
+
+        @Override
+        public void beforeCommit(boolean readOnly) {
+            first = allocate(nodeIds.size());
+
+            Timestamp now = Timestamp.from(Instant.now());
+            List<Object[]> rows = new ArrayList<>(nodeIds.size());
+            for (int i = 0; i < nodeIds.size(); i++) {
+                rows.add(new Object[]{first + i, vaults.get(i), nodeIds.get(i), types.get(i), now});
+                if (rows.size() == BATCH_SIZE) {
+                    jdbc.batchUpdate(INSERT_ENTRY, rows);
+                    rows.clear();
+                }
+            }
+            if (!rows.isEmpty()) {
+                jdbc.batchUpdate(INSERT_ENTRY, rows);
+            }
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            TransactionSynchronizationManager.unbindResourceIfPossible(ChangeLogService.this);
+            if (first >= 0) {
+                synchronized (inFlight) {
+                    inFlight.remove(first);
+                }
+            }
+        }
+    }
+
+    // a consecutive range of ids, registered as in flight before anyone can see a later one
+    private long allocate(int count) {
+        synchronized (inFlight) {
+            List<Long> ids = jdbc.queryForList(
+                    "SELECT NEXT VALUE FOR node_change_log_seq FROM SYSTEM_RANGE(1, ?)", Long.class, count);
+            long first = Collections.min(ids);
+            inFlight.add(first);
+            allocated = Collections.max(ids);
+            return first;
+        }
+    }
+
+    /**
+     * Changes to the vault after the token, at most limit log entries' worth. Several entries for the same node
+     * collapse into its current state, or into "deleted" if it no longer exists.
+     *
+     * @param since token from the previous response, null for a first sync (always a resync)
+     */
+    public NodeDeltaResponse changesSince(String vault, Long since, int limit) {
+        if (limit < 1 || limit > MAX_DELTA_SIZE) {
+            throw new IllegalArgumentException("limit must be between 1 and " + MAX_DELTA_SIZE);
+        }
+        long lastId = lastId();
+        long compactedThrough = compactedThrough();
+
+        NodeDeltaResponse r = new NodeDeltaResponse();
+        r.nodes = List.of();
+        r.deleted = List.of();
+        if (since == null || since < compactedThrough || since > lastId) {
+            r.token = lastId;
+            r.resync = true;
+            return r;
+        }
+
+        List<ChangeLogEntry> entries = changeLogRepository.findRange(vault, since, lastId, Limit.of(limit));
+        r.hasMore = entries.size() == limit && entries.get(entries.size() - 1).getId() < lastId;
+        r.token = r.hasMore ? entries.get(entries.size() - 1).getId() : lastId;
+
+        Set<UUID> changed = new LinkedHashSet<>();
+        for (ChangeLogEntry e : entries) {
+            changed.add(e.getNodeId());
+        }
+        Map<UUID, NodeResponse> current = new HashMap<>();
+        for (NodeResponse n : nodeService.getAll(vault, changed)) {
+            current.put(n.id, n);
+        }
+        r.nodes = new ArrayList<>();
+        r.deleted = new ArrayList<>();
+        for (UUID id : changed) {
+            NodeResponse n = current.get(id);
+            if (n != null) {
+                r.nodes.add(n);
+            } else {
+                r.deleted.add(id);
+            }
+        }
+        return r;
+    }
+
+    /**
+     * The high-water mark: every change up to this id is committed and applied to the tree cache, and every
+     * later one is not visible yet. It moves with every finished write.
+     */
+    public long lastId() {
+        synchronized (inFlight) {
+            return inFlight.isEmpty() ? allocated : inFlight.first() - 1;
+        }
+    }
+
+    /** Highest id compaction may have removed; changes after it are all still in the log. */
+    public long compactedThrough() {
+        return jdbc.queryForObject("SELECT compacted_through FROM node_change_log_head WHERE id = 1", Long.class);
+    }
+
+    public int compact() {
+        return compactBefore(Instant.now().minus(retention));
+    }
+
+    /**
+     * Removes entries older than the cutoff. The newest entry is always kept. The head is moved
+     * first, so a failure in between only costs some clients an unneeded resync.
+     */
+    public int compactBefore(Instant cutoff) {
+        Long keepFrom = changeLogRepository.findFirstIdSince(cutoff);
+        if (keepFrom == null) {
+            keepFrom = changeLogRepository.findMaxId();
+        }
+        if (keepFrom == null) {
+            return 0;
+        }
+        jdbc.update("UPDATE node_change_log_head SET compacted_through = GREATEST(compacted_through, ?) WHERE id = 1",
+                keepFrom - 1);
+        return jdbc.update("DELETE FROM node_change_log WHERE id < ?", keepFrom);
+    }
+
+    private void compactSafely() {
+        try {
+            int removed = compact();
+            if (removed > 0) {
+                log.info("Compacted {} change log entries older than {}", removed, retention);
+            }
+        } catch (RuntimeException e) {
+            log.warn("Change log compaction failed", e);
+        }
+    }
+}
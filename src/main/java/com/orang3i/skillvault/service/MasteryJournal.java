@@ -0,0 +1,211 @@
+package com.orang3i.skillvault.service;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of mastery increments, written before an increment is acknowledged. It is a directory
+ * of segment files named by a random id; appends go to the active segment, roll() seals it and starts a
+ * new one, and confirm() deletes sealed segments once their increments are committed to the database.
+ * Each record is {@code uuid nodeId, int delta, int crc32}; a torn record at the end of a segment (a
+ * crash mid-write) is dropped on recovery. A lock file keeps a second instance out of the directory.
+ * <p>
+ * With sync on, {@link #sync} forces the segment to disk before returning. Concurrent callers share
+ * one force: whoever gets the sync lock forces everything written so far for everyone waiting behind it.
+ */
+public final class MasteryJournal implements Closeable {
+
+    public record Entry(UUID nodeId, int delta) {
+    }
+
+    public record Segment(UUID id, List<Entry> entries) {
+    }
+
+    private static final int RECORD = 24;
+    private static final String SUFFIX = ".seg";
+
+    private final Path dir;
+    private final boolean sync;
+    private final FileChannel lockChannel;
+    private final FileLock lock;
+    private final List<Segment> recovered;
+    private final Set<UUID> sealed = new LinkedHashSet<>();
+
+    private final Object channelLock = new Object(); // the active segment and the written counter
+    private final Object syncLock = new Object();
+    private UUID activeId;
+    private FileChannel active;
+    private long activeRecords;
+    private long written;
+    private long synced;
+
+    private MasteryJournal(Path dir, boolean sync, FileChannel lockChannel, FileLock lock,
+                           List<Segment> recovered) throws IOException {
+        this.dir = dir;
+        this.sync = sync;
+        this.lockChannel = lockChannel;
+        this.lock = lock;
+        this.recovered = recovered;
+        for (Segment s : recovered) {
+            sealed.add(s.id());
+        }
+        startSegment();
+    }
+
+    /**
+     * Locks the directory, reads the segments left by an earlier run and starts a new one.
+     * Throws IllegalStateException if another instance holds the directory.
+     */
+    public static MasteryJournal open(Path dir, boolean sync) throws IOException {
+        Files.createDirectories(dir);
+        FileChannel lockChannel = FileChannel.open(dir.resolve("lock"), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        FileLock lock;
+        try {
+            lock = lockChannel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            lock = null;
+        }
+        if (lock == null) {
+            lockChannel.close();
+            throw new IllegalStateException("mastery journal " + dir + " is in use by another instance");
+        }
+        List<Segment> recovered = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "*" + SUFFIX)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                recovered.add(new Segment(UUID.fromString(name.substring(0, name.length() - SUFFIX.length())), read(file)));
+            }
+        }
+        return new MasteryJournal(dir, sync, lockChannel, lock, recovered);
+    }
+
+    /** Segments found on disk when the journal was opened; they count as sealed until confirmed. */
+    public List<Segment> recovered() {
+        return recovered;
+    }
+
+    /** Appends one increment and returns its sequence number, for sync(). */
+    public long append(UUID nodeId, int delta) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(RECORD);
+        buf.putLong(nodeId.getMostSignificantBits()).putLong(nodeId.getLeastSignificantBits()).putInt(delta);
+        CRC32 crc = new CRC32();
+        crc.update(buf.array(), 0, RECORD - 4);
+        buf.putInt((int) crc.getValue()).flip();
+        synchronized (channelLock) {
+            while (buf.hasRemaining()) {
+                active.write(buf);
+            }
+            activeRecords++;
+            return ++written;
+        }
+    }
+
+    /** Returns once the record with this sequence number is on disk; a no-op with sync off. */
+    public void sync(long seq) throws IOException {
+        if (!sync) {
+            return;
+        }
+        synchronized (syncLock) {
+            if (synced >= seq) {
+                return;
+            }
+            long target;
+            FileChannel channel;
+            synchronized (channelLock) {
+                target = written;
+                channel = active;
+            }
+            channel.force(false);
+            synced = target;
+        }
+    }
+
+    /** Seals the active segment (unless it is empty) and returns every sealed segment not yet confirmed. */
+    public List<UUID> roll() throws IOException {
+        synchronized (syncLock) {
+            synchronized (channelLock) {
+                closeActive();
+                synced = written;
+                startSegment();
+                return List.copyOf(sealed);
+            }
+        }
+    }
+
+    /** Deletes sealed segments whose increments are committed. */
+    public void confirm(Collection<UUID> segments) throws IOException {
+        synchronized (channelLock) {
+            for (UUID id : segments) {
+                Files.deleteIfExists(file(id));
+                sealed.remove(id);
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (syncLock) {
+            synchronized (channelLock) {
+                closeActive();
+                lock.release();
+                lockChannel.close();
+            }
+        }
+    }
+
+    private void startSegment() throws IOException {
+        activeId = UUID.randomUUID();
+        active = FileChannel.open(file(activeId), StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        activeRecords = 0;
+    }
+
+    private void closeActive() throws IOException {
+        if (sync) {
+            active.force(false);
+        }
+        active.close();
+        if (activeRecords == 0) {
+            Files.deleteIfExists(file(activeId));
+        } else {
+            sealed.add(activeId);
+        }
+    }
+
+    private Path file(UUID id) {
+        return dir.resolve(id + SUFFIX);
+    }
+
+    // every whole record with a good checksum, up to the first one that is not
+    private static List<Entry> read(Path file) throws IOException {
+        ByteBuffer buf = ByteBuffer.wrap(Files.readAllBytes(file));
+        List<Entry> entries = new ArrayList<>();
+        CRC32 crc = new CRC32();
+        while (buf.remaining() >= RECORD) {
+            int start = buf.position();
+            UUID nodeId = new UUID(buf.getLong(), buf.getLong());
+            int delta = buf.getInt();
+            crc.reset();
+            crc.update(buf.array(), start, RECORD - 4);
+            if (buf.getInt() != (int) crc.getValue()) {
+                break;
+            }
+            entries.add(new Entry(nodeId, delta));
+        }
+        return entries;
+    }
+}
@@ -0,0 +1,383 @@
+package com.orang3i.skillvault.service;
+
+import com.orang3i.skillvault.cache.TreeSnapshot;
+import com.orang3i.skillvault.cache.TreeSnapshotCache;
+import com.orang3i.skillvault.dto.MasteryIncrementResponse;
+import com.orang3i.skillvault.dto.NodeResponse;
+import com.orang3i.skillvault.exception.NotFoundException;
+import com.orang3i.skillvault.repository.NodeRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+
+/**
+ * Write-behind for mastery increments (POST /api/nodes/{id}/mastery). Increments are summed per node in
+ * memory and written every flush interval, or as soon as max-pending nodes have one, as a single batch
+ * update through NodeBatchService, so rollups, the snapshot cache, the change feed and the change log
+ * see an ordinary update per node. The summed delta is applied once and clamped to 0..100, so the mastery
+ * an increment answers with is provisional: +80 then -50 on a node at 50 answers 100, then 80, and the
+ * flush writes 80; had it flushed between the two the node would end at 50. A PUT or batch update of a
+ * node flushes its pending increments first, so it always replaces them rather than being added to.
+ * <p>
+ * Durability: every increment is appended to the MasteryJournal (and forced to disk with journal-sync)
+ * before it is acknowledged. A flush records the journal segments it covers in mastery_journal_flushed
+ * in its own transaction, so after a crash exactly the segments without a row are replayed at startup.
+ * Shutdown flushes what is pending. Without a journal (journal-dir empty, or held by another instance)
+ * increments acknowledged since the last flush are lost on a crash.
+ * <p>
+ * Read-your-writes: the increment answers with the provisional mastery, and GET /api/nodes/{id} adds the
+ * node's unflushed delta; trees and lists show it after the flush.
+ */
+@Service
+public class MasteryWriteBehind implements SmartInitializingSingleton {
+
+    private static final Logger log = LoggerFactory.getLogger(MasteryWriteBehind.class);
+
+    private static final String INSERT_FLUSHED =
+            "INSERT INTO mastery_journal_flushed (segment_id, flushed_at) VALUES (?, ?)";
+
+    private final NodeRepository nodeRepository;
+    private final NodeBatchService batchService;
+    private final TreeSnapshotCache treeCache;
+    private final JdbcTemplate jdbc;
+    private final TransactionTemplate transactions;
+    private final long intervalMillis;
+    private final int maxPending;
+    private final Path journalDir;
+    private final boolean journalSync;
+    private final ScheduledExecutorService worker = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "mastery-write-behind");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final Object lock = new Object(); // pending, inFlight and journal rolls
+    private Map<UUID, Integer> pending = new HashMap<>();
+    private Map<UUID, Integer> inFlight = Map.of(); // the batch a running flush is writing
+    // held by a running flush, so an overlaid read never counts a delta both in the row and in inFlight,
+    // and so flushes (the worker's and those run before a PUT) happen one after another
+    private final ReadWriteLock flushLock = new ReentrantReadWriteLock();
+    private final AtomicBoolean flushQueued = new AtomicBoolean();
+    private MasteryJournal journal;
+
+    public MasteryWriteBehind(NodeRepository nodeRepository, NodeBatchService batchService,
+                              TreeSnapshotCache treeCache, JdbcTemplate jdbc,
+                              PlatformTransactionManager transactionManager,
+                              @Value("${skillvault.mastery.flush-interval-ms:1000}") long intervalMillis,
+                              @Value("${skillvault.mastery.max-pending:500}") int maxPending,
+                              @Value("${skillvault.mastery.journal-dir:}") String journalDir,
+                              @Value("${skillvault.mastery.journal-sync:true}") boolean journalSync) {
+        this.nodeRepository = nodeRepository;
+        this.batchService = batchService;
+        this.treeCache = treeCache;
+        this.jdbc = jdbc;
+        this.transactions = new TransactionTemplate(transactionManager);
+        this.intervalMillis = intervalMillis;
+        this.maxPending = maxPending;
+        this.journalDir = journalDir.isBlank() ? null : Path.of(journalDir);
+        this.journalSync = journalSync;
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        if (journalDir != null) {
+            try {
+                journal = MasteryJournal.open(journalDir, journalSync);
+                recover();
+            } catch (IOException | IllegalStateException e) {
+                log.warn("Mastery increments are not journaled: {}", e.getMessage());
+                journal = null;
+            }
+        }
+        worker.scheduleWithFixedDelay(this::flushSafely, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        worker.shutdownNow();
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            log.warn("Mastery increments not flushed on shutdown{}", (journal == null) ? "; they are lost"
+                    : "; the journal keeps them for the next start", e);
+        }
+        if (journal != null) {
+            try {
+                journal.close();
+            } catch (IOException e) {
+                log.warn("Could not close the mastery journal", e);
+            }
+        }
+    }
+
+    /**
+     * Queues an increment and returns the node's provisional mastery (see the class comment).
+     * The increment is in the journal when this returns.
+     */
+    public MasteryIncrementResponse increment(String vault, UUID id, int delta) {
+        currentMastery(vault, id); // 404 for an unknown node, before anything is journaled
+        long seq = 0;
+        int queued;
+        synchronized (lock) {
+            if (journal != null) {
+                try {
+                    seq = journal.append(id, delta);
+                } catch (IOException e) {
+                    throw new UncheckedIOException("could not journal the increment", e);
+                }
+            }
+            queued = pending.merge(id, delta, Integer::sum);
+            if (pending.size() >= maxPending && flushQueued.compareAndSet(false, true)) {
+                worker.execute(this::flushSafely);
+            }
+        }
+        if (journal != null) {
+            try {
+                journal.sync(seq);
+            } catch (IOException e) {
+                throw new UncheckedIOException("could not journal the increment", e);
+            }
+        }
+
+        MasteryIncrementResponse r = new MasteryIncrementResponse();
+        r.id = id;
+        r.pendingDelta = queued;
+        flushLock.readLock().lock();
+        try {
+            r.mastery = withPending(id, currentMastery(vault, id));
+        } finally {
+            flushLock.readLock().unlock();
+        }
+        return r;
+    }
+
+    public boolean hasPending(UUID id) {
+        synchronized (lock) {
+            return pending.containsKey(id) || inFlight.containsKey(id);
+        }
+    }
+
+    /** Reads a node and adds its unflushed delta to the mastery, consistently with a flush in progress. */
+    public NodeResponse read(UUID id, Supplier<NodeResponse> reader) {
+        if (!hasPending(id)) {
+            return reader.get();
+        }
+        flushLock.readLock().lock();
+        try {
+            NodeResponse r = reader.get();
+            r.mastery = withPending(id, r.mastery);
+            return r;
+        } finally {
+            flushLock.readLock().unlock();
+        }
+    }
+
+    // a flush applies its whole batch, then clamps; later increments are applied on top of that
+    private int withPending(UUID id, int stored) {
+        synchronized (lock) {
+            int flushing = clamp(stored + inFlight.getOrDefault(id, 0));
+            return clamp(flushing + pending.getOrDefault(id, 0));
+        }
+    }
+
+    /**
+     * Writes every pending increment in one transaction. Returns the number of nodes updated. A flush
+     * already running is waited for, and its segments are confirmed before the next one rolls the journal.
+     */
+    public int flush() {
+        flushLock.writeLock().lock();
+        try {
+            Map<UUID, Integer> batch;
+            List<UUID> segments;
+            synchronized (lock) {
+                flushQueued.set(false);
+                if (pending.isEmpty()) {
+                    return 0;
+                }
+                batch = pending;
+                pending = new HashMap<>();
+                inFlight = batch;
+                try {
+                    segments = (journal == null) ? List.of() : journal.roll();
+                } catch (IOException e) {
+                    pending = merge(batch, pending);
+                    inFlight = Map.of();
+                    throw new UncheckedIOException("could not roll the mastery journal", e);
+                }
+            }
+
+            int updated;
+            try {
+                updated = transactions.execute(status -> apply(batch, segments));
+                synchronized (lock) {
+                    inFlight = Map.of();
+                }
+            } catch (RuntimeException e) {
+                // back in the queue for the next flush; their journal segments stay sealed until then
+                synchronized (lock) {
+                    pending = merge(batch, pending);
+                    inFlight = Map.of();
+                }
+                throw e;
+            }
+
+            if (!segments.isEmpty()) {
+                try {
+                    journal.confirm(segments);
+                    deleteFlushedRows(segments);
+                } catch (IOException | RuntimeException e) {
+                    // the rows keep the segments from being replayed; the next start removes them
+                    log.warn("Could not remove flushed mastery journal segments", e);
+                }
+            }
+            return updated;
+        } finally {
+            flushLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Flushes now if any of the nodes has an increment pending or being flushed, so that a write which
+     * sets their mastery outright commits after those increments instead of having them added on top.
+     */
+    public void flushBefore(Collection<UUID> ids) {
+        if (ids.stream().noneMatch(this::hasPending)) {
+            return;
+        }
+        // on the worker: a request thread's open entity manager would keep the flushed nodes at their old version
+        try {
+            worker.submit(this::flush).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while flushing mastery increments", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException re) {
+                throw re;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private void flushSafely() {
+        try {
+            int updated = flush();
+            if (updated > 0) {
+                log.debug("Flushed mastery increments for {} nodes", updated);
+            }
+        } catch (RuntimeException e) {
+            log.warn("Mastery flush failed; the increments stay queued", e);
+        }
+    }
+
+    // one batch per vault; NodeBatchService locks the nodes (roots first) before reading their mastery
+    private int apply(Map<UUID, Integer> batch, List<UUID> segments) {
+        Map<String, Map<UUID, Integer>> byVault = new HashMap<>();
+        // a node never changes vault, so this can be read before locking; deleted nodes are skipped
+        for (Object[] row : nodeRepository.findVaults(batch.keySet())) {
+            UUID id = (UUID) row[0];
+            byVault.computeIfAbsent((String) row[1], k -> new HashMap<>()).put(id, batch.get(id));
+        }
+        int updated = 0;
+        for (Map.Entry<String, Map<UUID, Integer>> e : byVault.entrySet()) {
+            updated += batchService.addMastery(e.getKey(), e.getValue());
+        }
+        if (!segments.isEmpty()) {
+            Timestamp now = Timestamp.from(Instant.now());
+            jdbc.batchUpdate(INSERT_FLUSHED, segments.stream().map(s -> new Object[]{s, now}).toList());
+        }
+        return updated;
+    }
+
+    // segments left by an earlier run: those already flushed are removed, the rest go back in the queue
+    private void recover() throws IOException {
+        List<MasteryJournal.Segment> segments = journal.recovered();
+        if (segments.isEmpty()) {
+            return;
+        }
+        List<UUID> ids = segments.stream().map(MasteryJournal.Segment::id).toList();
+        Set<UUID> flushed = Set.copyOf(jdbc.queryForList(
+                "SELECT segment_id FROM mastery_journal_flushed WHERE segment_id IN (" + placeholders(ids.size()) + ")",
+                UUID.class, ids.toArray()));
+        int replayed = 0;
+        synchronized (lock) {
+            for (MasteryJournal.Segment s : segments) {
+                if (flushed.contains(s.id())) {
+                    continue;
+                }
+                for (MasteryJournal.Entry e : s.entries()) {
+                    pending.merge(e.nodeId(), e.delta(), Integer::sum);
+                    replayed++;
+                }
+            }
+        }
+        journal.confirm(flushed);
+        deleteFlushedRows(flushed);
+        if (replayed > 0) {
+            log.info("Replayed {} unflushed mastery increments from {}", replayed, journalDir);
+        }
+    }
+
+    private void deleteFlushedRows(Collection<UUID> segments) {
+        if (segments.isEmpty()) {
+            return;
+        }
+        jdbc.update("DELETE FROM mastery_journal_flushed WHERE segment_id IN (" + placeholders(segments.size()) + ")",
+                segments.toArray());
+    }
+
+    private int currentMastery(String vault, UUID id) {
+        if (treeCache.isEnabled()) {
+            TreeSnapshot.CachedNode n = treeCache.snapshot(vault).get(id);
+            if (n == null) {
+                throw new NotFoundException("node not found");
+            }
+            return n.mastery();
+        }
+        List<Object[]> rows = nodeRepository.findMasteries(vault, List.of(id));
+        if (rows.isEmpty()) {
+            throw new NotFoundException("node not found");
+        }
+        return ((Number) rows.get(0)[1]).intValue();
+    }
+
+    private static Map<UUID, Integer> merge(Map<UUID, Integer> older, Map<UUID, Integer> newer) {
+        Map<UUID, Integer> out = new HashMap<>(older);
+        newer.forEach((id, delta) -> out.merge(id, delta, Integer::sum));
+        return out;
+    }
+
+    private static String placeholders(int n) {
+        return String.join(", ", Collections.nCopies(n, "?"));
+    }
+
+    private static int clamp(int mastery) {
+        return Math.max(0, Math.min(100, mastery));
+    }
+}
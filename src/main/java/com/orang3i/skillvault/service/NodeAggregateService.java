@@ -0,0 +1,276 @@
+package com.orang3i.skillvault.service;
+
+import com.orang3i.skillvault.dto.AggregateRebuildReport;
+import com.orang3i.skillvault.dto.NodeAggregates;
+import com.orang3i.skillvault.entity.NodeStats;
+import com.orang3i.skillvault.repository.NodeClosureRepository;
+import com.orang3i.skillvault.repository.NodeRepository;
+import com.orang3i.skillvault.repository.NodeStatsRepository;
+import jakarta.transaction.Transactional;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.IntStream;
+
+/**
+ * Keeps node_stats in step with the tree. Every write only touches the ancestor chain of the
+ * changed node: counts and sums move by a delta in one set-based UPDATE over the closure table,
+ * min/max are recomputed bottom-up and stop at the first ancestor that does not change.
+ * Must be called inside the caller's write transaction, before the closure rows of a
+ * deleted subtree are removed.
+ * Every hook also stamps the touched chain with a fresh subtree version for conditional reads.
+ */
+@Service
+public class NodeAggregateService {
+
+    private final NodeStatsRepository statsRepository;
+    private final NodeClosureRepository closureRepository;
+    private final NodeRepository nodeRepository;
+    private final JdbcTemplate jdbc;
+    private final AtomicLong versionClock = new AtomicLong();
+
+    public NodeAggregateService(NodeStatsRepository statsRepository, NodeClosureRepository closureRepository,
+                                NodeRepository nodeRepository, JdbcTemplate jdbc) {
+        this.statsRepository = statsRepository;
+        this.closureRepository = closureRepository;
+        this.nodeRepository = nodeRepository;
+        this.jdbc = jdbc;
+    }
+
+    public void nodeCreated(UUID id, UUID parentId, int mastery) {
+        statsRepository.insertLeaf(id, mastery);
+        if (parentId != null) {
+            statsRepository.addToChain(parentId, 1, mastery, mastery, mastery);
+        }
+        touch(id);
+    }
+
+    public void nodeUpdated(UUID id, int oldMastery, int newMastery) {
+        if (oldMastery != newMastery) {
+            statsRepository.addMasteryToChain(id, newMastery - oldMastery);
+            recomputeMinMaxUpFrom(id);
+        }
+        touch(id);
+    }
+
+    /** Call before the parent link and closure rows change. */
+    public void detach(UUID id, UUID oldParentId) {
+        if (oldParentId == null) {
+            return;
+        }
+        NodeStatsRepository.Totals t = totals(id);
+        statsRepository.subtractFromChain(oldParentId, t.getDescendantCount() + 1, t.getMasterySum());
+    }
+
+    /** Call after the parent link and closure rows changed. */
+    public void attach(UUID id, UUID oldParentId, UUID newParentId) {
+        if (oldParentId != null) {
+            recomputeMinMaxUpFrom(oldParentId);
+            touch(oldParentId);
+        }
+        if (newParentId != null) {
+            NodeStatsRepository.Totals t = totals(id);
+            statsRepository.addToChain(newParentId, t.getDescendantCount() + 1, t.getMasterySum(),
+                    t.getMasteryMin(), t.getMasteryMax());
+        }
+        touch(id);
+    }
+
+    /** Call before the subtree's closure rows are removed. */
+    public void subtreeDeleted(UUID id, UUID parentId) {
+        detach(id, parentId);
+        statsRepository.deleteSubtree(id);
+        if (parentId != null) {
+            recomputeMinMaxUpFrom(parentId);
+            touch(parentId);
+        }
+    }
+
+    /** Stamps a node and all of its ancestors with a new subtree version. */
+    public void touch(UUID id) {
+        statsRepository.touchChain(id, nextVersion());
+    }
+
+    /**
+     * Next value of a counter that only moves forward. It is checked against the stored maximum
+     * (an index lookup) so it stays ahead of rows written by another process or before a restart.
+     */
+    public long nextVersion() {
+        Long stored = statsRepository.findMaxVersion();
+        long floor = (stored == null) ? 0 : stored;
+        return versionClock.updateAndGet(v -> Math.max(v, floor) + 1);
+    }
+
+    /** Empty for a node that does not exist in the vault. */
+    public Optional<Long> subtreeVersion(String vault, UUID id) {
+        return statsRepository.findSubtreeVersion(vault, id);
+    }
+
+    /** "count-maxVersion" over the nodes of one vault; changes on any write to it. */
+    public String treeVersion(String vault) {
+        Object[] row = statsRepository.findVaultVersion(vault).get(0);
+        return row[0] + "-" + row[1];
+    }
+
+    public NodeAggregates get(UUID id) {
+        return statsRepository.findTotals(id)
+                .map(t -> NodeAggregates.of(t.getDescendantCount(), t.getMasterySum(), t.getMasteryMin(), t.getMasteryMax()))
+                .orElse(null);
+    }
+
+    public Map<UUID, NodeAggregates> getAll(Collection<UUID> ids) {
+        Map<UUID, NodeAggregates> out = new HashMap<>();
+        for (NodeStats s : statsRepository.findAllById(ids)) {
+            out.put(s.getNodeId(), toAggregates(s));
+        }
+        return out;
+    }
+
+    private static NodeAggregates toAggregates(NodeStats s) {
+        return NodeAggregates.of(s.getDescendantCount(), s.getMasterySum(), s.getMasteryMin(), s.getMasteryMax());
+    }
+
+    private NodeStatsRepository.Totals totals(UUID id) {
+        return statsRepository.findTotals(id)
+                .orElseThrow(() -> new IllegalStateException("missing node_stats row for " + id));
+    }
+
+    private void recomputeMinMaxUpFrom(UUID id) {
+        for (UUID nodeId : closureRepository.findAncestorIds(id)) {
+            List<Object[]> rows = statsRepository.findMinMaxInputs(nodeId);
+            if (rows.isEmpty()) {
+                return;
+            }
+            Object[] row = rows.get(0);
+            int own = ((Number) row[0]).intValue();
+            int storedMin = ((Number) row[1]).intValue();
+            int storedMax = ((Number) row[2]).intValue();
+            int min = (row[3] == null) ? own : Math.min(own, ((Number) row[3]).intValue());
+            int max = (row[4] == null) ? own : Math.max(own, ((Number) row[4]).intValue());
+            if (min == storedMin && max == storedMax) {
+                return; // ancestors only depend on this node's values, so they are unchanged too
+            }
+            statsRepository.updateMinMax(nodeId, min, max);
+        }
+    }
+
+    public boolean needsBackfill() {
+        return statsRepository.count() != nodeRepository.count();
+    }
+
+    /**
+     * Recomputes every rollup from (id, parent, mastery) rows and rewrites the rows that drifted.
+     * Levels are processed from the deepest up; all nodes of one level are combined in parallel.
+     * <p>
+     * Nothing is locked while reading. The stored rows are read first, and a drifted row is only
+     * rewritten if its subtree_version is still the one read. Every write stamps the rows it changes
+     * with a new version, so a write that commits while the rebuild runs keeps its row, and the row
+     * is counted as skipped rather than overwritten with figures computed before that write.
+     */
+    @Transactional
+    public AggregateRebuildReport rebuild() {
+        long start = System.nanoTime();
+
+        // before the nodes, so any write the recomputation might miss has moved a version read here
+        Map<UUID, NodeStats> stored = new HashMap<>();
+        for (NodeStats s : statsRepository.findAll()) {
+            stored.put(s.getNodeId(), s);
+        }
+
+        List<Object[]> rows = nodeRepository.findAllMasteryRows();
+        int n = rows.size();
+        UUID[] ids = new UUID[n];
+        int[] mastery = new int[n];
+        Map<UUID, Integer> index = new HashMap<>(n * 2);
+        for (int i = 0; i < n; i++) {
+            ids[i] = (UUID) rows.get(i)[0];
+            mastery[i] = ((Number) rows.get(i)[2]).intValue();
+            index.put(ids[i], i);
+        }
+
+        int[] parent = new int[n];
+        int[] childCount = new int[n];
+        for (int i = 0; i < n; i++) {
+            Integer p = index.get((UUID) rows.get(i)[1]);
+            parent[i] = (p == null) ? -1 : p;
+            if (p != null) childCount[p]++;
+        }
+        // children as offsets into one flat array
+        int[] childStart = new int[n + 1];
+        for (int i = 0; i < n; i++) childStart[i + 1] = childStart[i] + childCount[i];
+        int[] children = new int[childStart[n]];
+        int[] fill = Arrays.copyOf(childStart, n);
+        for (int i = 0; i < n; i++) {
+            if (parent[i] >= 0) children[fill[parent[i]]++] = i;
+        }
+
+        // breadth-first levels from the roots
+        List<int[]> levels = new ArrayList<>();
+        int[] level = IntStream.range(0, n).filter(i -> parent[i] < 0).toArray();
+        while (level.length > 0) {
+            levels.add(level);
+            level = Arrays.stream(level)
+                    .flatMap(p -> Arrays.stream(children, childStart[p], childStart[p + 1]))
+                    .toArray();
+        }
+
+        long[] count = new long[n];
+        long[] sum = new long[n];
+        int[] min = new int[n];
+        int[] max = new int[n];
+        for (int l = levels.size() - 1; l >= 0; l--) {
+            Arrays.stream(levels.get(l)).parallel().forEach(i -> {
+                long c = 0, s = mastery[i];
+                int lo = mastery[i], hi = mastery[i];
+                for (int k = childStart[i]; k < childStart[i + 1]; k++) {
+                    int ch = children[k];
+                    c += count[ch] + 1;
+                    s += sum[ch];
+                    lo = Math.min(lo, min[ch]);
+                    hi = Math.max(hi, max[ch]);
+                }
+                count[i] = c;
+                sum[i] = s;
+                min[i] = lo;
+                max[i] = hi;
+            });
+        }
+
+        AggregateRebuildReport report = new AggregateRebuildReport();
+        report.nodes = n;
+        long version = nextVersion();
+        List<Object[]> updates = new ArrayList<>();
+        List<Object[]> inserts = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            NodeStats s = stored.get(ids[i]);
+            if (s == null) {
+                inserts.add(new Object[]{ids[i], count[i], sum[i], min[i], max[i], version, ids[i]});
+            } else if (s.getDescendantCount() != count[i] || s.getMasterySum() != sum[i]
+                    || s.getMasteryMin() != min[i] || s.getMasteryMax() != max[i]) {
+                updates.add(new Object[]{count[i], sum[i], min[i], max[i], version, ids[i], s.getSubtreeVersion()});
+            }
+        }
+        report.orphaned = statsRepository.deleteOrphans();
+        // a node created after the stored rows were read brought its own row
+        for (int written : jdbc.batchUpdate("""
+                INSERT INTO node_stats (node_id, descendant_count, mastery_sum, mastery_min, mastery_max, subtree_version)
+                SELECT ?, ?, ?, ?, ?, ? WHERE NOT EXISTS (SELECT 1 FROM node_stats WHERE node_id = ?)
+                """, inserts)) {
+            if (written > 0) report.missing++;
+            else report.skipped++;
+        }
+        for (int written : jdbc.batchUpdate("""
+                UPDATE node_stats SET descendant_count = ?, mastery_sum = ?, mastery_min = ?, mastery_max = ?,
+                    subtree_version = ?
+                WHERE node_id = ? AND subtree_version = ?
+                """, updates)) {
+            if (written > 0) report.drifted++;
+            else report.skipped++;
+        }
+
+        report.millis = (System.nanoTime() - start) / 1_000_000;
+        return report;
+    }
+}
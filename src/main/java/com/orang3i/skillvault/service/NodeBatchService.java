@@ -0,0 +1,584 @@
+package com.orang3i.skillvault.service;
+
+import com.orang3i.skillvault.dto.*;
+import com.orang3i.skillvault.entity.Node;
+import com.orang3i.skillvault.event.NodeChangedEvent;
+import com.orang3i.skillvault.event.NodesChangedEvent;
+import com.orang3i.skillvault.exception.ImportValidationException;
+import com.orang3i.skillvault.repository.NodeClosureRepository;
+import com.orang3i.skillvault.repository.NodeRepository;
+import com.orang3i.skillvault.repository.NodeStatsRepository;
+import jakarta.transaction.Transactional;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+
+/**
+ * Applies an ordered list of creates, updates, moves and deletes in one transaction.
+ * The batch is first played against an in-memory copy of the nodes it names and their ancestor
+ * chains (one findAllById, one closure read), so validation and cycle checks never go back to the
+ * database and nothing is written unless every operation is valid. The writes then go out as
+ * JDBC batches: the final node rows, the closure changes in operation order, and a single
+ * recomputation of the rollups of every node whose subtree changed along the way.
+ * Every operation applies to one vault: nodes of other vaults are neither locked nor loaded and count as not found.
+ */
+@Service
+public class NodeBatchService {
+
+    private static final int BATCH_SIZE = 1000;
+
+    private static final String INSERT_NODE = """
+            INSERT INTO nodes (id, vault_id, title, description, category, mastery, parent_id, created_at, updated_at, version)
+            VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, 0)
+            """;
+    private static final String UPDATE_NODE = """
+            UPDATE nodes SET title = ?, description = ?, category = ?, mastery = ?, parent_id = ?, updated_at = ?,
+                version = version + 1
+            WHERE id = ?
+            """;
+    private static final String INSERT_CLOSURE =
+            "INSERT INTO node_closure (ancestor_id, descendant_id, depth) VALUES (?, ?, ?)";
+    private static final String INSERT_STATS = """
+            INSERT INTO node_stats (node_id, descendant_count, mastery_sum, mastery_min, mastery_max, subtree_version)
+            VALUES (?, ?, ?, ?, ?, ?)
+            """;
+    private static final String UPDATE_STATS = """
+            UPDATE node_stats SET descendant_count = ?, mastery_sum = ?, mastery_min = ?, mastery_max = ?,
+                subtree_version = ?
+            WHERE node_id = ?
+            """;
+
+    private final JdbcTemplate jdbc;
+    private final NodeRepository nodeRepository;
+    private final NodeClosureRepository closureRepository;
+    private final NodeStatsRepository statsRepository;
+    private final NodeAggregateService aggregateService;
+    private final NodePathLocks pathLocks;
+    private final Validator validator;
+    private final ApplicationEventPublisher events;
+
+    public NodeBatchService(JdbcTemplate jdbc, NodeRepository nodeRepository, NodeClosureRepository closureRepository,
+                            NodeStatsRepository statsRepository, NodeAggregateService aggregateService,
+                            NodePathLocks pathLocks, Validator validator, ApplicationEventPublisher events) {
+        this.jdbc = jdbc;
+        this.nodeRepository = nodeRepository;
+        this.closureRepository = closureRepository;
+        this.statsRepository = statsRepository;
+        this.aggregateService = aggregateService;
+        this.pathLocks = pathLocks;
+        this.validator = validator;
+        this.events = events;
+    }
+
+    /** A node the batch creates or changes, holding its state after the operations played so far. */
+    private static final class Target {
+        final UUID id;
+        final boolean created;
+        final UUID originalParentId;
+        final Instant createdAt;
+        int createOrder; // creates only: position among the batch's creates
+        UUID parentId;
+        String title;
+        String description;
+        String category;
+        int mastery;
+        boolean changed;
+
+        Target(UUID id, boolean created, UUID originalParentId, Instant createdAt) {
+            this.id = id;
+            this.created = created;
+            this.originalParentId = originalParentId;
+            this.createdAt = createdAt;
+            this.parentId = originalParentId;
+        }
+
+        // creates are a microsecond apart (the column's precision), so siblings list in operation order
+        Instant createdAt(Instant now) {
+            return created ? now.plus(createOrder, ChronoUnit.MICROS) : createdAt;
+        }
+    }
+
+    // closure changes, replayed in operation order because moves and deletes read the closure table
+    private record Link(UUID id, List<UUID> ancestors) {
+    }
+
+    private record Relink(UUID id, UUID newParentId) {
+    }
+
+    private record Remove(UUID id) {
+    }
+
+    private static final class Plan {
+        final String vault;
+        final Set<UUID> foreign = new HashSet<>(); // named ids that exist in another vault
+        final Map<UUID, Node> existing = new HashMap<>();
+        final Map<UUID, UUID> parents = new HashMap<>(); // every known node -> current parent, null for roots
+        final Map<UUID, Target> targets = new LinkedHashMap<>();
+        final Set<UUID> deleted = new LinkedHashSet<>(); // tops of deleted subtrees
+        final Set<UUID> affected = new HashSet<>(); // every node whose subtree changed at some point
+        final Map<String, UUID> refs = new LinkedHashMap<>();
+        int creates;
+        final List<Object> steps = new ArrayList<>();
+        final Map<String, Map<String, String>> errors = new LinkedHashMap<>();
+
+        Plan(String vault) {
+            this.vault = vault;
+        }
+    }
+
+    @Transactional
+    public NodeBatchResponse apply(String vault, NodeBatchRequest req) {
+        Set<UUID> ids = new HashSet<>();
+        for (NodeBatchOperation op : req.operations) {
+            if (op == null) continue;
+            if (op.id != null) ids.add(op.id);
+            if (op.parentId != null) ids.add(op.parentId);
+        }
+        return run(load(vault, ids), req.operations);
+    }
+
+    /**
+     * Adds each delta to its node's mastery, clamped to 0..100, as one batch of updates. The current
+     * masteries are read from the nodes load() has locked, roots first like every other write, so they are
+     * committed values and the lock order stays the same. Nodes that no longer exist in the vault, or whose
+     * mastery would not change, are skipped. Returns the number of nodes updated.
+     */
+    @Transactional
+    public int addMastery(String vault, Map<UUID, Integer> deltas) {
+        Plan plan = load(vault, deltas.keySet());
+        List<NodeBatchOperation> ops = new ArrayList<>();
+        deltas.forEach((id, delta) -> {
+            Node n = plan.existing.get(id);
+            if (n == null) {
+                return;
+            }
+            int mastery = Math.max(0, Math.min(100, n.getMastery() + delta));
+            if (mastery == n.getMastery()) {
+                return;
+            }
+            NodeBatchOperation op = new NodeBatchOperation();
+            op.op = "update";
+            op.id = id;
+            op.title = n.getTitle();
+            op.description = n.getDescription();
+            op.category = n.getCategory();
+            op.mastery = mastery;
+            ops.add(op);
+        });
+        if (!ops.isEmpty()) {
+            run(plan, ops);
+        }
+        return ops.size();
+    }
+
+    private NodeBatchResponse run(Plan plan, List<NodeBatchOperation> operations) {
+        for (int i = 0; i < operations.size(); i++) {
+            play(plan, "operations[" + i + "]", operations.get(i));
+        }
+        if (!plan.errors.isEmpty()) {
+            throw new ImportValidationException(plan.errors);
+        }
+
+        Instant now = Instant.now().truncatedTo(ChronoUnit.MICROS);
+        writeNodes(plan, now);
+        int deleted = writeClosure(plan);
+        Map<UUID, NodeAggregates> aggregates = writeStats(plan);
+        publish(plan, aggregates, now);
+
+        NodeBatchResponse response = new NodeBatchResponse();
+        response.applied = operations.size();
+        response.deleted = deleted;
+        response.ids = plan.refs;
+        return response;
+    }
+
+    // locks the named nodes and their ancestor chains first, so no concurrent write can change a chain the plan relies on
+    private Plan load(String vault, Set<UUID> ids) {
+        Plan plan = new Plan(vault);
+        if (ids.isEmpty()) {
+            return plan;
+        }
+        // a node never changes vault, so this can be read before locking
+        Set<UUID> own = new HashSet<>();
+        for (Object[] row : nodeRepository.findVaults(ids)) {
+            (vault.equals(row[1]) ? own : plan.foreign).add((UUID) row[0]);
+        }
+        if (own.isEmpty()) {
+            return plan;
+        }
+        Map<UUID, List<UUID>> chains = pathLocks.lock(own);
+        for (Node n : nodeRepository.findAllById(chains.keySet())) {
+            plan.existing.put(n.getId(), n);
+        }
+        for (List<UUID> chain : chains.values()) {
+            for (int k = 0; k < chain.size(); k++) {
+                UUID parent = (k + 1 < chain.size()) ? chain.get(k + 1) : null;
+                plan.parents.put(chain.get(k), parent);
+            }
+        }
+        return plan;
+    }
+
+    private void play(Plan plan, String path, NodeBatchOperation op) {
+        if (op == null) {
+            error(plan, path, "op", "Operation is required");
+            return;
+        }
+        switch (op.op == null ? "" : op.op) {
+            case "create" -> playCreate(plan, path, op);
+            case "update" -> playUpdate(plan, path, op);
+            case "move" -> playMove(plan, path, op);
+            case "delete" -> playDelete(plan, path, op);
+            default -> error(plan, path, "op", "op must be one of create, update, move or delete");
+        }
+    }
+
+    private void playCreate(Plan plan, String path, NodeBatchOperation op) {
+        NodeCreateRequest fields = new NodeCreateRequest();
+        fields.title = op.title;
+        fields.description = op.description;
+        fields.category = op.category;
+        fields.mastery = op.mastery;
+        for (ConstraintViolation<NodeCreateRequest> v : validator.validate(fields)) {
+            error(plan, path, v.getPropertyPath().toString(), v.getMessage());
+        }
+        UUID parentId = resolveParent(plan, path, op);
+        if (op.ref != null && plan.refs.containsKey(op.ref)) {
+            error(plan, path, "ref", "Duplicate ref");
+        }
+        if (plan.errors.containsKey(path)) {
+            return;
+        }
+
+        Target t = new Target(UUID.randomUUID(), true, parentId, null);
+        t.createOrder = plan.creates++;
+        t.title = op.title;
+        t.description = op.description;
+        t.category = op.category;
+        t.mastery = op.mastery;
+        plan.targets.put(t.id, t);
+        plan.parents.put(t.id, parentId);
+        if (op.ref != null) {
+            plan.refs.put(op.ref, t.id);
+        }
+
+        List<UUID> ancestors = chain(plan, parentId);
+        plan.steps.add(new Link(t.id, ancestors));
+        plan.affected.add(t.id);
+        plan.affected.addAll(ancestors);
+    }
+
+    private void playUpdate(Plan plan, String path, NodeBatchOperation op) {
+        NodeUpdateRequest fields = new NodeUpdateRequest();
+        fields.title = op.title;
+        fields.description = op.description;
+        fields.category = op.category;
+        fields.mastery = op.mastery;
+        for (ConstraintViolation<NodeUpdateRequest> v : validator.validate(fields)) {
+            error(plan, path, v.getPropertyPath().toString(), v.getMessage());
+        }
+        UUID id = resolveNode(plan, path, op);
+        if (plan.errors.containsKey(path)) {
+            return;
+        }
+
+        Target t = target(plan, id);
+        t.title = op.title;
+        t.description = op.description;
+        t.category = op.category;
+        t.mastery = op.mastery;
+        t.changed = true;
+        plan.affected.addAll(chain(plan, id));
+    }
+
+    private void playMove(Plan plan, String path, NodeBatchOperation op) {
+        if (op.parentId != null && plan.foreign.contains(op.parentId)) {
+            error(plan, path, "parentId", "Cannot move a node to another vault");
+            return;
+        }
+        UUID id = resolveNode(plan, path, op);
+        UUID newParentId = resolveParent(plan, path, op);
+        if (plan.errors.containsKey(path)) {
+            return;
+        }
+        if (id.equals(newParentId)) {
+            error(plan, path, "parentId", "Cannot move a node under itself");
+            return;
+        }
+        if (newParentId != null && chain(plan, newParentId).contains(id)) {
+            error(plan, path, "parentId", "Cannot move a node under its descendant (cycle)");
+            return;
+        }
+
+        Target t = target(plan, id);
+        plan.affected.addAll(chain(plan, id));
+        t.parentId = newParentId;
+        plan.parents.put(id, newParentId);
+        plan.affected.addAll(chain(plan, id));
+        plan.steps.add(new Relink(id, newParentId));
+    }
+
+    private void playDelete(Plan plan, String path, NodeBatchOperation op) {
+        UUID id = resolveNode(plan, path, op);
+        if (plan.errors.containsKey(path)) {
+            return;
+        }
+        plan.affected.addAll(chain(plan, plan.parents.get(id)));
+        plan.deleted.add(id);
+        plan.steps.add(new Remove(id));
+    }
+
+    // the node an update, move or delete applies to; records an error and returns null when there is none
+    private UUID resolveNode(Plan plan, String path, NodeBatchOperation op) {
+        if ((op.id == null) == (op.nodeRef == null)) {
+            error(plan, path, "id", "Exactly one of id and nodeRef is required");
+            return null;
+        }
+        return resolve(plan, path, op.id, op.nodeRef, "id", "nodeRef");
+    }
+
+    // parent of a create or new parent of a move; null means root
+    private UUID resolveParent(Plan plan, String path, NodeBatchOperation op) {
+        if (op.parentId != null && op.parentRef != null) {
+            error(plan, path, "parentRef", "Only one of parentId and parentRef may be set");
+            return null;
+        }
+        return resolve(plan, path, op.parentId, op.parentRef, "parentId", "parentRef");
+    }
+
+    private UUID resolve(Plan plan, String path, UUID id, String ref, String idField, String refField) {
+        if (ref != null) {
+            UUID created = plan.refs.get(ref);
+            if (created == null) {
+                error(plan, path, refField, "Unknown ref (refs must be created earlier in the batch)");
+            } else if (isDeleted(plan, created)) {
+                error(plan, path, refField, "Node was deleted earlier in the batch");
+            }
+            return created;
+        }
+        if (id == null) {
+            return null;
+        }
+        if (!plan.existing.containsKey(id)) {
+            error(plan, path, idField, "Node not found");
+        } else if (isDeleted(plan, id)) {
+            error(plan, path, idField, "Node was deleted earlier in the batch");
+        }
+        return id;
+    }
+
+    private Target target(Plan plan, UUID id) {
+        return plan.targets.computeIfAbsent(id, k -> {
+            Node n = plan.existing.get(id);
+            Target t = new Target(id, false, plan.parents.get(id), n.getCreatedAt());
+            t.title = n.getTitle();
+            t.description = n.getDescription();
+            t.category = n.getCategory();
+            t.mastery = n.getMastery();
+            return t;
+        });
+    }
+
+    // id, its parent, ... up to the root, as the batch currently sees them
+    private static List<UUID> chain(Plan plan, UUID id) {
+        List<UUID> out = new ArrayList<>();
+        for (UUID cur = id; cur != null; cur = plan.parents.get(cur)) {
+            out.add(cur);
+        }
+        return out;
+    }
+
+    private static boolean isDeleted(Plan plan, UUID id) {
+        if (plan.deleted.isEmpty()) {
+            return false;
+        }
+        for (UUID cur = id; cur != null; cur = plan.parents.get(cur)) {
+            if (plan.deleted.contains(cur)) return true;
+        }
+        return false;
+    }
+
+    // final state of every surviving target; inserts go parents first so each parent_id already exists
+    private void writeNodes(Plan plan, Instant now) {
+        OffsetDateTime updated = now.atOffset(ZoneOffset.UTC);
+        List<Object[]> inserts = new ArrayList<>();
+        List<Object[]> updates = new ArrayList<>();
+        for (Target t : survivors(plan)) {
+            if (t.created) {
+                OffsetDateTime created = t.createdAt(now).atOffset(ZoneOffset.UTC);
+                inserts.add(new Object[]{t.id, plan.vault, t.title, t.description, t.category, t.mastery, t.parentId,
+                        created, created});
+            } else {
+                updates.add(new Object[]{t.title, t.description, t.category, t.mastery, t.parentId, updated, t.id});
+            }
+        }
+        batch(INSERT_NODE, inserts);
+        batch(UPDATE_NODE, updates);
+    }
+
+    private int writeClosure(Plan plan) {
+        int deleted = 0;
+        List<Object[]> rows = new ArrayList<>();
+        for (Object step : plan.steps) {
+            if (step instanceof Link link) {
+                rows.add(new Object[]{link.id(), link.id(), 0});
+                for (int k = 0; k < link.ancestors().size(); k++) {
+                    rows.add(new Object[]{link.ancestors().get(k), link.id(), k + 1});
+                }
+                continue;
+            }
+            batch(INSERT_CLOSURE, rows);
+            rows.clear();
+            if (step instanceof Relink r) {
+                closureRepository.detachSubtree(r.id());
+                if (r.newParentId() != null) {
+                    closureRepository.attachSubtree(r.id(), r.newParentId());
+                }
+            } else if (step instanceof Remove r) {
+                statsRepository.deleteSubtree(r.id());
+                nodeRepository.unlinkSubtree(r.id());
+                deleted += nodeRepository.deleteSubtree(r.id());
+                closureRepository.deleteSubtree(r.id());
+            }
+        }
+        batch(INSERT_CLOSURE, rows);
+        return deleted;
+    }
+
+    /**
+     * Recomputes the rollups of every surviving affected node. Children outside the affected set
+     * keep their stored figures (nothing below them changed) and are summed in one query; children
+     * inside it are folded in deepest first. Every final parent of an affected node is affected too,
+     * since each operation adds whole ancestor chains.
+     */
+    private Map<UUID, NodeAggregates> writeStats(Plan plan) {
+        List<UUID> live = new ArrayList<>();
+        for (UUID id : plan.affected) {
+            if (!isDeleted(plan, id)) live.add(id);
+        }
+        if (live.isEmpty()) {
+            return Map.of();
+        }
+
+        Map<UUID, long[]> totals = new HashMap<>(); // id -> [count, sum, min, max]
+        List<UUID> unknown = new ArrayList<>();
+        for (UUID id : live) {
+            Target t = plan.targets.get(id);
+            if (t != null) {
+                totals.put(id, new long[]{0, t.mastery, t.mastery, t.mastery});
+            } else {
+                unknown.add(id);
+            }
+        }
+        if (!unknown.isEmpty()) {
+            for (Object[] row : nodeRepository.findMasteries(plan.vault, unknown)) {
+                int own = ((Number) row[1]).intValue();
+                totals.put((UUID) row[0], new long[]{0, own, own, own});
+            }
+        }
+        for (Object[] row : statsRepository.sumChildrenOutside(live)) {
+            long[] t = totals.get((UUID) row[0]);
+            t[0] += ((Number) row[1]).longValue();
+            t[1] += ((Number) row[2]).longValue();
+            t[2] = Math.min(t[2], ((Number) row[3]).longValue());
+            t[3] = Math.max(t[3], ((Number) row[4]).longValue());
+        }
+
+        live.sort(Comparator.comparingInt((UUID id) -> chain(plan, id).size()).reversed());
+        for (UUID id : live) {
+            UUID parent = plan.parents.get(id);
+            if (parent == null) continue;
+            long[] c = totals.get(id);
+            long[] p = totals.get(parent);
+            p[0] += c[0] + 1;
+            p[1] += c[1];
+            p[2] = Math.min(p[2], c[2]);
+            p[3] = Math.max(p[3], c[3]);
+        }
+
+        long version = aggregateService.nextVersion();
+        List<Object[]> inserts = new ArrayList<>();
+        List<Object[]> updates = new ArrayList<>();
+        Map<UUID, NodeAggregates> out = new HashMap<>();
+        for (UUID id : live) {
+            long[] t = totals.get(id);
+            Target target = plan.targets.get(id);
+            if (target != null && target.created) {
+                inserts.add(new Object[]{id, t[0], t[1], (int) t[2], (int) t[3], version});
+            } else {
+                updates.add(new Object[]{t[0], t[1], (int) t[2], (int) t[3], version, id});
+            }
+            if (target != null) {
+                out.put(id, NodeAggregates.of(t[0], t[1], (int) t[2], (int) t[3]));
+            }
+        }
+        batch(INSERT_STATS, inserts);
+        batch(UPDATE_STATS, updates);
+        return out;
+    }
+
+    // One event for the whole batch: deletes first, then the survivors parents first, so listeners mirroring
+    // the tree can apply them in order
+    private void publish(Plan plan, Map<UUID, NodeAggregates> aggregates, Instant now) {
+        List<NodeChangedEvent> changes = new ArrayList<>();
+        for (UUID id : plan.deleted) {
+            if (plan.existing.containsKey(id)) {
+                changes.add(NodeChangedEvent.deleted(plan.vault, id, plan.parents.get(id)));
+            }
+        }
+        for (Target t : survivors(plan)) {
+            NodeResponse r = new NodeResponse();
+            r.id = t.id;
+            r.title = t.title;
+            r.description = t.description;
+            r.category = t.category;
+            r.mastery = t.mastery;
+            r.parentId = t.parentId;
+            r.createdAt = t.createdAt(now);
+            r.updatedAt = t.created ? r.createdAt : now;
+            r.aggregates = aggregates.get(t.id);
+
+            if (t.created) {
+                changes.add(NodeChangedEvent.created(plan.vault, r));
+            } else if (!Objects.equals(t.parentId, t.originalParentId)) {
+                changes.add(NodeChangedEvent.moved(plan.vault, r, t.originalParentId));
+            } else {
+                changes.add(NodeChangedEvent.updated(plan.vault, r));
+            }
+        }
+        if (!changes.isEmpty()) {
+            events.publishEvent(new NodesChangedEvent(plan.vault, changes));
+        }
+    }
+
+    private List<Target> survivors(Plan plan) {
+        Map<UUID, Integer> depth = new HashMap<>();
+        List<Target> out = new ArrayList<>();
+        for (Target t : plan.targets.values()) {
+            if (!isDeleted(plan, t.id)) {
+                out.add(t);
+                depth.put(t.id, chain(plan, t.id).size());
+            }
+        }
+        out.sort(Comparator.comparingInt(t -> depth.get(t.id)));
+        return out;
+    }
+
+    private void batch(String sql, List<Object[]> rows) {
+        for (int from = 0; from < rows.size(); from += BATCH_SIZE) {
+            jdbc.batchUpdate(sql, rows.subList(from, Math.min(rows.size(), from + BATCH_SIZE)));
+        }
+    }
+
+    private static void error(Plan plan, String path, String field, String message) {
+        plan.errors.computeIfAbsent(path, k -> new LinkedHashMap<>()).putIfAbsent(field, message);
+    }
+}
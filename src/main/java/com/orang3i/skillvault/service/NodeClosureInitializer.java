@@ -0,0 +1,46 @@
+package com.orang3i.skillvault.service;
+
+import com.orang3i.skillvault.repository.NodeClosureRepository;
+import com.orang3i.skillvault.repository.NodeRepository;
+import jakarta.transaction.Transactional;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.stereotype.Component;
+
+/**
+ * Rebuilds the closure table at startup when it does not cover every node,
+ * e.g. for databases created before the table existed.
+ */
+@Component
+public class NodeClosureInitializer implements ApplicationRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(NodeClosureInitializer.class);
+
+    private final NodeRepository nodeRepository;
+    private final NodeClosureRepository closureRepository;
+
+    public NodeClosureInitializer(NodeRepository nodeRepository, NodeClosureRepository closureRepository) {
+        this.nodeRepository = nodeRepository;
+        this.closureRepository = closureRepository;
+    }
+
+    @Override
+    @Transactional
+    public void run(ApplicationArguments args) {
+        long nodes = nodeRepository.count();
+        if (closureRepository.countByDepth(0) == nodes) {
+            return;
+        }
+
+        closureRepository.deleteAllRows();
+        closureRepository.insertAllSelfRows();
+        int depth = 0;
+        // a node can be at most (nodes - 1) levels deep; the bound also stops on corrupt (cyclic) data
+        while (depth < nodes && closureRepository.insertNextLevel(depth) > 0) {
+            depth++;
+        }
+        log.info("Rebuilt node closure table for {} nodes ({} levels)", nodes, depth + 1);
+    }
+}
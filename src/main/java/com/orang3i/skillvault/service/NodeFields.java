@@ -0,0 +1,77 @@
+package com.orang3i.skillvault.service;
+
+import com.orang3i.skillvault.dto.NodeResponse;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * A sparse field set from ?fields=, naming NodeResponse properties. The list reads leave the
+ * description column out of the query and skip the aggregate lookup unless those are selected.
+ */
+public final class NodeFields {
+
+    private static final List<String> NAMES = List.of(
+            "id", "title", "description", "category", "mastery", "parentId", "createdAt", "updatedAt", "aggregates");
+
+    public static final NodeFields ALL = new NodeFields(NAMES);
+
+    private final List<String> names;
+
+    private NodeFields(List<String> names) {
+        this.names = names;
+    }
+
+    /** Parses a comma-separated list of property names; null means every property. */
+    public static NodeFields parse(String fields) {
+        if (fields == null) {
+            return ALL;
+        }
+        Set<String> requested = Arrays.stream(fields.split(","))
+                .map(String::trim)
+                .filter(f -> !f.isEmpty())
+                .collect(Collectors.toSet());
+        if (requested.isEmpty()) {
+            throw new IllegalArgumentException("fields must name at least one of " + NAMES);
+        }
+        for (String f : requested) {
+            if (!NAMES.contains(f)) {
+                throw new IllegalArgumentException("unknown field '" + f + "', expected one of " + NAMES);
+            }
+        }
+        // declaration order, whatever order they were asked in
+        return new NodeFields(NAMES.stream().filter(requested::contains).toList());
+    }
+
+    public boolean isAll() {
+        return names.size() == NAMES.size();
+    }
+
+    public boolean includes(String name) {
+        return names.contains(name);
+    }
+
+    /** The selected properties of r, in NodeResponse order. */
+    public Map<String, Object> select(NodeResponse r) {
+        Map<String, Object> out = new LinkedHashMap<>();
+        for (String name : names) {
+            out.put(name, switch (name) {
+                case "id" -> r.id;
+                case "title" -> r.title;
+                case "description" -> r.description;
+                case "category" -> r.category;
+                case "mastery" -> r.mastery;
+                case "parentId" -> r.parentId;
+                case "createdAt" -> r.createdAt;
+                case "updatedAt" -> r.updatedAt;
+                case "aggregates" -> r.aggregates;
+                default -> throw new IllegalStateException(name);
+            });
+        }
+        return out;
+    }
+}
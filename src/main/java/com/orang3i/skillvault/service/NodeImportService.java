@@ -0,0 +1,299 @@
+package com.orang3i.skillvault.service;
+
+import com.orang3i.skillvault.dto.NodeCreateRequest;
+import com.orang3i.skillvault.dto.NodeImportItem;
+import com.orang3i.skillvault.dto.NodeImportRequest;
+import com.orang3i.skillvault.dto.NodeImportResponse;
+import com.orang3i.skillvault.event.NodesImportedEvent;
+import com.orang3i.skillvault.exception.ImportValidationException;
+import com.orang3i.skillvault.repository.NodeRepository;
+import com.orang3i.skillvault.repository.NodeStatsRepository;
+import jakarta.transaction.Transactional;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+
+/**
+ * Writes a whole tree in one transaction with JDBC batch inserts.
+ * Ids are generated up front, so children reference their parents without reading them back.
+ * Existing parents are locked with their paths (NodePathLocks) before their closure rows are copied.
+ */
+@Service
+public class NodeImportService {
+
+    private static final int BATCH_SIZE = 1000;
+
+    private static final String INSERT_NODE = """
+            INSERT INTO nodes (id, vault_id, title, description, category, mastery, parent_id, created_at, updated_at, version)
+            VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, 0)
+            """;
+    private static final String INSERT_CLOSURE =
+            "INSERT INTO node_closure (ancestor_id, descendant_id, depth) VALUES (?, ?, ?)";
+    private static final String INSERT_STATS = """
+            INSERT INTO node_stats (node_id, descendant_count, mastery_sum, mastery_min, mastery_max, subtree_version)
+            VALUES (?, ?, ?, ?, ?, ?)
+            """;
+
+    private final JdbcTemplate jdbc;
+    private final NodeRepository nodeRepository;
+    private final NodeStatsRepository statsRepository;
+    private final NodeAggregateService aggregateService;
+    private final NodePathLocks pathLocks;
+    private final Validator validator;
+    private final ApplicationEventPublisher events;
+
+    public NodeImportService(JdbcTemplate jdbc, NodeRepository nodeRepository,
+                             NodeStatsRepository statsRepository, NodeAggregateService aggregateService,
+                             NodePathLocks pathLocks, Validator validator, ApplicationEventPublisher events) {
+        this.jdbc = jdbc;
+        this.nodeRepository = nodeRepository;
+        this.statsRepository = statsRepository;
+        this.aggregateService = aggregateService;
+        this.pathLocks = pathLocks;
+        this.validator = validator;
+        this.events = events;
+    }
+
+    private static final class Pending {
+        final String path;
+        final int order; // position in the request
+        final NodeImportItem item;
+        final UUID id = UUID.randomUUID();
+        final boolean nested;
+        Pending parent; // parent inside this request
+        int level = -1;
+        // subtree rollup, filled bottom-up before the stats rows are written
+        long descendantCount;
+        long masterySum;
+        int masteryMin;
+        int masteryMax;
+
+        Pending(String path, int order, NodeImportItem item, Pending nestedParent) {
+            this.path = path;
+            this.order = order;
+            this.item = item;
+            this.parent = nestedParent;
+            this.nested = nestedParent != null;
+        }
+    }
+
+    @Transactional
+    public NodeImportResponse importNodes(String vault, NodeImportRequest req) {
+        Map<String, Map<String, String>> errors = new LinkedHashMap<>();
+        List<Pending> all = new ArrayList<>();
+        flatten(req.nodes, "nodes", null, all);
+
+        Map<String, Pending> byRef = new HashMap<>();
+        for (Pending p : all) {
+            if (p.item.ref != null && byRef.putIfAbsent(p.item.ref, p) != null) {
+                error(errors, p, "ref", "Duplicate ref");
+            }
+        }
+
+        Set<UUID> existingParents = new HashSet<>();
+        for (Pending p : all) {
+            for (ConstraintViolation<NodeCreateRequest> v : validator.validate(toCreateRequest(p.item))) {
+                error(errors, p, v.getPropertyPath().toString(), v.getMessage());
+            }
+
+            int parentSources = (p.nested ? 1 : 0) + (p.item.parentRef != null ? 1 : 0) + (p.item.parentId != null ? 1 : 0);
+            if (parentSources > 1) {
+                error(errors, p, "parentRef", "Only one of nesting, parentRef or parentId may set the parent");
+            } else if (p.item.parentRef != null) {
+                p.parent = byRef.get(p.item.parentRef);
+                if (p.parent == null) {
+                    error(errors, p, "parentRef", "Unknown parentRef");
+                }
+            } else if (p.item.parentId != null) {
+                existingParents.add(p.item.parentId);
+            }
+        }
+
+        Map<UUID, List<UUID>> parentPaths = Map.of();
+        if (!existingParents.isEmpty()) {
+            // the vault is checked before the lock, so an import never locks another vault's rows
+            Set<UUID> found = new HashSet<>(nodeRepository.findExistingIds(vault, existingParents));
+            // the closure rows are copied from the parents' paths and the rollups go up them, so those must not move
+            parentPaths = pathLocks.lock(found);
+            found.retainAll(parentPaths.keySet());
+            for (Pending p : all) {
+                if (p.item.parentId != null && !found.contains(p.item.parentId)) {
+                    error(errors, p, "parentId", "Parent not found");
+                }
+            }
+        }
+
+        if (errors.isEmpty()) {
+            assignLevels(all, errors);
+        }
+        if (!errors.isEmpty()) {
+            throw new ImportValidationException(errors);
+        }
+
+        // parents before children, so every parent_id already exists when its child is inserted
+        all.sort(Comparator.comparingInt(p -> p.level));
+        insertNodes(vault, all);
+        insertClosureRows(all, parentPaths);
+        insertStats(all);
+
+        NodeImportResponse response = new NodeImportResponse();
+        response.created = all.size();
+        response.ids = new LinkedHashMap<>();
+        for (Pending p : all) {
+            if (p.item.ref != null) {
+                response.ids.put(p.item.ref, p.id);
+            }
+        }
+        events.publishEvent(new NodesImportedEvent(vault, all.stream().map(p -> p.id).toList()));
+        return response;
+    }
+
+    private void flatten(List<NodeImportItem> items, String path, Pending nestedParent, List<Pending> out) {
+        if (items == null) {
+            return;
+        }
+        for (int i = 0; i < items.size(); i++) {
+            String itemPath = path + "[" + i + "]";
+            Pending p = new Pending(itemPath, out.size(), items.get(i), nestedParent);
+            out.add(p);
+            flatten(p.item.children, itemPath + ".children", p, out);
+        }
+    }
+
+    // level = distance to the topmost item of the request; a parentRef loop never reaches the top
+    private void assignLevels(List<Pending> all, Map<String, Map<String, String>> errors) {
+        for (Pending start : all) {
+            Deque<Pending> chain = new ArrayDeque<>();
+            Set<Pending> seen = new HashSet<>();
+            Pending cur = start;
+            while (cur != null && cur.level < 0) {
+                if (!seen.add(cur)) {
+                    error(errors, start, "parentRef", "parentRef chain forms a cycle");
+                    break;
+                }
+                chain.push(cur);
+                cur = cur.parent;
+            }
+            if (cur != null && cur.level < 0) {
+                continue;
+            }
+            int level = (cur == null) ? -1 : cur.level;
+            while (!chain.isEmpty()) {
+                chain.pop().level = ++level;
+            }
+        }
+    }
+
+    // created_at a microsecond (the column's precision) apart in request order, so siblings list in that order
+    private void insertNodes(String vault, List<Pending> all) {
+        OffsetDateTime now = OffsetDateTime.now(ZoneOffset.UTC).truncatedTo(ChronoUnit.MICROS);
+        List<Object[]> batch = new ArrayList<>(BATCH_SIZE);
+        for (Pending p : all) {
+            UUID parentId = (p.parent != null) ? p.parent.id : p.item.parentId;
+            OffsetDateTime created = now.plus(p.order, ChronoUnit.MICROS);
+            batch.add(new Object[]{p.id, vault, p.item.title, p.item.description, p.item.category, p.item.mastery,
+                    parentId, created, created});
+            if (batch.size() == BATCH_SIZE) {
+                jdbc.batchUpdate(INSERT_NODE, batch);
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) {
+            jdbc.batchUpdate(INSERT_NODE, batch);
+        }
+    }
+
+    // parentPaths: each existing attachment point's path as locked, the parent itself first
+    private void insertClosureRows(List<Pending> all, Map<UUID, List<UUID>> parentPaths) {
+        List<Object[]> batch = new ArrayList<>(BATCH_SIZE);
+        for (Pending p : all) {
+            batch.add(new Object[]{p.id, p.id, 0});
+            Pending cur = p;
+            int depth = 0;
+            while (cur.parent != null) {
+                cur = cur.parent;
+                depth++;
+                batch.add(new Object[]{cur.id, p.id, depth});
+            }
+            if (cur.item.parentId != null) {
+                List<UUID> path = parentPaths.get(cur.item.parentId);
+                for (int k = 0; k < path.size(); k++) {
+                    batch.add(new Object[]{path.get(k), p.id, depth + 1 + k});
+                }
+            }
+            if (batch.size() >= BATCH_SIZE) {
+                jdbc.batchUpdate(INSERT_CLOSURE, batch);
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) {
+            jdbc.batchUpdate(INSERT_CLOSURE, batch);
+        }
+    }
+
+    private void insertStats(List<Pending> all) {
+        for (Pending p : all) {
+            p.masterySum = p.masteryMin = p.masteryMax = p.item.mastery;
+        }
+        // all is sorted by level, so walking it backwards visits every child before its parent
+        for (int i = all.size() - 1; i >= 0; i--) {
+            Pending p = all.get(i);
+            if (p.parent != null) {
+                p.parent.descendantCount += p.descendantCount + 1;
+                p.parent.masterySum += p.masterySum;
+                p.parent.masteryMin = Math.min(p.parent.masteryMin, p.masteryMin);
+                p.parent.masteryMax = Math.max(p.parent.masteryMax, p.masteryMax);
+            }
+        }
+
+        long version = aggregateService.nextVersion();
+        List<Object[]> batch = new ArrayList<>(BATCH_SIZE);
+        for (Pending p : all) {
+            batch.add(new Object[]{p.id, p.descendantCount, p.masterySum, p.masteryMin, p.masteryMax, version});
+            if (batch.size() == BATCH_SIZE) {
+                jdbc.batchUpdate(INSERT_STATS, batch);
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) {
+            jdbc.batchUpdate(INSERT_STATS, batch);
+        }
+
+        // existing ancestors: one chain update per attachment point
+        Map<UUID, long[]> attached = new LinkedHashMap<>();
+        for (Pending p : all) {
+            if (p.parent == null && p.item.parentId != null) {
+                long[] t = attached.computeIfAbsent(p.item.parentId,
+                        k -> new long[]{0, 0, Integer.MAX_VALUE, Integer.MIN_VALUE});
+                t[0] += p.descendantCount + 1;
+                t[1] += p.masterySum;
+                t[2] = Math.min(t[2], p.masteryMin);
+                t[3] = Math.max(t[3], p.masteryMax);
+            }
+        }
+        attached.forEach((parentId, t) -> {
+            statsRepository.addToChain(parentId, t[0], t[1], (int) t[2], (int) t[3]);
+            aggregateService.touch(parentId);
+        });
+    }
+
+    private static NodeCreateRequest toCreateRequest(NodeImportItem item) {
+        NodeCreateRequest c = new NodeCreateRequest();
+        c.title = item.title;
+        c.description = item.description;
+        c.category = item.category;
+        c.mastery = item.mastery;
+        return c;
+    }
+
+    private static void error(Map<String, Map<String, String>> errors, Pending p, String field, String message) {
+        errors.computeIfAbsent(p.path, k -> new LinkedHashMap<>()).putIfAbsent(field, message);
+    }
+}
@@ -0,0 +1,73 @@
+package com.orang3i.skillvault.service;
+
+import com.orang3i.skillvault.repository.NodeClosureRepository;
+import com.orang3i.skillvault.repository.NodeRepository;
+import org.springframework.dao.CannotAcquireLockException;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+
+/**
+ * Row-locks nodes together with all their ancestors for the rest of the transaction.
+ * <p>
+ * Every move, create and delete locks the paths it touches first, starting with the roots of their
+ * trees. A path can only change through a write that holds its root, so once the roots are locked the
+ * paths read next are final, and the cycle check of a move sees every move that could interfere with
+ * it. Writes in the same tree queue on the root (they already contend for the root's rollup row);
+ * writes in different trees share no locks and run in parallel.
+ */
+@Component
+public class NodePathLocks {
+
+    private final NodeRepository nodeRepository;
+    private final NodeClosureRepository closureRepository;
+
+    public NodePathLocks(NodeRepository nodeRepository, NodeClosureRepository closureRepository) {
+        this.nodeRepository = nodeRepository;
+        this.closureRepository = closureRepository;
+    }
+
+    /**
+     * Locks the nodes and their ancestors and returns each path as of the lock: the node itself,
+     * its parent, ... up to the root. Ids that do not exist are left out. Must run inside a transaction.
+     *
+     * @throws CannotAcquireLockException if a whole tree was moved under another while waiting for its
+     *                                    root; the caller has to start over in a new transaction
+     */
+    public Map<UUID, List<UUID>> lock(Collection<UUID> ids) {
+        Set<UUID> roots = roots(paths(ids));
+        if (roots.isEmpty()) {
+            return Map.of();
+        }
+        // one statement, in id order, so two writers spanning the same trees cannot deadlock
+        nodeRepository.lockAll(roots);
+
+        Map<UUID, List<UUID>> paths = paths(ids);
+        if (!roots.containsAll(roots(paths))) {
+            throw new CannotAcquireLockException("tree was moved while waiting for its lock");
+        }
+        Set<UUID> rest = new HashSet<>();
+        paths.values().forEach(rest::addAll);
+        rest.removeAll(roots);
+        if (!rest.isEmpty()) {
+            nodeRepository.lockAll(rest);
+        }
+        return paths;
+    }
+
+    private Map<UUID, List<UUID>> paths(Collection<UUID> ids) {
+        Map<UUID, List<UUID>> paths = new HashMap<>();
+        for (Object[] row : closureRepository.findPaths(ids)) {
+            paths.computeIfAbsent((UUID) row[0], k -> new ArrayList<>()).add((UUID) row[1]);
+        }
+        return paths;
+    }
+
+    private static Set<UUID> roots(Map<UUID, List<UUID>> paths) {
+        Set<UUID> roots = new HashSet<>();
+        for (List<UUID> path : paths.values()) {
+            roots.add(path.get(path.size() - 1));
+        }
+        return roots;
+    }
+}
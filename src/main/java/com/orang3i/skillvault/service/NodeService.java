@@ -1,113 +1,559 @@
 package com.orang3i.skillvault.service;
 
+import com.orang3i.skillvault.cache.TreeSnapshot;
+import com.orang3i.skillvault.cache.TreeSnapshotCache;
+import com.orang3i.skillvault.dto.CategoryFacet;
+import com.orang3i.skillvault.dto.NodeAggregates;
 import com.orang3i.skillvault.dto.NodeCreateRequest;
+import com.orang3i.skillvault.dto.NodePageResponse;
 import com.orang3i.skillvault.dto.NodeResponse;
 import com.orang3i.skillvault.dto.NodeTreeResponse;
 import com.orang3i.skillvault.dto.NodeUpdateRequest;
 import com.orang3i.skillvault.entity.Node;
+import com.orang3i.skillvault.event.NodeChangedEvent;
 import com.orang3i.skillvault.exception.NotFoundException;
+import com.orang3i.skillvault.metrics.RequestMetrics;
+import com.orang3i.skillvault.repository.NodeClosureRepository;
 import com.orang3i.skillvault.repository.NodeRepository;
+import com.orang3i.skillvault.repository.NodeRow;
+import com.orang3i.skillvault.repository.TreeRow;
+import io.micrometer.core.annotation.Timed;
 import jakarta.transaction.Transactional;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.CannotAcquireLockException;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
 
+/**
+ * Node reads and writes. Every operation works inside one vault: an id of another vault's node is
+ * answered as not found, and no query reads rows of any other vault.
+ */
 @Service
 public class NodeService {
 
     private final NodeRepository nodeRepository;
+    private final NodeClosureRepository closureRepository;
+    private final NodeAggregateService aggregateService;
+    private final TreeSnapshotCache treeCache;
+    private final ApplicationEventPublisher events;
+    private final NodePathLocks pathLocks;
+    private final TransactionTemplate transactions;
 
-    public NodeService(NodeRepository nodeRepository) {
+    public NodeService(NodeRepository nodeRepository, NodeClosureRepository closureRepository,
+                       NodeAggregateService aggregateService, TreeSnapshotCache treeCache,
+                       ApplicationEventPublisher events, NodePathLocks pathLocks,
+                       PlatformTransactionManager transactionManager) {
         this.nodeRepository = nodeRepository;
+        this.closureRepository = closureRepository;
+        this.aggregateService = aggregateService;
+        this.treeCache = treeCache;
+        this.events = events;
+        this.pathLocks = pathLocks;
+        this.transactions = new TransactionTemplate(transactionManager);
     }
 
     @Transactional
-    public NodeResponse create(NodeCreateRequest req) {
+    @Timed(value = "skillvault.node.service", extraTags = {"op", "create"}, histogram = true)
+    public NodeResponse create(String vault, NodeCreateRequest req) {
         Node parent = null; //if node is parent node then parent of that node remains null
         if (req.parentId != null) {
-            parent = nodeRepository.findById(req.parentId).orElseThrow(() -> new NotFoundException("parent not found"));
+            // the vault is checked before the lock, so no write ever locks another vault's rows
+            if (!nodeRepository.existsByIdAndVaultId(req.parentId, vault)) {
+                throw new NotFoundException("parent not found");
+            }
+            pathLocks.lock(List.of(req.parentId)); // the closure rows are copied from the parent's path
+            parent = nodeRepository.findByIdAndVaultId(req.parentId, vault)
+                    .orElseThrow(() -> new NotFoundException("parent not found"));
         }
 
         Node node = new Node();
+        node.setVaultId(vault);
         node.setTitle(req.title);
         node.setDescription(req.description);
         node.setCategory(req.category);
         node.setMastery(req.mastery);
         node.setParent(parent);
 
-        Node saved = nodeRepository.save(node);
+        Node saved = nodeRepository.saveAndFlush(node);
 
-        return toResponse(saved);
+        closureRepository.insertSelf(saved.getId());
+        if (parent != null) {
+            closureRepository.insertUnderParent(saved.getId(), parent.getId());
+        }
+        aggregateService.nodeCreated(saved.getId(), (parent == null) ? null : parent.getId(), saved.getMastery());
+
+        NodeResponse response = toResponse(saved, aggregateService.get(saved.getId()));
+        events.publishEvent(NodeChangedEvent.created(vault, response));
+        return response;
     }
 
     @Transactional
-    public NodeResponse update(UUID id, NodeUpdateRequest req) {
-        Node node = nodeRepository.findById(id)
+    @Timed(value = "skillvault.node.service", extraTags = {"op", "update"}, histogram = true)
+    public NodeResponse update(String vault, UUID id, NodeUpdateRequest req) {
+        Node node = nodeRepository.findByIdAndVaultId(id, vault)
                 .orElseThrow(() -> new NotFoundException("Node not found"));
 
+        int oldMastery = node.getMastery();
+
         // Update fields
         node.setTitle(req.title);
         node.setDescription(req.description);
         node.setCategory(req.category);
         node.setMastery(req.mastery);
 
-        Node saved = nodeRepository.save(node);
-        return toResponse(saved);
+        Node saved = nodeRepository.saveAndFlush(node);
+        aggregateService.nodeUpdated(id, oldMastery, saved.getMastery());
+        NodeResponse response = toResponse(saved, aggregateService.get(id));
+        events.publishEvent(NodeChangedEvent.updated(vault, response));
+        return response;
     }
 
     @Transactional()
-    public NodeResponse get(UUID id) {
-        Node node = nodeRepository.findById(id).orElseThrow(() -> new NotFoundException("node not found"));
-        return toResponse(node);
+    @Timed(value = "skillvault.node.service", extraTags = {"op", "get"}, histogram = true)
+    public NodeResponse get(String vault, UUID id) {
+        Node node = nodeRepository.findByIdAndVaultId(id, vault).orElseThrow(() -> new NotFoundException("node not found"));
+        return toResponse(node, aggregateService.get(id));
     }
 
-    @Transactional()
-    public List<NodeResponse> listChildren(UUID parentId) {
-        List<Node> nodes = (parentId == null) ? nodeRepository.findByParentIsNull() : nodeRepository.findByParentId(parentId);
+    // the nodes of the vault that still exist, in no particular order
+    @Transactional
+    public List<NodeResponse> getAll(String vault, Collection<UUID> ids) {
+        return toResponses(nodeRepository.findByVaultIdAndIdIn(vault, ids));
+    }
+
+    // Reads served from the snapshot cache are deliberately not @Transactional: a hit never touches JPA
+    @Timed(value = "skillvault.node.service", extraTags = {"op", "listChildren"}, histogram = true)
+    public List<NodeResponse> listChildren(String vault, UUID parentId, NodeFields fields) {
+        if (treeCache.isEnabled()) {
+            TreeSnapshot snapshot = treeCache.snapshot(vault);
+            UUID[] childIds;
+            if (parentId == null) {
+                childIds = snapshot.rootIds();
+            } else {
+                TreeSnapshot.CachedNode parent = snapshot.get(parentId);
+                childIds = (parent == null) ? new UUID[0] : parent.childIds();
+            }
+            return Arrays.stream(childIds).map(snapshot::get).map(this::toResponse).toList();
+        }
+
+        boolean withDescription = fields.includes("description");
+        List<NodeRow> rows = (parentId == null)
+                ? nodeRepository.findRootRows(vault, withDescription)
+                : nodeRepository.findChildRows(vault, parentId, withDescription);
+        return toResponses(rows, fields);
+    }
+
+    public static final int MAX_PAGE_SIZE = 500;
 
-        return nodes.stream().map(this::toResponse).toList();
+    /**
+     * One page of children in (createdAt, id) order. The cursor is the sort key of the last
+     * row of the previous page, so each page is an index seek regardless of how deep it is.
+     */
+    @Transactional
+    @Timed(value = "skillvault.node.service", extraTags = {"op", "listChildrenPage"}, histogram = true)
+    public NodePageResponse listChildrenPage(String vault, UUID parentId, String cursor, int limit, NodeFields fields) {
+        checkPageSize(limit);
+        // one extra row tells us whether there is a next page
+        Limit fetch = Limit.of(limit + 1);
+        boolean withDescription = fields.includes("description");
+
+        List<NodeRow> rows;
+        if (cursor == null) {
+            rows = (parentId == null)
+                    ? nodeRepository.findRootsFirstPage(vault, withDescription, fetch)
+                    : nodeRepository.findChildrenFirstPage(vault, parentId, withDescription, fetch);
+        } else {
+            CursorKey key = decodeCursor(cursor);
+            rows = (parentId == null)
+                    ? nodeRepository.findRootsPageAfter(vault, key.createdAt(), key.id(), withDescription, fetch)
+                    : nodeRepository.findChildrenPageAfter(vault, parentId, key.createdAt(), key.id(), withDescription, fetch);
+        }
+        return toPage(rows, limit, fields);
     }
 
+    /**
+     * One page of the nodes in a category, anywhere in the vault, in (createdAt, id) order;
+     * same cursor scheme as listChildrenPage.
+     */
     @Transactional
-    public void delete(UUID id) {
-        if (!nodeRepository.existsById(id)) {
+    @Timed(value = "skillvault.node.service", extraTags = {"op", "listByCategoryPage"}, histogram = true)
+    public NodePageResponse listByCategoryPage(String vault, String category, String cursor, int limit, NodeFields fields) {
+        checkPageSize(limit);
+        Limit fetch = Limit.of(limit + 1);
+        boolean withDescription = fields.includes("description");
+
+        List<NodeRow> rows;
+        if (cursor == null) {
+            rows = nodeRepository.findCategoryFirstPage(vault, category, withDescription, fetch);
+        } else {
+            CursorKey key = decodeCursor(cursor);
+            rows = nodeRepository.findCategoryPageAfter(vault, category, key.createdAt(), key.id(), withDescription, fetch);
+        }
+        return toPage(rows, limit, fields);
+    }
+
+    /**
+     * Node count and average mastery per category, for the vault's whole forest or the subtree under rootId
+     * (the root included). One grouped query; most common category first.
+     */
+    @Transactional
+    @Timed(value = "skillvault.node.service", extraTags = {"op", "categoryFacets"}, histogram = true)
+    public List<CategoryFacet> categoryFacets(String vault, UUID rootId) {
+        List<Object[]> rows;
+        if (rootId == null) {
+            rows = nodeRepository.countByCategory(vault);
+        } else {
+            if (!nodeRepository.existsByIdAndVaultId(rootId, vault)) {
+                throw new NotFoundException("node not found");
+            }
+            rows = nodeRepository.countByCategoryUnder(vault, rootId);
+        }
+
+        List<CategoryFacet> facets = new ArrayList<>(rows.size());
+        for (Object[] row : rows) {
+            CategoryFacet f = new CategoryFacet();
+            f.category = (String) row[0];
+            f.count = ((Number) row[1]).longValue();
+            f.masteryAvg = ((Number) row[2]).doubleValue();
+            facets.add(f);
+        }
+        facets.sort(Comparator.comparingLong((CategoryFacet f) -> f.count).reversed()
+                .thenComparing(f -> f.category, Comparator.nullsLast(Comparator.naturalOrder())));
+        return facets;
+    }
+
+    private static void checkPageSize(int limit) {
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException("limit must be between 1 and " + MAX_PAGE_SIZE);
+        }
+    }
+
+    // rows holds up to limit + 1 rows; the extra one only signals a next page
+    private NodePageResponse toPage(List<NodeRow> rows, int limit, NodeFields fields) {
+        NodePageResponse page = new NodePageResponse();
+        boolean hasMore = rows.size() > limit;
+        List<NodeRow> items = hasMore ? rows.subList(0, limit) : rows;
+        page.items = toResponses(items, fields);
+        if (hasMore) {
+            NodeRow last = items.get(items.size() - 1);
+            page.next = encodeCursor(last.createdAt(), last.id());
+        }
+        return page;
+    }
+
+    private record CursorKey(Instant createdAt, UUID id) {
+    }
+
+    private static String encodeCursor(Instant createdAt, UUID id) {
+        String key = createdAt + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(key.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static CursorKey decodeCursor(String cursor) {
+        String[] key;
+        try {
+            key = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split("\\|");
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("invalid cursor");
+        }
+        if (key.length != 2) {
+            throw new IllegalArgumentException("invalid cursor");
+        }
+        try {
+            return new CursorKey(Instant.parse(key[0]), UUID.fromString(key[1]));
+        } catch (DateTimeParseException | IllegalArgumentException e) {
+            throw new IllegalArgumentException("invalid cursor");
+        }
+    }
+
+    /**
+     * Deletes a node and its whole subtree with a fixed number of set-based statements driven by the
+     * closure table, so no descendant is loaded into the persistence context. Returns the number of
+     * nodes removed.
+     */
+    @Transactional
+    @Timed(value = "skillvault.node.service", extraTags = {"op", "delete"}, histogram = true)
+    public int delete(String vault, UUID id) {
+        if (!nodeRepository.existsByIdAndVaultId(id, vault)) {
             throw new NotFoundException("node not found");
         }
-        nodeRepository.deleteById(id);
+        pathLocks.lock(List.of(id));
+        Node node = nodeRepository.findByIdAndVaultId(id, vault).orElseThrow(() -> new NotFoundException("node not found"));
+        UUID parentId = (node.getParent() == null) ? null : node.getParent().getId();
+
+        aggregateService.subtreeDeleted(id, parentId);
+        nodeRepository.unlinkSubtree(id);
+        int deleted = nodeRepository.deleteSubtree(id);
+        closureRepository.deleteSubtree(id);
+        events.publishEvent(NodeChangedEvent.deleted(vault, id, parentId));
+        return deleted;
     }
 
     @Transactional
-    public NodeTreeResponse getSubtree(UUID id) {
-        Node root = nodeRepository.findById(id).orElseThrow(() -> new NotFoundException("node not found"));
-        return buildTree(root);
+    public long countDescendants(String vault, UUID id) {
+        if (!nodeRepository.existsByIdAndVaultId(id, vault)) {
+            throw new NotFoundException("node not found");
+        }
+        return closureRepository.countByAncestorIdAndDepthGreaterThan(id, 0);
+    }
+
+    /**
+     * @param depth levels below the node to include, null for all; nodes at the cutoff get a childCount
+     */
+    @Timed(value = "skillvault.node.service", extraTags = {"op", "getSubtree"}, histogram = true)
+    public NodeTreeResponse getSubtree(String vault, UUID id, Integer depth) {
+        int maxDepth = maxDepth(depth);
+        if (treeCache.isEnabled()) {
+            TreeSnapshot snapshot = treeCache.snapshot(vault);
+            TreeSnapshot.CachedNode root = snapshot.get(id);
+            if (root == null) {
+                throw new NotFoundException("node not found");
+            }
+            NodeTreeResponse tree = buildTree(root, snapshot, 0, maxDepth);
+            RequestMetrics.nodesMaterialized(count(tree));
+            return tree;
+        }
+
+        List<TreeRow> nodes = (depth == null)
+                ? nodeRepository.findSubtreeRows(vault, id)
+                : nodeRepository.findSubtreeRowsToDepth(vault, id, maxDepth);
+        TreeRow root = nodes.stream()
+                .filter(n -> n.id().equals(id))
+                .findFirst()
+                .orElseThrow(() -> new NotFoundException("node not found"));
+
+        RequestMetrics.nodesMaterialized(nodes.size());
+        List<NodeTreeResponse> cutoff = new ArrayList<>();
+        Map<UUID, NodeAggregates> aggregates = aggregateService.getAll(nodes.stream().map(TreeRow::id).toList());
+        NodeTreeResponse tree = buildTree(root, groupByParent(nodes), aggregates, 0, maxDepth, cutoff);
+        fillChildCounts(vault, cutoff);
+        return tree;
     }
 
-    private NodeTreeResponse buildTree(Node node) {
+    @Timed(value = "skillvault.node.service", extraTags = {"op", "getFullTree"}, histogram = true)
+    public List<NodeTreeResponse> getFullTree(String vault, Integer depth) {
+        int maxDepth = maxDepth(depth);
+        if (treeCache.isEnabled()) {
+            TreeSnapshot snapshot = treeCache.snapshot(vault);
+            List<NodeTreeResponse> trees = Arrays.stream(snapshot.rootIds())
+                    .map(id -> buildTree(snapshot.get(id), snapshot, 0, maxDepth))
+                    .toList();
+            RequestMetrics.nodesMaterialized(trees.stream().mapToLong(NodeService::count).sum());
+            return trees;
+        }
+
+        List<TreeRow> nodes = (depth == null)
+                ? nodeRepository.findAllTreeRows(vault)
+                : nodeRepository.findForestRowsToDepth(vault, maxDepth);
+        RequestMetrics.nodesMaterialized(nodes.size());
+        Map<UUID, List<TreeRow>> childrenByParent = groupByParent(nodes);
+        Map<UUID, NodeAggregates> aggregates = aggregateService.getAll(nodes.stream().map(TreeRow::id).toList());
+        List<NodeTreeResponse> cutoff = new ArrayList<>();
+        List<NodeTreeResponse> trees = childrenByParent.getOrDefault(null, List.of()).stream()
+                .map(root -> buildTree(root, childrenByParent, aggregates, 0, maxDepth, cutoff))
+                .toList();
+        fillChildCounts(vault, cutoff);
+        return trees;
+    }
+
+    private static int maxDepth(Integer depth) {
+        if (depth == null) {
+            return Integer.MAX_VALUE;
+        }
+        if (depth < 0) {
+            throw new IllegalArgumentException("depth must not be negative");
+        }
+        return depth;
+    }
+
+    // one grouped count over the parent_id index for all cutoff nodes together
+    private void fillChildCounts(String vault, List<NodeTreeResponse> cutoff) {
+        if (cutoff.isEmpty()) {
+            return;
+        }
+        Map<UUID, Integer> counts = new HashMap<>();
+        for (Object[] row : nodeRepository.countChildren(vault, cutoff.stream().map(r -> r.id).toList())) {
+            counts.put((UUID) row[0], ((Number) row[1]).intValue());
+        }
+        for (NodeTreeResponse r : cutoff) {
+            r.childCount = counts.getOrDefault(r.id, 0);
+        }
+    }
+
+    /**
+     * Compact source for streaming writers: the vault's cached snapshot, or a throwaway snapshot loaded in one query.
+     * The throwaway one holds every node the response shows, plus the level below a depth cutoff so its child
+     * counts are exact, with rollups from node_stats when cut. So without the cache a stream of the whole tree
+     * still takes memory in proportion to the tree (though less than the DTO tree of the plain endpoint):
+     * streaming rows instead would need them in depth-first order, which the closure table cannot sort by.
+     */
+    @Timed(value = "skillvault.node.service", extraTags = {"op", "treeSnapshot"}, histogram = true)
+    public TreeSnapshot treeSnapshot(String vault, Integer depth) {
+        int maxDepth = maxDepth(depth);
+        if (treeCache.isEnabled()) {
+            return treeCache.snapshot(vault);
+        }
+        return (depth == null || maxDepth == Integer.MAX_VALUE)
+                ? TreeSnapshot.ofTree(nodeRepository.findAllTreeRows(vault))
+                : withStoredRollups(nodeRepository.findForestRowsToDepth(vault, maxDepth + 1));
+    }
+
+    /**
+     * Same as treeSnapshot() but only guaranteed to contain the subtree under id.
+     */
+    @Timed(value = "skillvault.node.service", extraTags = {"op", "subtreeSnapshot"}, histogram = true)
+    public TreeSnapshot subtreeSnapshot(String vault, UUID id, Integer depth) {
+        int maxDepth = maxDepth(depth);
+        TreeSnapshot snapshot;
+        if (treeCache.isEnabled()) {
+            snapshot = treeCache.snapshot(vault);
+        } else if (depth == null || maxDepth == Integer.MAX_VALUE) {
+            snapshot = TreeSnapshot.ofTree(nodeRepository.findSubtreeRows(vault, id));
+        } else {
+            snapshot = withStoredRollups(nodeRepository.findSubtreeRowsToDepth(vault, id, maxDepth + 1));
+        }
+        if (snapshot.get(id) == null) {
+            throw new NotFoundException("node not found");
+        }
+        return snapshot;
+    }
+
+    private TreeSnapshot withStoredRollups(List<TreeRow> rows) {
+        Map<UUID, TreeSnapshot.Rollup> rollups = new HashMap<>();
+        aggregateService.getAll(rows.stream().map(TreeRow::id).toList()).forEach((id, a) ->
+                rollups.put(id, new TreeSnapshot.Rollup(a.descendantCount, a.masterySum, a.masteryMin, a.masteryMax)));
+        return TreeSnapshot.ofTree(rows, rollups);
+    }
+
+    /**
+     * Groups already loaded rows by parent id (null key = roots), keeping the query order
+     * so children come out in the same order as the old lazy collection.
+     */
+    private Map<UUID, List<TreeRow>> groupByParent(List<TreeRow> nodes) {
+        Map<UUID, List<TreeRow>> childrenByParent = new HashMap<>();
+        for (TreeRow n : nodes) {
+            childrenByParent.computeIfAbsent(n.parentId(), k -> new ArrayList<>()).add(n);
+        }
+        return childrenByParent;
+    }
+
+    private NodeTreeResponse buildTree(TreeRow node, Map<UUID, List<TreeRow>> childrenByParent,
+                                       Map<UUID, NodeAggregates> aggregates,
+                                       int level, int maxDepth, List<NodeTreeResponse> cutoff) {
         NodeTreeResponse r = new NodeTreeResponse();
-        r.id = node.getId();
-        r.title = node.getTitle();
-        r.category = node.getCategory();
-        r.mastery = node.getMastery();
+        r.id = node.id();
+        r.title = node.title();
+        r.category = node.category();
+        r.mastery = node.mastery();
+        r.aggregates = aggregates.get(node.id());
 
-        r.children = node.getChildren().stream().map(this::buildTree).toList();
+        if (level == maxDepth) {
+            r.children = List.of();
+            cutoff.add(r);
+            return r;
+        }
+        r.children = childrenByParent.getOrDefault(node.id(), List.of()).stream()
+                .map(child -> buildTree(child, childrenByParent, aggregates, level + 1, maxDepth, cutoff))
+                .toList();
 
         return r;
     }
 
-    @Transactional
-    public List<NodeTreeResponse> getFullTree() {
-        return nodeRepository.findByParentIsNull().stream().map(this::buildTree).toList();
+    // responses built from the snapshot, for the nodes-materialized metric
+    private static long count(NodeTreeResponse tree) {
+        long n = 1;
+        for (NodeTreeResponse child : tree.children) {
+            n += count(child);
+        }
+        return n;
+    }
+
+    private NodeTreeResponse buildTree(TreeSnapshot.CachedNode node, TreeSnapshot snapshot, int level, int maxDepth) {
+        NodeTreeResponse r = new NodeTreeResponse();
+        r.id = node.id();
+        r.title = node.title();
+        r.category = node.category();
+        r.mastery = node.mastery();
+        r.aggregates = toAggregates(node.rollup());
+
+        if (level == maxDepth) {
+            r.children = List.of();
+            r.childCount = node.childIds().length;
+            return r;
+        }
+        r.children = Arrays.stream(node.childIds())
+                .map(child -> buildTree(snapshot.get(child), snapshot, level + 1, maxDepth))
+                .toList();
+
+        return r;
     }
 
-    @jakarta.transaction.Transactional
-    public NodeResponse move(UUID nodeId, UUID newParentId) {
-        Node node = nodeRepository.findById(nodeId).orElseThrow(() -> new NotFoundException("node not found"));
+    private static final int MOVE_ATTEMPTS = 5;
 
-        Node newParent = null;
-        if (newParentId != null) {
-            newParent = nodeRepository.findById(newParentId).orElseThrow(() -> new NotFoundException("new parent not found"));
+    /**
+     * Moves a node under a new parent (null = make it a root). The node's path and the new parent's path
+     * are row-locked before the cycle check, so two moves that could form a cycle between them run one
+     * after the other and the second sees the first. A move that loses a lock race (lock timeout, deadlock
+     * or a stale version) is retried in a fresh transaction. Both nodes must be in the caller's vault;
+     * a new parent in another vault is rejected.
+     */
+    @Timed(value = "skillvault.node.service", extraTags = {"op", "move"}, histogram = true)
+    public NodeResponse move(String vault, UUID nodeId, UUID newParentId) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return transactions.execute(status -> moveOnce(vault, nodeId, newParentId));
+            } catch (ConcurrencyFailureException e) {
+                if (attempt == MOVE_ATTEMPTS) {
+                    throw e;
+                }
+                backOff(attempt);
+            }
         }
+    }
+
+    private static void backOff(int attempt) {
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(5, 20) * attempt);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CannotAcquireLockException("interrupted while retrying a move", e);
+        }
+    }
+
+    private NodeResponse moveOnce(String vault, UUID nodeId, UUID newParentId) {
+        // checked before anything is locked, so a move never holds another vault's rows; a node's vault never changes
+        checkVaults(vault, nodeId, newParentId);
+        Map<UUID, List<UUID>> paths = pathLocks.lock(
+                (newParentId == null) ? List.of(nodeId) : List.of(nodeId, newParentId));
+        if (!paths.containsKey(nodeId)) {
+            throw new NotFoundException("node not found");
+        }
+        if (newParentId != null && !paths.containsKey(newParentId)) {
+            throw new NotFoundException("new parent not found");
+        }
+
+        // loaded after the lock, so this is the committed state
+        Node node = nodeRepository.findByIdAndVaultId(nodeId, vault)
+                .orElseThrow(() -> new NotFoundException("node not found"));
+        Node newParent = (newParentId == null) ? null : nodeRepository.findByIdAndVaultId(newParentId, vault)
+                .orElseThrow(() -> new NotFoundException("new parent not found"));
 
         // can't move under itself
         if (newParent != null && node.getId().equals(newParent.getId())) {
@@ -115,31 +561,69 @@ public class NodeService {
         }
 
         // cycle prevention: can't move node under its descendant
-        if (newParent != null && isAncestor(node, newParent)) {
+        if (newParent != null && paths.get(newParentId).contains(nodeId)) {
             throw new IllegalArgumentException("cannot move a node under its descendant (cycle)");
         }
 
+        UUID previousParentId = (node.getParent() == null) ? null : node.getParent().getId();
+        aggregateService.detach(nodeId, previousParentId);
+
         node.setParent(newParent);
-        Node saved = nodeRepository.save(node);
-        return toResponse(saved);
+        Node saved = nodeRepository.saveAndFlush(node);
+
+        // rewrite the closure rows of the whole subtree with two set-based statements
+        closureRepository.detachSubtree(nodeId);
+        if (newParent != null) {
+            closureRepository.attachSubtree(nodeId, newParent.getId());
+        }
+        aggregateService.attach(nodeId, previousParentId, newParentId);
+
+        NodeResponse response = toResponse(saved, aggregateService.get(nodeId));
+        events.publishEvent(NodeChangedEvent.moved(vault, response, previousParentId));
+        return response;
     }
 
-    /**
-     * Returns true if "candidate" is somewhere under "node" in the tree.
-     * We check by walking UP from candidate -> parent -> parent ... until null,
-     * and see if we hit node.
-     */
-    private boolean isAncestor(Node node, Node candidate) {
-        Node cur = candidate;
-        while (cur != null) {
-            if (cur.getId().equals(node.getId())) return true;
-            cur = cur.getParent();
+    private void checkVaults(String vault, UUID nodeId, UUID newParentId) {
+        Map<UUID, String> vaults = new HashMap<>();
+        for (Object[] row : nodeRepository.findVaults((newParentId == null) ? List.of(nodeId) : List.of(nodeId, newParentId))) {
+            vaults.put((UUID) row[0], (String) row[1]);
+        }
+        if (!vault.equals(vaults.get(nodeId))) {
+            throw new NotFoundException("node not found");
+        }
+        if (newParentId != null && vaults.containsKey(newParentId) && !vault.equals(vaults.get(newParentId))) {
+            throw new IllegalArgumentException("cannot move a node to another vault");
         }
-        return false;
     }
 
+    private List<NodeResponse> toResponses(List<Node> nodes) {
+        Map<UUID, NodeAggregates> aggregates = aggregateService.getAll(nodes.stream().map(Node::getId).toList());
+        return nodes.stream().map(n -> toResponse(n, aggregates.get(n.getId()))).toList();
+    }
 
-    private NodeResponse toResponse(Node node) {
+    // aggregates are only looked up when the field set includes them
+    private List<NodeResponse> toResponses(List<NodeRow> rows, NodeFields fields) {
+        Map<UUID, NodeAggregates> aggregates = fields.includes("aggregates")
+                ? aggregateService.getAll(rows.stream().map(NodeRow::id).toList())
+                : Map.of();
+        return rows.stream().map(n -> toResponse(n, aggregates.get(n.id()))).toList();
+    }
+
+    private NodeResponse toResponse(NodeRow node, NodeAggregates aggregates) {
+        NodeResponse r = new NodeResponse();
+        r.id = node.id();
+        r.title = node.title();
+        r.description = node.description();
+        r.category = node.category();
+        r.mastery = node.mastery();
+        r.parentId = node.parentId();
+        r.createdAt = node.createdAt();
+        r.updatedAt = node.updatedAt();
+        r.aggregates = aggregates;
+        return r;
+    }
+
+    private NodeResponse toResponse(Node node, NodeAggregates aggregates) {
         NodeResponse r = new NodeResponse();
         r.id = node.getId();
         r.title = node.getTitle();
@@ -149,6 +633,26 @@ public class NodeService {
         r.parentId = (node.getParent() == null) ? null : node.getParent().getId();
         r.createdAt = node.getCreatedAt();
         r.updatedAt = node.getUpdatedAt();
+        r.aggregates = aggregates;
+        return r;
+    }
+
+    private NodeResponse toResponse(TreeSnapshot.CachedNode node) {
+        NodeResponse r = new NodeResponse();
+        r.id = node.id();
+        r.title = node.title();
+        r.description = node.description();
+        r.category = node.category();
+        r.mastery = node.mastery();
+        r.parentId = node.parentId();
+        r.createdAt = node.createdAt();
+        r.updatedAt = node.updatedAt();
+        r.aggregates = toAggregates(node.rollup());
         return r;
     }
+
+    private static NodeAggregates toAggregates(TreeSnapshot.Rollup rollup) {
+        return (rollup == null) ? null
+                : NodeAggregates.of(rollup.descendantCount(), rollup.masterySum(), rollup.masteryMin(), rollup.masteryMax());
+    }
 }
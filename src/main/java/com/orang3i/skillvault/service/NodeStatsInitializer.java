@@ -0,0 +1,33 @@
+package com.orang3i.skillvault.service;
+
+import com.orang3i.skillvault.dto.AggregateRebuildReport;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.stereotype.Component;
+
+/**
+ * Fills node_stats at startup when it does not cover every node,
+ * e.g. for databases created before the table existed.
+ */
+@Component
+public class NodeStatsInitializer implements ApplicationRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(NodeStatsInitializer.class);
+
+    private final NodeAggregateService aggregateService;
+
+    public NodeStatsInitializer(NodeAggregateService aggregateService) {
+        this.aggregateService = aggregateService;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (aggregateService.needsBackfill()) {
+            AggregateRebuildReport report = aggregateService.rebuild();
+            log.info("Rebuilt node_stats for {} nodes ({} missing, {} drifted) in {} ms",
+                    report.nodes, report.missing, report.drifted, report.millis);
+        }
+    }
+}
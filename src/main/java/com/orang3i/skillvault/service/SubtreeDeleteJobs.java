@@ -0,0 +1,155 @@
+package com.orang3i.skillvault.service;
+
+import com.orang3i.skillvault.dto.DeleteJobResponse;
+import com.orang3i.skillvault.exception.NotFoundException;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs subtree deletes in the background for branches too large to wait on.
+ * Each vault has its own queue and runs its jobs one at a time, so its big deletes do not contend for the
+ * same locks; a small pool serves the vaults in turn, so one vault's huge delete does not hold up the others.
+ * Finished jobs are kept for an hour so clients can poll the result from the vault that submitted them,
+ * and pruned every few minutes after that.
+ */
+@Service
+public class SubtreeDeleteJobs {
+
+    private static final Logger log = LoggerFactory.getLogger(SubtreeDeleteJobs.class);
+    private static final Duration RETENTION = Duration.ofHours(1);
+
+    private static final Duration PRUNE_INTERVAL = Duration.ofMinutes(5);
+
+    private final NodeService nodeService;
+    private final Map<UUID, Job> jobs = new ConcurrentHashMap<>();
+    // vaults with a job running or handed to the pool, with the jobs queued behind it; guarded by itself
+    private final Map<String, Queue<DeleteJobResponse>> queued = new HashMap<>();
+    private final ScheduledExecutorService executor;
+
+    private record Job(String vault, DeleteJobResponse state) {
+    }
+
+    public SubtreeDeleteJobs(NodeService nodeService, @Value("${skillvault.delete-jobs.threads:2}") int threads) {
+        this.nodeService = nodeService;
+        AtomicInteger count = new AtomicInteger();
+        this.executor = Executors.newScheduledThreadPool(threads, r -> {
+            Thread t = new Thread(r, "subtree-delete-" + count.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        executor.scheduleWithFixedDelay(this::pruneFinished, PRUNE_INTERVAL.toMillis(), PRUNE_INTERVAL.toMillis(),
+                TimeUnit.MILLISECONDS);
+    }
+
+    /** Checks the node exists in the vault and queues the delete; the returned job is PENDING. */
+    public DeleteJobResponse submit(String vault, UUID nodeId) {
+        DeleteJobResponse job = new DeleteJobResponse();
+        job.id = UUID.randomUUID();
+        job.nodeId = nodeId;
+        job.nodes = nodeService.countDescendants(vault, nodeId) + 1;
+        job.status = "PENDING";
+        job.submittedAt = Instant.now();
+        jobs.put(job.id, new Job(vault, job));
+
+        DeleteJobResponse response = copy(job);
+        synchronized (queued) {
+            Queue<DeleteJobResponse> behind = queued.get(vault);
+            if (behind != null) {
+                behind.add(job); // the vault's current job hands it to the pool when it is done
+                return response;
+            }
+            queued.put(vault, new ArrayDeque<>());
+        }
+        executor.execute(() -> runQueued(vault, job));
+        return response;
+    }
+
+    public DeleteJobResponse get(String vault, UUID jobId) {
+        Job job = jobs.get(jobId);
+        if (job == null || !job.vault().equals(vault)) {
+            throw new NotFoundException("delete job not found");
+        }
+        synchronized (job.state()) {
+            return copy(job.state());
+        }
+    }
+
+    // runs the job, then passes the vault's next one to the back of the pool queue so other vaults get a turn
+    private void runQueued(String vault, DeleteJobResponse job) {
+        run(vault, job);
+        DeleteJobResponse next;
+        synchronized (queued) {
+            next = queued.get(vault).poll();
+            if (next == null) {
+                queued.remove(vault);
+                return;
+            }
+        }
+        try {
+            executor.execute(() -> runQueued(vault, next));
+        } catch (RejectedExecutionException e) {
+            log.debug("Shutting down, delete job {} not started", next.id);
+        }
+    }
+
+    private void run(String vault, DeleteJobResponse job) {
+        synchronized (job) {
+            job.status = "RUNNING";
+        }
+        try {
+            int deleted = nodeService.delete(vault, job.nodeId);
+            synchronized (job) {
+                job.deleted = deleted;
+                job.status = "DONE";
+                job.finishedAt = Instant.now();
+            }
+        } catch (RuntimeException e) {
+            log.warn("Subtree delete of {} failed", job.nodeId, e);
+            synchronized (job) {
+                job.error = e.getMessage();
+                job.status = "FAILED";
+                job.finishedAt = Instant.now();
+            }
+        }
+    }
+
+    private void pruneFinished() {
+        Instant cutoff = Instant.now().minus(RETENTION);
+        jobs.values().removeIf(j -> j.state().finishedAt != null && j.state().finishedAt.isBefore(cutoff));
+    }
+
+    private static DeleteJobResponse copy(DeleteJobResponse j) {
+        DeleteJobResponse c = new DeleteJobResponse();
+        c.id = j.id;
+        c.nodeId = j.nodeId;
+        c.status = j.status;
+        c.nodes = j.nodes;
+        c.deleted = j.deleted;
+        c.error = j.error;
+        c.submittedAt = j.submittedAt;
+        c.finishedAt = j.finishedAt;
+        return c;
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdown();
+    }
+}
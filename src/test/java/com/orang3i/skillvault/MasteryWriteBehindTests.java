@@ -0,0 +1,226 @@
+package com.orang3i.skillvault;
+
+import com.orang3i.skillvault.cache.TreeSnapshotCache;
+import com.orang3i.skillvault.entity.Node;
+import com.orang3i.skillvault.repository.NodeRepository;
+import com.orang3i.skillvault.service.MasteryJournal;
+import com.orang3i.skillvault.service.MasteryWriteBehind;
+import com.orang3i.skillvault.service.NodeBatchService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.CannotAcquireLockException;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.web.context.WebApplicationContext;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+// flushes only when the tests ask for one
+@SpringBootTest(properties = {
+        "skillvault.mastery.flush-interval-ms=3600000",
+        "skillvault.mastery.journal-dir=target/mastery-journal/${random.uuid}"})
+class MasteryWriteBehindTests {
+
+    @Autowired
+    private WebApplicationContext wac;
+
+    @Autowired
+    private MasteryWriteBehind writeBehind;
+
+    @Autowired
+    private NodeRepository nodeRepository;
+
+    @Autowired
+    private NodeBatchService batchService;
+
+    @Autowired
+    private TreeSnapshotCache treeCache;
+
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private MockMvc mockMvc;
+
+    private NodeFixtures nodes;
+
+    @BeforeEach
+    void setup() {
+        this.mockMvc = MockMvcBuilders.webAppContextSetup(wac).build();
+        this.nodes = new NodeFixtures(mockMvc);
+    }
+
+    private int storedMastery(String id) {
+        return ((Number) nodeRepository.findMasteries(Node.DEFAULT_VAULT, List.of(UUID.fromString(id))).get(0)[1]).intValue();
+    }
+
+    private void increment(String id, int delta, int expectedMastery) throws Exception {
+        mockMvc.perform(post("/api/nodes/" + id + "/mastery")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"delta\": " + delta + "}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.mastery").value(expectedMastery));
+    }
+
+    @Test
+    void increments_shouldMergeAndBeReadableBeforeTheFlush() throws Exception {
+        String root = nodes.create("Practice Root", null, 10);
+        String skill = nodes.create("Practice Skill", root, 40);
+
+        increment(skill, 5, 45);
+        increment(skill, 10, 55);
+
+        // read-your-writes before anything is written
+        assertEquals(40, storedMastery(skill));
+        mockMvc.perform(get("/api/nodes/" + skill))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.mastery").value(55))
+                .andExpect(header().doesNotExist("ETag"));
+
+        assertTrue(writeBehind.flush() >= 1);
+        assertEquals(55, storedMastery(skill));
+        assertFalse(writeBehind.hasPending(UUID.fromString(skill)));
+        mockMvc.perform(get("/api/nodes/" + root + "/subtree"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.children[0].mastery").value(55))
+                .andExpect(jsonPath("$.aggregates.masterySum").value(65));
+        mockMvc.perform(get("/api/nodes/" + skill))
+                .andExpect(jsonPath("$.mastery").value(55))
+                .andExpect(header().exists("ETag"));
+    }
+
+    @Test
+    void increment_shouldClampAndValidate() throws Exception {
+        String skill = nodes.create("Nearly Mastered", null, 95);
+        increment(skill, 10, 100);
+        writeBehind.flush();
+        assertEquals(100, storedMastery(skill));
+
+        mockMvc.perform(post("/api/nodes/" + UUID.randomUUID() + "/mastery")
+                        .contentType(MediaType.APPLICATION_JSON).content("{\"delta\": 1}"))
+                .andExpect(status().isNotFound());
+        mockMvc.perform(post("/api/nodes/" + skill + "/mastery")
+                        .contentType(MediaType.APPLICATION_JSON).content("{\"delta\": 101}"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(post("/api/nodes/" + skill + "/mastery")
+                        .contentType(MediaType.APPLICATION_JSON).content("{}"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void update_shouldReplaceIncrementsQueuedBeforeIt() throws Exception {
+        String skill = nodes.create("Reassessed", null, 40);
+        String other = nodes.create("Reassessed In Batch", null, 40);
+        increment(skill, 30, 70);
+        increment(other, 30, 70);
+
+        mockMvc.perform(put("/api/nodes/" + skill).contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"title\": \"Reassessed\", \"mastery\": 10}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.mastery").value(10));
+        mockMvc.perform(post("/api/nodes/batch").contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"operations\": [{\"op\": \"update\", \"id\": \"" + other
+                                + "\", \"title\": \"Reassessed In Batch\", \"mastery\": 15}]}"))
+                .andExpect(status().isOk());
+        assertFalse(writeBehind.hasPending(UUID.fromString(skill)));
+        assertFalse(writeBehind.hasPending(UUID.fromString(other)));
+
+        writeBehind.flush();
+        assertEquals(10, storedMastery(skill));
+        assertEquals(15, storedMastery(other));
+        mockMvc.perform(get("/api/nodes/" + skill)).andExpect(jsonPath("$.mastery").value(10));
+    }
+
+    // a flush locks like any other batch, roots first, so it can run alongside moves of the same nodes
+    @Test
+    void flush_shouldNotDeadlockWithWritesToTheSameTree() throws Exception {
+        String left = nodes.create("Left Root", null, 10);
+        String right = nodes.create("Right Root", null, 10);
+        String skill = nodes.create("Moving Skill", left, 10);
+
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        try {
+            Future<?> flushes = pool.submit(() -> {
+                for (int i = 0; i < 25; i++) {
+                    increment(skill, 1, 11 + i);
+                    try {
+                        writeBehind.flush();
+                    } catch (CannotAcquireLockException e) {
+                        // the skill moved to the other tree while the flush waited; it stays queued
+                    }
+                }
+                return null;
+            });
+            Future<?> moves = pool.submit(() -> {
+                for (int i = 0; i < 25; i++) {
+                    String parent = (i % 2 == 0) ? right : left;
+                    mockMvc.perform(post("/api/nodes/batch").contentType(MediaType.APPLICATION_JSON)
+                                    .content("{\"operations\": [{\"op\": \"move\", \"id\": \"" + skill
+                                            + "\", \"parentId\": \"" + parent + "\"}]}"))
+                            .andExpect(status().isOk());
+                }
+                return null;
+            });
+            flushes.get(60, TimeUnit.SECONDS);
+            moves.get(60, TimeUnit.SECONDS);
+        } finally {
+            pool.shutdownNow();
+        }
+        writeBehind.flush();
+        assertEquals(35, storedMastery(skill));
+    }
+
+    @Test
+    void journal_shouldReplayOnlySegmentsThatWereNotFlushed() throws Exception {
+        String skill = nodes.create("Crashed Practice", null, 20);
+        String other = nodes.create("Crashed And Flushed", null, 20);
+        Path dir = Path.of("target/mastery-journal", UUID.randomUUID().toString());
+
+        // a run that journaled two increments and died before flushing
+        MasteryJournal crashed = MasteryJournal.open(dir, true);
+        crashed.append(UUID.fromString(skill), 7);
+        crashed.append(UUID.fromString(skill), 3);
+        UUID unflushed = crashed.roll().get(0);
+        // and one whose flush committed but whose file was not removed yet
+        crashed.append(UUID.fromString(other), 50);
+        UUID flushed = crashed.roll().stream().filter(s -> !s.equals(unflushed)).findFirst().orElseThrow();
+        crashed.close();
+        jdbc.update("INSERT INTO mastery_journal_flushed (segment_id, flushed_at) VALUES (?, CURRENT_TIMESTAMP)", flushed);
+
+        MasteryWriteBehind restarted = new MasteryWriteBehind(nodeRepository, batchService, treeCache, jdbc,
+                transactionManager, 3600000, 500, dir.toString(), true);
+        try {
+            restarted.afterSingletonsInstantiated();
+            assertTrue(restarted.hasPending(UUID.fromString(skill)));
+            assertFalse(restarted.hasPending(UUID.fromString(other)));
+            assertFalse(Files.exists(dir.resolve(flushed + ".seg")));
+
+            assertEquals(1, restarted.flush());
+            assertEquals(30, storedMastery(skill));
+            assertEquals(20, storedMastery(other));
+            assertFalse(Files.exists(dir.resolve(unflushed + ".seg")));
+            assertEquals(0, jdbc.queryForObject("SELECT count(*) FROM mastery_journal_flushed WHERE segment_id IN (?, ?)",
+                    Long.class, unflushed, flushed));
+        } finally {
+            restarted.shutdown();
+        }
+    }
+}
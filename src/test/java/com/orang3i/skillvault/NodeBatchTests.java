@@ -0,0 +1,182 @@
+package com.orang3i.skillvault;
+
+import com.jayway.jsonpath.JsonPath;
+import com.orang3i.skillvault.admin.AggregatesEndpoint;
+import com.orang3i.skillvault.cache.TreeSnapshot;
+import com.orang3i.skillvault.cache.TreeSnapshotCache;
+import com.orang3i.skillvault.dto.AggregateRebuildReport;
+import com.orang3i.skillvault.entity.Node;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.ResultActions;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@SpringBootTest
+class NodeBatchTests {
+
+    @Autowired
+    private WebApplicationContext wac;
+
+    @Autowired
+    private TreeSnapshotCache cache;
+
+    @Autowired
+    private AggregatesEndpoint aggregates;
+
+    private MockMvc mockMvc;
+
+    private NodeFixtures nodes;
+
+    @BeforeEach
+    void setup() {
+        this.mockMvc = MockMvcBuilders.webAppContextSetup(wac).build();
+        this.nodes = new NodeFixtures(mockMvc);
+    }
+
+    private ResultActions batch(String operations) throws Exception {
+        return mockMvc.perform(post("/api/nodes/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"operations\": [" + operations + "]}"));
+    }
+
+    @Test
+    void mixedBatch_shouldApplyAllOperationsInOrder() throws Exception {
+        String root = nodes.create("Batch Root", null, 10);
+        String moving = nodes.create("Moving", root, 20);
+        nodes.create("Moving Child", moving, 30);
+        String doomed = nodes.create("Doomed", root, 90);
+        nodes.create("Doomed Child", doomed, 95);
+
+        String body = batch("""
+                {"op": "create", "ref": "group", "parentId": "%s", "title": "Group", "mastery": 40},
+                {"op": "create", "ref": "leaf", "parentRef": "group", "title": "Leaf", "mastery": 50},
+                {"op": "move", "id": "%s", "parentRef": "group"},
+                {"op": "update", "id": "%s", "title": "Moved", "mastery": 60},
+                {"op": "delete", "id": "%s"},
+                {"op": "create", "ref": "temp", "parentRef": "leaf", "title": "Temp"},
+                {"op": "delete", "nodeRef": "temp"}
+                """.formatted(root, moving, moving, doomed))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.applied").value(7))
+                .andExpect(jsonPath("$.deleted").value(2))
+                .andReturn().getResponse().getContentAsString();
+        String group = JsonPath.read(body, "$.ids.group");
+
+        // Root(10) > Group(40) > [Leaf(50), Moved(60) > Moving Child(30)]
+        mockMvc.perform(get("/api/nodes/" + root + "/subtree"))
+                .andExpect(jsonPath("$.children.length()").value(1))
+                .andExpect(jsonPath("$.children[0].id").value(group))
+                .andExpect(jsonPath("$.children[0].children.length()").value(2))
+                .andExpect(jsonPath("$.aggregates.descendantCount").value(4))
+                .andExpect(jsonPath("$.aggregates.masterySum").value(190))
+                .andExpect(jsonPath("$.aggregates.masteryMin").value(10))
+                .andExpect(jsonPath("$.aggregates.masteryMax").value(60));
+        mockMvc.perform(get("/api/nodes/" + moving))
+                .andExpect(jsonPath("$.title").value("Moved"))
+                .andExpect(jsonPath("$.parentId").value(group));
+        mockMvc.perform(get("/api/nodes/" + doomed)).andExpect(status().isNotFound());
+        mockMvc.perform(get("/api/nodes/" + root + "/descendant-count")).andExpect(content().string("4"));
+
+        AggregateRebuildReport report = aggregates.rebuild();
+        assertEquals(0, report.drifted);
+        assertEquals(0, report.missing);
+    }
+
+    @Test
+    void batch_shouldReachTheTreeCacheAsOneChange() throws Exception {
+        String root = nodes.create("One Step Root", null, 10);
+        TreeSnapshot before = cache.snapshot(Node.DEFAULT_VAULT);
+        long rebuilds = cache.stats().rebuilds;
+
+        batch("""
+                {"op": "create", "ref": "a", "parentId": "%s", "title": "One Step A", "mastery": 20},
+                {"op": "create", "parentRef": "a", "title": "One Step B", "mastery": 30},
+                {"op": "update", "id": "%s", "title": "One Step Root Renamed", "mastery": 10}
+                """.formatted(root, root))
+                .andExpect(status().isOk());
+
+        TreeSnapshot after = cache.peek(Node.DEFAULT_VAULT);
+        assertEquals(before.version() + 1, after.version(), "applied as one change, not one per node");
+        assertEquals(before.size() + 2, after.size());
+        assertEquals(rebuilds, cache.stats().rebuilds, "applied, not reloaded");
+        mockMvc.perform(get("/api/nodes/" + root + "/subtree"))
+                .andExpect(jsonPath("$.title").value("One Step Root Renamed"))
+                .andExpect(jsonPath("$.children[0].children[0].title").value("One Step B"))
+                .andExpect(jsonPath("$.aggregates.masterySum").value(60));
+    }
+
+    @Test
+    void createdSiblings_shouldListInOperationOrder() throws Exception {
+        String root = nodes.create("Batch Order Root", null, 10);
+        List<String> titles = List.of("Kappa", "Alpha", "Zeta", "Mu", "Beta", "Omega", "Delta", "Pi",
+                "Gamma", "Sigma", "Eta", "Rho");
+        String ops = titles.stream()
+                .map(t -> "{\"op\": \"create\", \"parentId\": \"" + root + "\", \"title\": \"" + t + "\"}")
+                .collect(Collectors.joining(", "));
+        mockMvc.perform(post("/api/nodes/batch").contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"operations\": [" + ops + "]}"))
+                .andExpect(status().isOk());
+
+        String list = mockMvc.perform(get("/api/nodes").param("parentId", root))
+                .andReturn().getResponse().getContentAsString();
+        String subtree = mockMvc.perform(get("/api/nodes/" + root + "/subtree"))
+                .andReturn().getResponse().getContentAsString();
+        String page = mockMvc.perform(get("/api/nodes/children").param("parentId", root).param("limit", "50"))
+                .andReturn().getResponse().getContentAsString();
+        assertEquals(titles, JsonPath.read(list, "$[*].title"));
+        assertEquals(titles, JsonPath.read(subtree, "$.children[*].title"));
+        assertEquals(titles, JsonPath.read(page, "$.items[*].title"));
+    }
+
+    @Test
+    void failingOperation_shouldRollBackWholeBatch() throws Exception {
+        String root = nodes.create("Rollback Root", null, 10);
+        String child = nodes.create("Rollback Child", root, 10);
+
+        batch("""
+                {"op": "create", "parentId": "%s", "title": "Never"},
+                {"op": "update", "id": "%s", "title": "Never", "mastery": 99},
+                {"op": "move", "id": "%s", "parentId": "%s"}
+                """.formatted(root, child, root, child))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error").value("VALIDATION_ERROR"))
+                .andExpect(jsonPath("$.items['operations[2]'].parentId").exists());
+
+        mockMvc.perform(get("/api/nodes/" + root + "/subtree"))
+                .andExpect(jsonPath("$.children.length()").value(1))
+                .andExpect(jsonPath("$.children[0].title").value("Rollback Child"))
+                .andExpect(jsonPath("$.aggregates.masterySum").value(20));
+    }
+
+    @Test
+    void cycleCheck_shouldSeeEarlierMovesInTheBatch() throws Exception {
+        String a = nodes.create("A", null, 10);
+        String b = nodes.create("B", null, 10);
+
+        batch("""
+                {"op": "move", "id": "%s", "parentId": "%s"},
+                {"op": "move", "id": "%s", "parentId": "%s"}
+                """.formatted(b, a, a, b))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.items['operations[1]'].parentId").value("Cannot move a node under its descendant (cycle)"));
+
+        batch("""
+                {"op": "delete", "id": "%s"},
+                {"op": "update", "id": "%s", "title": "Gone"}
+                """.formatted(a, a))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.items['operations[1]'].id").value("Node was deleted earlier in the batch"));
+    }
+}
@@ -0,0 +1,122 @@
+package com.orang3i.skillvault;
+
+import com.orang3i.skillvault.dto.NodePageResponse;
+import com.orang3i.skillvault.dto.NodeTreeResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+import tools.jackson.databind.json.JsonMapper;
+import tools.jackson.dataformat.cbor.CBORMapper;
+import tools.jackson.dataformat.smile.SmileMapper;
+
+import java.util.UUID;
+
+import static org.hamcrest.Matchers.hasItem;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@SpringBootTest
+class NodeBinaryFormatTests {
+
+    private static final String SMILE = "application/x-jackson-smile";
+
+    @Autowired
+    private WebApplicationContext wac;
+
+    @Autowired
+    private JsonMapper jsonMapper;
+
+    @Autowired
+    private CBORMapper cborMapper;
+
+    @Autowired
+    private SmileMapper smileMapper;
+
+    private MockMvc mockMvc;
+
+    private NodeFixtures nodes;
+
+    @BeforeEach
+    void setup() {
+        this.mockMvc = MockMvcBuilders.webAppContextSetup(wac).build();
+        this.nodes = new NodeFixtures(mockMvc);
+    }
+
+    private byte[] fetch(String url, String accept) throws Exception {
+        return mockMvc.perform(get(url).accept(accept))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(accept))
+                .andExpect(header().stringValues("Vary", hasItem("Accept")))
+                .andReturn().getResponse().getContentAsByteArray();
+    }
+
+    private byte[] streamed(String url, String accept) throws Exception {
+        MvcResult started = mockMvc.perform(get(url).param("stream", "true").accept(accept))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        return mockMvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(accept))
+                .andReturn().getResponse().getContentAsByteArray();
+    }
+
+    @Test
+    void subtree_shouldDecodeToTheSameTreeInEveryFormat() throws Exception {
+        String root = nodes.create("Binary Root", null);
+        String child = nodes.create("Binary Child", root);
+        nodes.create("Binary Grandchild", child);
+        String url = "/api/nodes/" + root + "/subtree";
+
+        byte[] json = fetch(url, MediaType.APPLICATION_JSON_VALUE);
+        byte[] cbor = fetch(url, MediaType.APPLICATION_CBOR_VALUE);
+        byte[] smile = fetch(url, SMILE);
+
+        NodeTreeResponse fromJson = jsonMapper.readValue(json, NodeTreeResponse.class);
+        assertEquals(UUID.fromString(root), fromJson.id);
+        assertEquals(jsonMapper.writeValueAsString(fromJson),
+                jsonMapper.writeValueAsString(cborMapper.readValue(cbor, NodeTreeResponse.class)));
+        assertEquals(jsonMapper.writeValueAsString(fromJson),
+                jsonMapper.writeValueAsString(smileMapper.readValue(smile, NodeTreeResponse.class)));
+        assertTrue(cbor.length < json.length, "CBOR " + cbor.length + " vs JSON " + json.length);
+        assertTrue(smile.length < json.length, "Smile " + smile.length + " vs JSON " + json.length);
+    }
+
+    @Test
+    void streamedTree_shouldMatchRegularBinaryBytes() throws Exception {
+        String root = nodes.create("Binary Stream Root", null);
+        nodes.create("Binary Stream Child", root);
+
+        for (String format : new String[]{MediaType.APPLICATION_CBOR_VALUE, SMILE}) {
+            assertArrayEquals(fetch("/api/nodes/" + root + "/subtree", format),
+                    streamed("/api/nodes/" + root + "/subtree", format), format);
+            assertArrayEquals(fetch("/api/nodes/tree", format), streamed("/api/nodes/tree", format), format);
+        }
+    }
+
+    @Test
+    void childPage_shouldBeServedAsCbor() throws Exception {
+        String root = nodes.create("Binary Page Root", null);
+        String child = nodes.create("Binary Page Child", root);
+
+        byte[] cbor = mockMvc.perform(get("/api/nodes/children").param("parentId", root)
+                        .accept(MediaType.APPLICATION_CBOR))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsByteArray();
+        NodePageResponse page = cborMapper.readValue(cbor, NodePageResponse.class);
+        assertEquals(1, page.items.size());
+        assertEquals(UUID.fromString(child), page.items.get(0).id);
+    }
+
+    @Test
+    void streamWithUnsupportedAccept_shouldReturn406() throws Exception {
+        mockMvc.perform(get("/api/nodes/tree").param("stream", "true").accept(MediaType.APPLICATION_XML))
+                .andExpect(status().isNotAcceptable());
+    }
+}
@@ -0,0 +1,86 @@
+package com.orang3i.skillvault;
+
+import com.jayway.jsonpath.JsonPath;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+
+import java.util.UUID;
+
+import static org.hamcrest.Matchers.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@SpringBootTest
+class NodeCategoryTests {
+
+    @Autowired
+    private WebApplicationContext wac;
+
+    private MockMvc mockMvc;
+
+    private NodeFixtures nodes;
+
+    @BeforeEach
+    void setup() {
+        this.mockMvc = MockMvcBuilders.webAppContextSetup(wac).build();
+        this.nodes = new NodeFixtures(mockMvc);
+    }
+
+    @Test
+    void facets_shouldCountAndAverageBySubtreeAndOverall() throws Exception {
+        // unique names, the database is shared with the other test classes
+        String lang = "Lang-" + UUID.randomUUID();
+        String tool = "Tool-" + UUID.randomUUID();
+        String root = nodes.create("Facet Root", null, 100, tool, null);
+        String java = nodes.create("Facet Java", root, 40, lang, null);
+        nodes.create("Facet Kotlin", java, 60, lang, null);
+        nodes.create("Facet Elsewhere", null, 10, lang, null);
+
+        mockMvc.perform(get("/api/nodes/categories").param("root", root))
+                .andExpect(status().isOk())
+                .andExpect(header().exists("ETag"))
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(jsonPath("$[0].category").value(lang))
+                .andExpect(jsonPath("$[0].count").value(2))
+                .andExpect(jsonPath("$[0].masteryAvg").value(50.0))
+                .andExpect(jsonPath("$[1].category").value(tool))
+                .andExpect(jsonPath("$[1].count").value(1));
+
+        mockMvc.perform(get("/api/nodes/categories"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[?(@.category == '" + lang + "')].count", contains(3)))
+                .andExpect(jsonPath("$[?(@.category == '" + lang + "')].masteryAvg",
+                        contains(closeTo(36.67, 0.01))));
+    }
+
+    @Test
+    void byCategory_shouldPageThroughOneCategory() throws Exception {
+        String category = "Paged-" + UUID.randomUUID();
+        String first = nodes.create("Category Page 1", null, 10, category, null);
+        String second = nodes.create("Category Page 2", first, 20, category, null);
+        String third = nodes.create("Category Page 3", null, 30, category, null);
+        nodes.create("Category Other", null, 30, "Other-" + UUID.randomUUID(), null);
+
+        String body = mockMvc.perform(get("/api/nodes/by-category").param("category", category).param("limit", "2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items[*].id", contains(first, second)))
+                .andExpect(jsonPath("$.next").isNotEmpty())
+                .andReturn().getResponse().getContentAsString();
+        String next = JsonPath.read(body, "$.next");
+
+        mockMvc.perform(get("/api/nodes/by-category").param("category", category).param("limit", "2").param("cursor", next))
+                .andExpect(jsonPath("$.items[*].id", contains(third)))
+                .andExpect(jsonPath("$.next").doesNotExist());
+    }
+
+    @Test
+    void facetsOfUnknownRoot_shouldReturn404() throws Exception {
+        mockMvc.perform(get("/api/nodes/categories").param("root", UUID.randomUUID().toString()))
+                .andExpect(status().isNotFound());
+    }
+}
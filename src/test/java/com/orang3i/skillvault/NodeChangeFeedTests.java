@@ -0,0 +1,108 @@
+package com.orang3i.skillvault;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@SpringBootTest
+class NodeChangeFeedTests {
+
+    @Autowired
+    private WebApplicationContext wac;
+
+    private MockMvc mockMvc;
+
+    private NodeFixtures nodes;
+
+    @BeforeEach
+    void setup() {
+        this.mockMvc = MockMvcBuilders.webAppContextSetup(wac).build();
+        this.nodes = new NodeFixtures(mockMvc);
+    }
+
+    private MockHttpServletResponse subscribe(String root) throws Exception {
+        return mockMvc.perform(get("/api/nodes/changes").param("root", root))
+                .andExpect(request().asyncStarted())
+                .andReturn().getResponse();
+    }
+
+    // events are written by a sender thread, so wait for the text to arrive
+    private String awaitContent(MockHttpServletResponse stream, String expected) throws Exception {
+        long deadline = System.currentTimeMillis() + 5000;
+        String content = stream.getContentAsString();
+        while (!content.contains(expected) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+            content = stream.getContentAsString();
+        }
+        assertTrue(content.contains(expected), "missing " + expected + " in:\n" + content);
+        return content;
+    }
+
+    @Test
+    void subtreeSubscriber_shouldOnlySeeChangesUnderItsRoot() throws Exception {
+        String watched = nodes.create("Feed Watched", null);
+        String other = nodes.create("Feed Other", null);
+        MockHttpServletResponse stream = subscribe(watched);
+
+        String otherChild = nodes.create("Feed Other Child", other);
+        String child = nodes.create("Feed Watched Child", watched);
+
+        String content = awaitContent(stream, child);
+        assertTrue(content.contains("event:created"));
+        assertFalse(content.contains(otherChild));
+    }
+
+    @Test
+    void movesOutAndDeletes_shouldReachTheFormerSubtree() throws Exception {
+        String watched = nodes.create("Feed Source", null);
+        String elsewhere = nodes.create("Feed Target", null);
+        String leaving = nodes.create("Feed Leaving", watched);
+        String doomed = nodes.create("Feed Doomed", watched);
+        MockHttpServletResponse stream = subscribe(watched);
+
+        mockMvc.perform(patch("/api/nodes/" + leaving + "/move")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"newParentId\": \"" + elsewhere + "\"}"))
+                .andExpect(status().isOk());
+        mockMvc.perform(delete("/api/nodes/" + doomed))
+                .andExpect(status().is2xxSuccessful());
+
+        awaitContent(stream, "event:moved");
+        String content = awaitContent(stream, "event:deleted");
+        assertTrue(content.contains("\"previousParentId\":\"" + watched + "\""));
+    }
+
+    @Test
+    void rootDeletedWithItsAncestor_shouldEndTheStream() throws Exception {
+        String top = nodes.create("Feed Top", null);
+        String watched = nodes.create("Feed Nested Root", top);
+        MvcResult subscription = mockMvc.perform(get("/api/nodes/changes").param("root", watched))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(delete("/api/nodes/" + top))
+                .andExpect(status().is2xxSuccessful());
+
+        subscription.getAsyncResult(5000); // throws unless the emitter completed, after sending what it had
+        String content = subscription.getResponse().getContentAsString();
+        assertTrue(content.contains("event:deleted"), content);
+        assertTrue(content.contains("\"nodeId\":\"" + watched + "\""), content);
+    }
+
+    @Test
+    void unknownRoot_shouldReturn404() throws Exception {
+        mockMvc.perform(get("/api/nodes/changes").param("root", "00000000-0000-0000-0000-000000000000"))
+                .andExpect(status().isNotFound());
+    }
+}
@@ -0,0 +1,158 @@
+package com.orang3i.skillvault;
+
+import com.orang3i.skillvault.dto.NodeUpdateRequest;
+import com.orang3i.skillvault.entity.Node;
+import com.orang3i.skillvault.service.NodeService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.context.WebApplicationContext;
+
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@SpringBootTest
+class NodeConditionalGetTests {
+
+    @Autowired
+    private WebApplicationContext wac;
+
+    @Autowired
+    private NodeService nodeService;
+
+    @Autowired
+    private TransactionTemplate tx;
+
+    private MockMvc mockMvc;
+
+    private NodeFixtures nodes;
+
+    @BeforeEach
+    void setup() {
+        this.mockMvc = MockMvcBuilders.webAppContextSetup(wac).build();
+        this.nodes = new NodeFixtures(mockMvc);
+    }
+
+    private String etag(String url) throws Exception {
+        return mockMvc.perform(get(url))
+                .andExpect(status().isOk())
+                .andExpect(header().exists("ETag"))
+                .andReturn().getResponse().getHeader("ETag");
+    }
+
+    @Test
+    void unchangedSubtree_shouldReturnNotModified() throws Exception {
+        String root = nodes.create("ETag Root", null);
+        nodes.create("ETag Child", root);
+
+        String tag = etag("/api/nodes/" + root + "/subtree");
+        mockMvc.perform(get("/api/nodes/" + root + "/subtree").header("If-None-Match", tag))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+        mockMvc.perform(get("/api/nodes/" + root + "/subtree").param("stream", "true").header("If-None-Match", tag))
+                .andExpect(status().isNotModified());
+    }
+
+    @Test
+    void writeBelowNode_shouldChangeAncestorTagsOnly() throws Exception {
+        String root = nodes.create("ETag Root", null);
+        String left = nodes.create("Left", root);
+        String right = nodes.create("Right", root);
+        String leaf = nodes.create("Leaf", left);
+
+        String rootTag = etag("/api/nodes/" + root + "/subtree");
+        String leftTag = etag("/api/nodes/" + left);
+        String rightTag = etag("/api/nodes/" + right + "/subtree");
+        String treeTag = etag("/api/nodes/tree");
+
+        mockMvc.perform(put("/api/nodes/" + leaf)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"title\": \"Leaf renamed\", \"mastery\": 10}"))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(get("/api/nodes/" + root + "/subtree").header("If-None-Match", rootTag))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.children[?(@.id == '" + left + "')].children[0].title").value("Leaf renamed"));
+        mockMvc.perform(get("/api/nodes/" + left).header("If-None-Match", leftTag))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/api/nodes/tree").header("If-None-Match", treeTag))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/api/nodes/" + right + "/subtree").header("If-None-Match", rightTag))
+                .andExpect(status().isNotModified());
+    }
+
+    @Test
+    void deleteAndMove_shouldChangeTags() throws Exception {
+        String a = nodes.create("A", null);
+        String b = nodes.create("B", null);
+        String child = nodes.create("Child", a);
+
+        String aTag = etag("/api/nodes?parentId=" + a);
+        String bTag = etag("/api/nodes/" + b + "/subtree");
+        mockMvc.perform(patch("/api/nodes/" + child + "/move")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"newParentId\": \"" + b + "\"}"))
+                .andExpect(status().isOk());
+        assertNotEquals(aTag, etag("/api/nodes?parentId=" + a));
+        assertNotEquals(bTag, etag("/api/nodes/" + b + "/subtree"));
+
+        String treeTag = etag("/api/nodes/tree");
+        mockMvc.perform(delete("/api/nodes/" + b)).andExpect(status().isOk());
+        assertNotEquals(treeTag, etag("/api/nodes/tree"));
+    }
+
+    @Test
+    void tagOfCachedBody_shouldNotRunAheadOfTheBody() throws Exception {
+        String root = nodes.create("ETag Gap Root", null);
+        String child = nodes.create("ETag Gap Child", root);
+        String before = etag("/api/nodes/" + root + "/subtree");
+
+        CountDownLatch committed = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        // registered before the write, so it holds the commit back from the tree cache's after-commit listener
+        CompletableFuture<Void> write = CompletableFuture.runAsync(() -> tx.executeWithoutResult(status -> {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    committed.countDown();
+                    try {
+                        release.await(10, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            });
+            NodeUpdateRequest req = new NodeUpdateRequest();
+            req.title = "ETag Gap Renamed";
+            req.mastery = 10;
+            nodeService.update(Node.DEFAULT_VAULT, UUID.fromString(child), req);
+        }));
+        assertTrue(committed.await(10, TimeUnit.SECONDS));
+        // committed but not in the snapshot yet: the body is the old one, and so must be the tag
+        String during = mockMvc.perform(get("/api/nodes/" + root + "/subtree"))
+                .andExpect(jsonPath("$.children[0].title").value("ETag Gap Child"))
+                .andReturn().getResponse().getHeader("ETag");
+        assertEquals(before, during);
+        release.countDown();
+        write.get(10, TimeUnit.SECONDS);
+
+        mockMvc.perform(get("/api/nodes/" + root + "/subtree").header("If-None-Match", during))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.children[0].title").value("ETag Gap Renamed"));
+    }
+}
@@ -0,0 +1,174 @@
+package com.orang3i.skillvault;
+
+import com.jayway.jsonpath.JsonPath;
+import com.orang3i.skillvault.dto.NodeCreateRequest;
+import com.orang3i.skillvault.entity.Node;
+import com.orang3i.skillvault.service.ChangeLogService;
+import com.orang3i.skillvault.service.NodeService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.context.WebApplicationContext;
+
+import java.time.Instant;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@SpringBootTest
+class NodeDeltaSyncTests {
+
+    @Autowired
+    private WebApplicationContext wac;
+
+    @Autowired
+    private ChangeLogService changeLogService;
+
+    @Autowired
+    private NodeService nodeService;
+
+    @Autowired
+    private TransactionTemplate tx;
+
+    private MockMvc mockMvc;
+
+    private NodeFixtures nodes;
+
+    @BeforeEach
+    void setup() {
+        this.mockMvc = MockMvcBuilders.webAppContextSetup(wac).build();
+        this.nodes = new NodeFixtures(mockMvc);
+    }
+
+    private long currentToken() throws Exception {
+        String body = mockMvc.perform(get("/api/nodes/delta"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.resync").value(true))
+                .andReturn().getResponse().getContentAsString();
+        return ((Number) JsonPath.read(body, "$.token")).longValue();
+    }
+
+    @Test
+    void delta_shouldReturnCurrentStateAndDeletesSinceToken() throws Exception {
+        long token = currentToken();
+
+        String kept = nodes.create("Delta Kept", null);
+        mockMvc.perform(put("/api/nodes/" + kept)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"title\": \"Delta Kept Renamed\", \"mastery\": 40}"))
+                .andExpect(status().isOk());
+        String gone = nodes.create("Delta Gone", kept);
+        mockMvc.perform(delete("/api/nodes/" + gone)).andExpect(status().is2xxSuccessful());
+
+        String body = mockMvc.perform(get("/api/nodes/delta").param("since", Long.toString(token)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.resync").value(false))
+                .andExpect(jsonPath("$.hasMore").value(false))
+                .andExpect(jsonPath("$.nodes.length()").value(1))
+                .andExpect(jsonPath("$.nodes[0].id").value(kept))
+                .andExpect(jsonPath("$.nodes[0].title").value("Delta Kept Renamed"))
+                .andExpect(jsonPath("$.deleted", contains(gone)))
+                .andReturn().getResponse().getContentAsString();
+        long next = ((Number) JsonPath.read(body, "$.token")).longValue();
+        assertEquals(token + 4, next);
+
+        mockMvc.perform(get("/api/nodes/delta").param("since", Long.toString(next)))
+                .andExpect(jsonPath("$.token").value(next))
+                .andExpect(jsonPath("$.nodes", empty()))
+                .andExpect(jsonPath("$.deleted", empty()));
+    }
+
+    @Test
+    void delta_shouldPageByLimit() throws Exception {
+        long token = currentToken();
+        String first = nodes.create("Delta Page 1", null);
+        String second = nodes.create("Delta Page 2", null);
+        String third = nodes.create("Delta Page 3", null);
+
+        String body = mockMvc.perform(get("/api/nodes/delta").param("since", Long.toString(token)).param("limit", "2"))
+                .andExpect(jsonPath("$.hasMore").value(true))
+                .andExpect(jsonPath("$.nodes[*].id", containsInAnyOrder(first, second)))
+                .andReturn().getResponse().getContentAsString();
+        long next = ((Number) JsonPath.read(body, "$.token")).longValue();
+
+        mockMvc.perform(get("/api/nodes/delta").param("since", Long.toString(next)).param("limit", "2"))
+                .andExpect(jsonPath("$.hasMore").value(false))
+                .andExpect(jsonPath("$.nodes[*].id", contains(third)));
+    }
+
+    @Test
+    void compactedToken_shouldAskForResync() throws Exception {
+        long token = currentToken();
+        nodes.create("Delta Compacted 1", null);
+        nodes.create("Delta Compacted 2", null);
+
+        assertTrue(changeLogService.compactBefore(Instant.now().plusSeconds(60)) > 0);
+
+        mockMvc.perform(get("/api/nodes/delta").param("since", Long.toString(token)))
+                .andExpect(jsonPath("$.resync").value(true))
+                .andExpect(jsonPath("$.nodes", empty()));
+        long fresh = currentToken();
+        mockMvc.perform(get("/api/nodes/delta").param("since", Long.toString(fresh)))
+                .andExpect(jsonPath("$.resync").value(false));
+    }
+
+    @Test
+    void delta_shouldNotPassAWriteThatHasNotFinished() throws Exception {
+        long token = currentToken();
+        CountDownLatch committed = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        // the first write takes its id, commits, and then stalls before it counts as finished
+        CompletableFuture<Void> slow = CompletableFuture.runAsync(() -> tx.executeWithoutResult(status -> {
+            nodeService.create(Node.DEFAULT_VAULT, request("Delta Slow"));
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    committed.countDown();
+                    try {
+                        release.await(10, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            });
+        }));
+        assertTrue(committed.await(10, TimeUnit.SECONDS));
+        nodes.create("Delta Fast", null);
+
+        assertEquals(token, changeLogService.lastId());
+        mockMvc.perform(get("/api/nodes/delta").param("since", Long.toString(token)))
+                .andExpect(jsonPath("$.token").value(token))
+                .andExpect(jsonPath("$.nodes", empty()));
+
+        release.countDown();
+        slow.get(10, TimeUnit.SECONDS);
+        assertEquals(token + 2, changeLogService.lastId());
+        mockMvc.perform(get("/api/nodes/delta").param("since", Long.toString(token)))
+                .andExpect(jsonPath("$.nodes[*].title", containsInAnyOrder("Delta Slow", "Delta Fast")));
+    }
+
+    private static NodeCreateRequest request(String title) {
+        NodeCreateRequest req = new NodeCreateRequest();
+        req.title = title;
+        req.mastery = 10;
+        return req;
+    }
+
+    @Test
+    void invalidLimit_shouldReturn400() throws Exception {
+        mockMvc.perform(get("/api/nodes/delta").param("since", "0").param("limit", "0"))
+                .andExpect(status().isBadRequest());
+    }
+}
@@ -0,0 +1,64 @@
+package com.orang3i.skillvault;
+
+import com.jayway.jsonpath.JsonPath;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Creates nodes through POST /api/nodes for the MockMvc tests. Each call expects 200 and returns the new
+ * node's id. Unless given, mastery is 10 and there is no category or description.
+ */
+final class NodeFixtures {
+
+    private final MockMvc mockMvc;
+    private final String vault; // X-Vault-Id, null for the default vault
+
+    NodeFixtures(MockMvc mockMvc) {
+        this(mockMvc, null);
+    }
+
+    private NodeFixtures(MockMvc mockMvc, String vault) {
+        this.mockMvc = mockMvc;
+        this.vault = vault;
+    }
+
+    /** The same fixtures, creating nodes in another vault. */
+    NodeFixtures inVault(String vault) {
+        return new NodeFixtures(mockMvc, vault);
+    }
+
+    String create(String title, String parentId) throws Exception {
+        return create(title, parentId, 10);
+    }
+
+    String create(String title, String parentId, int mastery) throws Exception {
+        return create(title, parentId, mastery, null, null);
+    }
+
+    String create(String title, String parentId, int mastery, String category, String description) throws Exception {
+        StringBuilder json = new StringBuilder("{\"title\": \"").append(title).append('"')
+                .append(", \"mastery\": ").append(mastery);
+        if (category != null) {
+            json.append(", \"category\": \"").append(category).append('"');
+        }
+        if (description != null) {
+            json.append(", \"description\": \"").append(description).append('"');
+        }
+        json.append(", \"parentId\": ").append((parentId == null) ? "null" : "\"" + parentId + "\"").append('}');
+
+        MockHttpServletRequestBuilder request = post("/api/nodes")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(json.toString());
+        if (vault != null) {
+            request.header("X-Vault-Id", vault);
+        }
+        String body = mockMvc.perform(request)
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        return JsonPath.read(body, "$.id");
+    }
+}
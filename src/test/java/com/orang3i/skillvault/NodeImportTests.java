@@ -0,0 +1,169 @@
+package com.orang3i.skillvault;
+
+import com.jayway.jsonpath.JsonPath;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@SpringBootTest
+class NodeImportTests {
+
+    @Autowired
+    private WebApplicationContext wac;
+
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setup() {
+        this.mockMvc = MockMvcBuilders.webAppContextSetup(wac).build();
+    }
+
+    @Test
+    void importNestedTree_shouldCreateAllNodes() throws Exception {
+        String json = """
+                {
+                    "nodes": [{
+                        "ref": "root",
+                        "title": "Imported Root",
+                        "mastery": 10,
+                        "children": [
+                            {"title": "Imported A", "mastery": 20, "children": [{"ref": "leaf", "title": "Imported A1"}]},
+                            {"title": "Imported B", "mastery": 30}
+                        ]
+                    }]
+                }
+                """;
+
+        String response = mockMvc.perform(post("/api/nodes/import")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(json))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.created").value(4))
+                .andExpect(jsonPath("$.ids.leaf").exists())
+                .andReturn().getResponse().getContentAsString();
+
+        String rootId = response.split("\"root\":\"")[1].split("\"")[0];
+
+        mockMvc.perform(get("/api/nodes/" + rootId + "/subtree"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.title").value("Imported Root"))
+                .andExpect(jsonPath("$.children.length()").value(2));
+        mockMvc.perform(get("/api/nodes/" + rootId + "/descendant-count"))
+                .andExpect(content().string("3"));
+    }
+
+    @Test
+    void importedSiblings_shouldListInRequestOrder() throws Exception {
+        List<String> titles = List.of("Kappa", "Alpha", "Zeta", "Mu", "Beta", "Omega", "Delta", "Pi",
+                "Gamma", "Sigma", "Eta", "Rho");
+        String children = titles.stream().map(t -> "{\"title\": \"Ordered " + t + "\"}")
+                .collect(Collectors.joining(", "));
+        String response = mockMvc.perform(post("/api/nodes/import")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"nodes\": [{\"ref\": \"root\", \"title\": \"Ordered Root\", \"children\": ["
+                                + children + "]}]}"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        String rootId = JsonPath.read(response, "$.ids.root");
+        List<String> expected = titles.stream().map(t -> "Ordered " + t).toList();
+
+        String list = mockMvc.perform(get("/api/nodes").param("parentId", rootId))
+                .andReturn().getResponse().getContentAsString();
+        String subtree = mockMvc.perform(get("/api/nodes/" + rootId + "/subtree"))
+                .andReturn().getResponse().getContentAsString();
+        String page = mockMvc.perform(get("/api/nodes/children").param("parentId", rootId).param("limit", "50"))
+                .andReturn().getResponse().getContentAsString();
+        assertEquals(expected, JsonPath.read(list, "$[*].title"));
+        assertEquals(expected, JsonPath.read(subtree, "$.children[*].title"));
+        assertEquals(expected, JsonPath.read(page, "$.items[*].title"));
+    }
+
+    @Test
+    void importFlatList_underExistingNode_shouldLinkByRef() throws Exception {
+        String parent = mockMvc.perform(post("/api/nodes")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"title\": \"Existing Parent\", \"mastery\": 0}"))
+                .andReturn().getResponse().getContentAsString()
+                .split("\"id\":\"")[1].split("\"")[0];
+
+        // the child is listed before its parent on purpose
+        String json = String.format("""
+                {
+                    "nodes": [
+                        {"ref": "c", "parentRef": "b", "title": "Flat C"},
+                        {"ref": "b", "parentId": "%s", "title": "Flat B"}
+                    ]
+                }
+                """, parent);
+
+        mockMvc.perform(post("/api/nodes/import")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(json))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.created").value(2));
+
+        mockMvc.perform(get("/api/nodes/" + parent + "/descendant-count"))
+                .andExpect(content().string("2"));
+        mockMvc.perform(get("/api/nodes/" + parent + "/subtree"))
+                .andExpect(jsonPath("$.children[0].title").value("Flat B"))
+                .andExpect(jsonPath("$.children[0].children[0].title").value("Flat C"));
+    }
+
+    @Test
+    void importWithInvalidItems_shouldReportEachItemAndCreateNothing() throws Exception {
+        String json = """
+                {
+                    "nodes": [
+                        {"ref": "ok", "title": "Rejected Import Root"},
+                        {"title": "", "parentRef": "ok", "mastery": 101},
+                        {"title": "Orphan", "parentRef": "missing"},
+                        {"ref": "x", "parentRef": "y", "title": "Loop X"},
+                        {"ref": "y", "parentRef": "x", "title": "Loop Y"}
+                    ]
+                }
+                """;
+
+        mockMvc.perform(post("/api/nodes/import")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(json))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error").value("VALIDATION_ERROR"))
+                .andExpect(jsonPath("$.items['nodes[1]'].title").exists())
+                .andExpect(jsonPath("$.items['nodes[1]'].mastery").exists())
+                .andExpect(jsonPath("$.items['nodes[2]'].parentRef").value("Unknown parentRef"))
+                .andExpect(jsonPath("$.items['nodes[0]']").doesNotExist());
+
+        mockMvc.perform(get("/api/nodes"))
+                .andExpect(jsonPath("$[?(@.title == 'Rejected Import Root')]").doesNotExist());
+    }
+
+    @Test
+    void importWithRefCycle_shouldFail() throws Exception {
+        String json = """
+                {
+                    "nodes": [
+                        {"ref": "x", "parentRef": "y", "title": "Loop X"},
+                        {"ref": "y", "parentRef": "x", "title": "Loop Y"}
+                    ]
+                }
+                """;
+
+        mockMvc.perform(post("/api/nodes/import")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(json))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.items['nodes[0]'].parentRef").exists());
+    }
+}
@@ -0,0 +1,92 @@
+package com.orang3i.skillvault;
+
+import com.orang3i.skillvault.metrics.RequestMetricsFilter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+// the database path, where an N+1 would show up as lazy loads
+@SpringBootTest(properties = "skillvault.tree-cache.enabled=false")
+class NodeMetricsTests {
+
+    @Autowired
+    private WebApplicationContext wac;
+
+    @Autowired
+    private RequestMetricsFilter metricsFilter;
+
+    @Autowired
+    private MeterRegistry registry;
+
+    private MockMvc mockMvc;
+
+    private NodeFixtures nodes;
+
+    @BeforeEach
+    void setup() {
+        this.mockMvc = MockMvcBuilders.webAppContextSetup(wac).addFilters(metricsFilter).build();
+        this.nodes = new NodeFixtures(mockMvc);
+    }
+
+    private double total(String name, String uri) {
+        return registry.find(name).tag("method", "GET").tag("uri", uri).summaries().stream()
+                .mapToDouble(DistributionSummary::totalAmount).sum();
+    }
+
+    @Test
+    void subtreeRead_shouldRecordNodesStatementsAndNoLazyLoads() throws Exception {
+        String root = nodes.create("Metrics Root", null);
+        String child = nodes.create("Metrics Child", root);
+        nodes.create("Metrics Grandchild", child);
+        nodes.create("Metrics Sibling", root);
+
+        String uri = "/api/nodes/{id}/subtree";
+        double nodesBefore = total("skillvault.request.nodes", uri);
+        double statementsBefore = total("skillvault.request.statements", uri);
+        double lazyBefore = total("skillvault.request.lazy.loads", uri);
+        double bytesBefore = total("skillvault.request.payload", uri);
+
+        MvcResult result = mockMvc.perform(get("/api/nodes/" + root + "/subtree"))
+                .andExpect(status().isOk())
+                .andReturn();
+        int bytes = result.getResponse().getContentAsByteArray().length;
+
+        assertEquals(4.0, total("skillvault.request.nodes", uri) - nodesBefore);
+        assertTrue(total("skillvault.request.statements", uri) > statementsBefore);
+        assertEquals(0.0, total("skillvault.request.lazy.loads", uri) - lazyBefore);
+        assertEquals(bytes, total("skillvault.request.payload", uri) - bytesBefore);
+
+        assertNotNull(registry.find("skillvault.node.service").tag("op", "getSubtree").timer());
+    }
+
+    @Test
+    void streamedTree_shouldCountNodesWrittenAndBytes() throws Exception {
+        String root = nodes.create("Streamed Metrics Root", null);
+        nodes.create("Streamed Metrics Child", root);
+        String uri = "/api/nodes/{id}/subtree";
+        double nodesBefore = total("skillvault.request.nodes", uri);
+        double bytesBefore = total("skillvault.request.payload", uri);
+
+        MvcResult async = mockMvc.perform(get("/api/nodes/" + root + "/subtree").param("stream", "true"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        MvcResult result = mockMvc.perform(asyncDispatch(async))
+                .andExpect(status().isOk())
+                .andReturn();
+
+        assertEquals(2.0, total("skillvault.request.nodes", uri) - nodesBefore);
+        assertEquals(result.getResponse().getContentAsByteArray().length,
+                total("skillvault.request.payload", uri) - bytesBefore);
+    }
+}
@@ -0,0 +1,215 @@
+package com.orang3i.skillvault;
+
+import com.orang3i.skillvault.dto.NodeCreateRequest;
+import com.orang3i.skillvault.dto.NodeImportItem;
+import com.orang3i.skillvault.dto.NodeImportRequest;
+import com.orang3i.skillvault.dto.NodeImportResponse;
+import com.orang3i.skillvault.dto.NodeTreeResponse;
+import com.orang3i.skillvault.entity.Node;
+import com.orang3i.skillvault.repository.NodeClosureRepository;
+import com.orang3i.skillvault.repository.NodeRepository;
+import com.orang3i.skillvault.repository.TreeRow;
+import com.orang3i.skillvault.service.NodeImportService;
+import com.orang3i.skillvault.service.NodeService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.ConcurrencyFailureException;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Races moves against each other and checks the tree, its closure rows and the cached snapshot
+ * stay acyclic and agree with each other.
+ */
+@SpringBootTest
+class NodeMoveConcurrencyTests {
+
+    private static final int THREADS = 8;
+
+    @Autowired
+    private NodeService nodeService;
+
+    @Autowired
+    private NodeImportService importService;
+
+    @Autowired
+    private NodeRepository nodeRepository;
+
+    @Autowired
+    private NodeClosureRepository closureRepository;
+
+    private UUID create(String title, UUID parentId) {
+        NodeCreateRequest req = new NodeCreateRequest();
+        req.title = title;
+        req.mastery = 10;
+        req.parentId = parentId;
+        return nodeService.create(Node.DEFAULT_VAULT, req).id;
+    }
+
+    @Test
+    void opposingMoves_shouldNeverBothSucceed() throws Exception {
+        UUID root = create("Opposing Root", null);
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        try {
+            for (int round = 0; round < 25; round++) {
+                UUID a = create("Opposing A" + round, root);
+                UUID b = create("Opposing B" + round, root);
+                CyclicBarrier start = new CyclicBarrier(2);
+                Future<Boolean> aUnderB = pool.submit(() -> tryMove(start, a, b));
+                Future<Boolean> bUnderA = pool.submit(() -> tryMove(start, b, a));
+
+                assertEquals(1, (aUnderB.get() ? 1 : 0) + (bUnderA.get() ? 1 : 0), "round " + round);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        assertConsistent(root, 51);
+    }
+
+    @Test
+    void randomMoves_shouldKeepTreeAcyclic() throws Exception {
+        UUID root = create("Stress Root", null);
+        List<UUID> nodes = new ArrayList<>();
+        for (int i = 0; i < 24; i++) {
+            nodes.add(create("Stress " + i, root));
+        }
+
+        AtomicInteger moved = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<?>> workers = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                workers.add(pool.submit(() -> {
+                    Random random = ThreadLocalRandom.current();
+                    for (int i = 0; i < 25; i++) {
+                        UUID node = nodes.get(random.nextInt(nodes.size()));
+                        UUID parent = (random.nextInt(8) == 0) ? root : nodes.get(random.nextInt(nodes.size()));
+                        try {
+                            nodeService.move(Node.DEFAULT_VAULT, node, parent);
+                            moved.incrementAndGet();
+                        } catch (IllegalArgumentException e) {
+                            rejected.incrementAndGet(); // cycle or self
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> w : workers) {
+                w.get(2, TimeUnit.MINUTES);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        assertTrue(moved.get() > 0 && rejected.get() > 0, moved + " moved, " + rejected + " rejected");
+        assertConsistent(root, 25);
+    }
+
+    // the import copies its parent's path into the closure table and adds its rollups up that path
+    @Test
+    void importsUnderAMovingParent_shouldFollowItsPath() throws Exception {
+        UUID left = create("Import Left", null);
+        UUID right = create("Import Right", null);
+        UUID parent = create("Import Parent", left);
+        int imported = 0;
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        try {
+            for (int round = 0; round < 25; round++) {
+                UUID target = (round % 2 == 0) ? right : left;
+                String title = "Imported " + round;
+                CyclicBarrier start = new CyclicBarrier(2);
+                Future<Integer> imports = pool.submit(() -> {
+                    start.await();
+                    try {
+                        return importUnder(parent, title).created;
+                    } catch (ConcurrencyFailureException e) {
+                        return 0; // the tree moved while the import waited for its root
+                    }
+                });
+                Future<?> move = pool.submit(() -> {
+                    start.await();
+                    nodeService.move(Node.DEFAULT_VAULT, parent, target);
+                    return null;
+                });
+                imported += imports.get(1, TimeUnit.MINUTES);
+                move.get(1, TimeUnit.MINUTES);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        assertTrue(imported > 0);
+        assertConsistent(right, 2 + imported);
+        assertConsistent(left, 1);
+    }
+
+    private NodeImportResponse importUnder(UUID parent, String title) {
+        NodeImportItem child = new NodeImportItem();
+        child.title = title + " Child";
+        child.mastery = 5;
+        NodeImportItem item = new NodeImportItem();
+        item.parentId = parent;
+        item.title = title;
+        item.mastery = 5;
+        item.children = List.of(child);
+        NodeImportRequest req = new NodeImportRequest();
+        req.nodes = List.of(item);
+        return importService.importNodes(Node.DEFAULT_VAULT, req);
+    }
+
+    private boolean tryMove(CyclicBarrier start, UUID node, UUID parent) throws Exception {
+        start.await();
+        try {
+            nodeService.move(Node.DEFAULT_VAULT, node, parent);
+            return true;
+        } catch (IllegalArgumentException e) {
+            return false;
+        } catch (ConcurrencyFailureException e) {
+            fail("move was not retried: " + e);
+            return false;
+        }
+    }
+
+    // parent links end at the root, closure rows match them, and both tree reads see every node once
+    private void assertConsistent(UUID root, int size) {
+        Map<UUID, UUID> parents = new HashMap<>();
+        for (UUID id : subtreeIds(root)) {
+            Node n = nodeRepository.findById(id).orElseThrow();
+            parents.put(id, (n.getParent() == null) ? null : n.getParent().getId());
+        }
+        assertEquals(size, parents.size());
+
+        for (UUID id : parents.keySet()) {
+            List<UUID> walked = new ArrayList<>();
+            for (UUID cur = id; cur != null; cur = parents.get(cur)) {
+                assertFalse(walked.contains(cur), "cycle through " + cur);
+                walked.add(cur);
+            }
+            assertEquals(root, walked.get(walked.size() - 1));
+            assertEquals(walked, closureRepository.findAncestorIds(id).subList(0, walked.size()));
+        }
+
+        NodeTreeResponse tree = nodeService.getSubtree(Node.DEFAULT_VAULT, root, null);
+        assertEquals(size, count(tree));
+        assertEquals(size - 1, tree.aggregates.descendantCount);
+        assertEquals(size - 1, nodeService.get(Node.DEFAULT_VAULT, root).aggregates.descendantCount);
+    }
+
+    private List<UUID> subtreeIds(UUID root) {
+        return nodeRepository.findSubtreeRows(Node.DEFAULT_VAULT, root).stream().map(TreeRow::id).toList();
+    }
+
+    private static int count(NodeTreeResponse tree) {
+        int n = 1;
+        for (NodeTreeResponse child : tree.children) {
+            n += count(child);
+        }
+        return n;
+    }
+}
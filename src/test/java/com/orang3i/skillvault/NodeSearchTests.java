@@ -0,0 +1,107 @@
+package com.orang3i.skillvault;
+
+import com.orang3i.skillvault.search.SearchIndex;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@SpringBootTest
+class NodeSearchTests {
+
+    @Autowired
+    private WebApplicationContext wac;
+
+    @Autowired
+    private SearchIndex searchIndex;
+
+    private MockMvc mockMvc;
+
+    private NodeFixtures nodes;
+
+    @BeforeEach
+    void setup() {
+        this.mockMvc = MockMvcBuilders.webAppContextSetup(wac).build();
+        this.nodes = new NodeFixtures(mockMvc);
+    }
+
+    @Test
+    void search_shouldRankTitleMatchesFirstAndReturnPath() throws Exception {
+        String tag = "zq" + UUID.randomUUID().toString().substring(0, 8);
+        String root = nodes.create("Languages " + tag, null, 10, "root", "");
+        String mid = nodes.create("Functional", root, 10, "paradigm", "");
+        String inTitle = nodes.create("Haskell" + tag, mid, 10, "lang", "lazy evaluation");
+        String inDescription = nodes.create("Scheme", mid, 10, "lang", "mentions haskell" + tag + " in passing");
+
+        mockMvc.perform(get("/api/nodes/search").param("q", "haskell" + tag))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(jsonPath("$[0].id").value(inTitle))
+                .andExpect(jsonPath("$[1].id").value(inDescription))
+                .andExpect(jsonPath("$[0].path.length()").value(2))
+                .andExpect(jsonPath("$[0].path[0].id").value(root))
+                .andExpect(jsonPath("$[0].path[1].title").value("Functional"));
+
+        // prefix match, and every token has to match
+        mockMvc.perform(get("/api/nodes/search").param("q", "HASK LAZY"))
+                .andExpect(jsonPath("$[?(@.id == '" + inTitle + "')]").exists());
+        mockMvc.perform(get("/api/nodes/search").param("q", "haskell" + tag + " nomatchterm"))
+                .andExpect(jsonPath("$.length()").value(0));
+    }
+
+    @Test
+    void search_shouldFollowUpdatesAndDeletes() throws Exception {
+        String tag = "zq" + UUID.randomUUID().toString().substring(0, 8);
+        String root = nodes.create("Root " + tag, null, 10, "root", "");
+        String child = nodes.create("Child " + tag, root, 10, "leaf", "");
+
+        mockMvc.perform(put("/api/nodes/" + child).contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"title\": \"Renamed\", \"category\": \"leaf\", \"mastery\": 5}"))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/api/nodes/search").param("q", tag))
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].id").value(root));
+
+        mockMvc.perform(delete("/api/nodes/" + root)).andExpect(status().is2xxSuccessful());
+        mockMvc.perform(get("/api/nodes/search").param("q", tag))
+                .andExpect(jsonPath("$.length()").value(0));
+    }
+
+    @Test
+    void search_shouldIndexImportedNodes() throws Exception {
+        String tag = "zq" + UUID.randomUUID().toString().substring(0, 8);
+        mockMvc.perform(post("/api/nodes/import").contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"nodes\": [{\"title\": \"Imported " + tag + "\", \"children\": [{\"title\": \"Leaf " + tag + "\"}]}]}"))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(get("/api/nodes/search").param("q", tag))
+                .andExpect(jsonPath("$.length()").value(2));
+    }
+
+    @Test
+    void rebuild_shouldKeepChangesCommittedWhileItRuns() throws Exception {
+        String tag = "zq" + UUID.randomUUID().toString().substring(0, 8);
+        String root = nodes.create("Rebuild Root " + tag, null, 10, "root", "");
+
+        CompletableFuture<Void> rebuilds = CompletableFuture.runAsync(() -> {
+            for (int i = 0; i < 5; i++) searchIndex.rebuild();
+        });
+        for (int i = 0; i < 20; i++) {
+            nodes.create("Rebuild Child " + tag, root, 10, "leaf", "");
+        }
+        rebuilds.get();
+
+        mockMvc.perform(get("/api/nodes/search").param("q", tag).param("limit", "50"))
+                .andExpect(jsonPath("$.length()").value(21));
+    }
+}
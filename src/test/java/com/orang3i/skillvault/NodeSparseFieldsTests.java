@@ -0,0 +1,98 @@
+package com.orang3i.skillvault;
+
+import com.jayway.jsonpath.JsonPath;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+
+import java.util.UUID;
+
+import static org.hamcrest.Matchers.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * ?fields= on the list endpoints. Runs with the snapshot cache off, so the lists come from the
+ * projection queries that leave the description out.
+ */
+@SpringBootTest(properties = "skillvault.tree-cache.enabled=false")
+class NodeSparseFieldsTests {
+
+    @Autowired
+    private WebApplicationContext wac;
+
+    private MockMvc mockMvc;
+
+    private NodeFixtures nodes;
+
+    @BeforeEach
+    void setup() {
+        this.mockMvc = MockMvcBuilders.webAppContextSetup(wac).build();
+        this.nodes = new NodeFixtures(mockMvc);
+    }
+
+    @Test
+    void list_shouldReturnOnlyTheRequestedFields() throws Exception {
+        String root = nodes.create("Sparse Root", null, 30, "Sparse", "A long description");
+        String child = nodes.create("Sparse Child", root, 30, "Sparse", "A long description");
+
+        mockMvc.perform(get("/api/nodes").param("parentId", root).param("fields", "mastery, title,id"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].id").value(child))
+                .andExpect(jsonPath("$[0].title").value("Sparse Child"))
+                .andExpect(jsonPath("$[0].mastery").value(30))
+                .andExpect(jsonPath("$[0].description").doesNotExist())
+                .andExpect(jsonPath("$[0].aggregates").doesNotExist())
+                .andExpect(jsonPath("$[0].*", hasSize(3)));
+
+        // without fields everything is there, description included
+        mockMvc.perform(get("/api/nodes").param("parentId", root))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].description").value("A long description"))
+                .andExpect(jsonPath("$[0].aggregates.descendantCount").value(0));
+
+        mockMvc.perform(get("/api/nodes").param("parentId", root).param("fields", "id,description"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].description").value("A long description"));
+    }
+
+    @Test
+    void pages_shouldKeepTheCursorWithSparseItems() throws Exception {
+        String category = "SparsePaged-" + UUID.randomUUID();
+        String first = nodes.create("Sparse Page 1", null, 30, category, "A long description");
+        String second = nodes.create("Sparse Page 2", first, 30, category, "A long description");
+
+        String body = mockMvc.perform(get("/api/nodes/by-category")
+                        .param("category", category).param("limit", "1").param("fields", "id"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items[*].id", contains(first)))
+                .andExpect(jsonPath("$.items[0].*", hasSize(1)))
+                .andExpect(jsonPath("$.next").isString())
+                .andReturn().getResponse().getContentAsString();
+
+        mockMvc.perform(get("/api/nodes/children").param("parentId", first).param("fields", "title,parentId"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items[0].title").value("Sparse Page 2"))
+                .andExpect(jsonPath("$.items[0].parentId").value(first))
+                .andExpect(jsonPath("$.items[0].id").doesNotExist());
+
+        mockMvc.perform(get("/api/nodes/by-category").param("category", category).param("limit", "1")
+                        .param("fields", "id").param("cursor", JsonPath.<String>read(body, "$.next")))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items[*].id", contains(second)));
+    }
+
+    @Test
+    void unknownField_shouldBeBadRequest() throws Exception {
+        mockMvc.perform(get("/api/nodes").param("fields", "id,secret"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.message", containsString("secret")));
+
+        mockMvc.perform(get("/api/nodes/children").param("fields", " , "))
+                .andExpect(status().isBadRequest());
+    }
+}
@@ -0,0 +1,407 @@
+package com.orang3i.skillvault;
+
+import com.jayway.jsonpath.JsonPath;
+import com.orang3i.skillvault.admin.AggregatesEndpoint;
+import com.orang3i.skillvault.dto.AggregateRebuildReport;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.hamcrest.Matchers.hasItem;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@SpringBootTest
+class NodeTreeTests {
+
+    @Autowired
+    private WebApplicationContext wac;
+
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    @Autowired
+    private AggregatesEndpoint aggregates;
+
+    private MockMvc mockMvc;
+
+    private NodeFixtures nodes;
+
+    @BeforeEach
+    void setup() {
+        this.mockMvc = MockMvcBuilders.webAppContextSetup(wac).build();
+        this.nodes = new NodeFixtures(mockMvc);
+    }
+
+    @Test
+    void subtree_shouldContainAllDescendants() throws Exception {
+        String root = nodes.create("Root", null);
+        String child = nodes.create("Child", root);
+        nodes.create("Grandchild", child);
+
+        mockMvc.perform(get("/api/nodes/" + root + "/subtree"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.id").value(root))
+                .andExpect(jsonPath("$.children.length()").value(1))
+                .andExpect(jsonPath("$.children[0].id").value(child))
+                .andExpect(jsonPath("$.children[0].children[0].title").value("Grandchild"))
+                .andExpect(jsonPath("$.children[0].children[0].children.length()").value(0));
+    }
+
+    @Test
+    void subtree_ofMissingNode_shouldReturnNotFound() throws Exception {
+        mockMvc.perform(get("/api/nodes/00000000-0000-0000-0000-000000000000/subtree"))
+                .andExpect(status().isNotFound())
+                .andExpect(jsonPath("$.error").value("NOT_FOUND"));
+    }
+
+    @Test
+    void fullTree_shouldListRootsWithNestedChildren() throws Exception {
+        String root = nodes.create("Tree Root", null);
+        nodes.create("Tree Child", root);
+
+        mockMvc.perform(get("/api/nodes/tree"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[*].id", hasItem(root)))
+                .andExpect(jsonPath("$[?(@.id == '" + root + "')].children[0].title").value("Tree Child"));
+    }
+
+    @Test
+    void move_underDescendant_shouldFail() throws Exception {
+        String root = nodes.create("Move Root", null);
+        String child = nodes.create("Move Child", root);
+
+        mockMvc.perform(patch("/api/nodes/" + root + "/move")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"newParentId\": \"" + child + "\"}"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error").value("BAD_REQUEST"));
+    }
+
+    @Test
+    void move_shouldCarryWholeSubtreeToNewParent() throws Exception {
+        String a = nodes.create("A", null);
+        String b = nodes.create("B", null);
+        String child = nodes.create("A Child", a);
+        nodes.create("A Grandchild", child);
+
+        mockMvc.perform(patch("/api/nodes/" + child + "/move")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"newParentId\": \"" + b + "\"}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.parentId").value(b));
+
+        mockMvc.perform(get("/api/nodes/" + a + "/descendant-count"))
+                .andExpect(status().isOk())
+                .andExpect(content().string("0"));
+        mockMvc.perform(get("/api/nodes/" + b + "/descendant-count"))
+                .andExpect(status().isOk())
+                .andExpect(content().string("2"));
+        mockMvc.perform(get("/api/nodes/" + b + "/subtree"))
+                .andExpect(jsonPath("$.children[0].children[0].title").value("A Grandchild"));
+
+        // the moved subtree is now under B, so B cannot go under it
+        mockMvc.perform(patch("/api/nodes/" + b + "/move")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"newParentId\": \"" + child + "\"}"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void delete_shouldRemoveDescendants() throws Exception {
+        String root = nodes.create("Delete Root", null);
+        String child = nodes.create("Delete Child", root);
+        String grandchild = nodes.create("Delete Grandchild", child);
+
+        mockMvc.perform(delete("/api/nodes/" + child))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(get("/api/nodes/" + grandchild))
+                .andExpect(status().isNotFound());
+        mockMvc.perform(get("/api/nodes/" + root + "/descendant-count"))
+                .andExpect(content().string("0"));
+    }
+
+    @Test
+    void asyncDelete_shouldReturnJobThatRemovesSubtree() throws Exception {
+        String root = nodes.create("Async Root", null);
+        String child = nodes.create("Async Child", root);
+        for (int i = 0; i < 20; i++) {
+            nodes.create("Async Leaf " + i, nodes.create("Async Mid " + i, child));
+        }
+
+        String job = mockMvc.perform(delete("/api/nodes/" + child).param("async", "true"))
+                .andExpect(status().isAccepted())
+                .andExpect(jsonPath("$.nodes").value(41))
+                .andReturn().getResponse().getContentAsString();
+        String jobId = JsonPath.read(job, "$.id");
+
+        String status = "PENDING";
+        for (int i = 0; i < 100 && !status.equals("DONE") && !status.equals("FAILED"); i++) {
+            Thread.sleep(50);
+            status = JsonPath.read(mockMvc.perform(get("/api/nodes/delete-jobs/" + jobId))
+                    .andReturn().getResponse().getContentAsString(), "$.status");
+        }
+        assertEquals("DONE", status);
+        mockMvc.perform(get("/api/nodes/delete-jobs/" + jobId))
+                .andExpect(jsonPath("$.deleted").value(41));
+        mockMvc.perform(get("/api/nodes/" + child))
+                .andExpect(status().isNotFound());
+        mockMvc.perform(get("/api/nodes/" + root + "/subtree"))
+                .andExpect(jsonPath("$.children.length()").value(0))
+                .andExpect(jsonPath("$.aggregates.descendantCount").value(0));
+
+        mockMvc.perform(delete("/api/nodes/" + child).param("async", "true"))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void update_shouldBeVisibleInTreeAndChildListing() throws Exception {
+        String root = nodes.create("Update Root", null);
+        String child = nodes.create("Before", root);
+
+        // load the tree first so a cached snapshot exists before the write
+        mockMvc.perform(get("/api/nodes/" + root + "/subtree"))
+                .andExpect(jsonPath("$.children[0].title").value("Before"));
+
+        mockMvc.perform(put("/api/nodes/" + child)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"title\": \"After\", \"mastery\": 40}"))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(get("/api/nodes/" + root + "/subtree"))
+                .andExpect(jsonPath("$.children[0].title").value("After"))
+                .andExpect(jsonPath("$.children[0].mastery").value(40));
+        mockMvc.perform(get("/api/nodes").param("parentId", root))
+                .andExpect(jsonPath("$[0].id").value(child))
+                .andExpect(jsonPath("$[0].parentId").value(root))
+                .andExpect(jsonPath("$[0].title").value("After"));
+    }
+
+    @Test
+    void streamedTree_shouldMatchRegularJson() throws Exception {
+        String root = nodes.create("Stream Root", null);
+        String child = nodes.create("Stream \\\"quoted\\\" child", root);
+        nodes.create("Stream Grandchild", child);
+
+        assertEquals(
+                mockMvc.perform(get("/api/nodes/" + root + "/subtree")).andReturn().getResponse().getContentAsString(),
+                streamed("/api/nodes/" + root + "/subtree"));
+        assertEquals(
+                mockMvc.perform(get("/api/nodes/tree")).andReturn().getResponse().getContentAsString(),
+                streamed("/api/nodes/tree"));
+    }
+
+    @Test
+    void streamedSubtree_ofMissingNode_shouldReturnNotFound() throws Exception {
+        mockMvc.perform(get("/api/nodes/00000000-0000-0000-0000-000000000000/subtree").param("stream", "true"))
+                .andExpect(status().isNotFound());
+    }
+
+    private String streamed(String url) throws Exception {
+        MvcResult started = mockMvc.perform(get(url).param("stream", "true"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        return mockMvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+    }
+
+    @Test
+    void childPages_shouldWalkAllChildrenOnceWithCursor() throws Exception {
+        String root = nodes.create("Paged Root", null);
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            expected.add(nodes.create("Paged Child " + i, root));
+        }
+
+        List<String> seen = new ArrayList<>();
+        String cursor = null;
+        for (int page = 0; page < 3; page++) {
+            var req = get("/api/nodes/children").param("parentId", root).param("limit", "2");
+            if (cursor != null) {
+                req.param("cursor", cursor);
+            }
+            String body = mockMvc.perform(req)
+                    .andExpect(status().isOk())
+                    .andReturn().getResponse().getContentAsString();
+            seen.addAll(JsonPath.read(body, "$.items[*].id"));
+            cursor = JsonPath.read(body, "$.next");
+        }
+
+        // children come back in creation order
+        assertEquals(expected, seen);
+        assertEquals(null, cursor);
+    }
+
+    @Test
+    void listsAndTrees_shouldReturnChildrenInCreationOrderLikePages() throws Exception {
+        String root = nodes.create("Ordered Root", null);
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            expected.add(nodes.create("Ordered Child " + i, root));
+        }
+        // a moved node keeps its place by creation time
+        String other = nodes.create("Ordered Other Root", null);
+        String moved = nodes.create("Ordered Moved", other);
+        mockMvc.perform(patch("/api/nodes/" + moved + "/move").contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"newParentId\": \"" + root + "\"}"))
+                .andExpect(status().isOk());
+        expected.add(moved);
+
+        String list = mockMvc.perform(get("/api/nodes").param("parentId", root))
+                .andReturn().getResponse().getContentAsString();
+        String subtree = mockMvc.perform(get("/api/nodes/" + root + "/subtree"))
+                .andReturn().getResponse().getContentAsString();
+        String page = mockMvc.perform(get("/api/nodes/children").param("parentId", root))
+                .andReturn().getResponse().getContentAsString();
+        assertEquals(expected, JsonPath.read(list, "$[*].id"));
+        assertEquals(expected, JsonPath.read(subtree, "$.children[*].id"));
+        assertEquals(expected, JsonPath.read(page, "$.items[*].id"));
+    }
+
+    @Test
+    void childPages_lastPage_shouldHaveNoNextCursor() throws Exception {
+        String root = nodes.create("Single Page Root", null);
+        nodes.create("Only Child", root);
+
+        mockMvc.perform(get("/api/nodes/children").param("parentId", root))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items.length()").value(1))
+                .andExpect(jsonPath("$.next").value(nullValue()));
+    }
+
+    @Test
+    void childPages_withBadCursorOrLimit_shouldFail() throws Exception {
+        mockMvc.perform(get("/api/nodes/children").param("cursor", "not-a-cursor"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/api/nodes/children").param("limit", "0"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void subtreeWithDepth_shouldStopAtCutoffWithChildCounts() throws Exception {
+        String root = nodes.create("Depth Root", null);
+        String a = nodes.create("Depth A", root);
+        nodes.create("Depth A1", a);
+        nodes.create("Depth A2", a);
+        String b = nodes.create("Depth B", root);
+
+        mockMvc.perform(get("/api/nodes/" + root + "/subtree").param("depth", "1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.childCount").doesNotExist())
+                .andExpect(jsonPath("$.children.length()").value(2))
+                .andExpect(jsonPath("$.children[?(@.id == '" + a + "')].childCount").value(2))
+                .andExpect(jsonPath("$.children[?(@.id == '" + a + "')].children.length()").value(0))
+                .andExpect(jsonPath("$.children[?(@.id == '" + b + "')].childCount").value(0));
+
+        mockMvc.perform(get("/api/nodes/" + root + "/subtree").param("depth", "0"))
+                .andExpect(jsonPath("$.childCount").value(2))
+                .andExpect(jsonPath("$.children.length()").value(0));
+
+        mockMvc.perform(get("/api/nodes/tree").param("depth", "0"))
+                .andExpect(jsonPath("$[?(@.id == '" + root + "')].childCount").value(2));
+
+        assertEquals(
+                mockMvc.perform(get("/api/nodes/" + root + "/subtree").param("depth", "1"))
+                        .andReturn().getResponse().getContentAsString(),
+                streamed("/api/nodes/" + root + "/subtree?depth=1"));
+        assertEquals(
+                mockMvc.perform(get("/api/nodes/" + root + "/subtree").param("depth", "0"))
+                        .andReturn().getResponse().getContentAsString(),
+                streamed("/api/nodes/" + root + "/subtree?depth=0"));
+        assertEquals(
+                mockMvc.perform(get("/api/nodes/tree").param("depth", "1"))
+                        .andReturn().getResponse().getContentAsString(),
+                streamed("/api/nodes/tree?depth=1"));
+    }
+
+    @Test
+    void subtreeWithNegativeDepth_shouldFail() throws Exception {
+        String root = nodes.create("Negative Depth Root", null);
+
+        mockMvc.perform(get("/api/nodes/" + root + "/subtree").param("depth", "-1"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void aggregates_shouldFollowCreateUpdateMoveAndDelete() throws Exception {
+        String root = nodes.create("Stats Root", null, 10);
+        String other = nodes.create("Stats Other", null, 20);
+        String child = nodes.create("Stats Child", root, 50);
+        String grandchild = nodes.create("Stats Grandchild", child, 90);
+
+        mockMvc.perform(get("/api/nodes/" + root))
+                .andExpect(jsonPath("$.aggregates.descendantCount").value(2))
+                .andExpect(jsonPath("$.aggregates.masterySum").value(150))
+                .andExpect(jsonPath("$.aggregates.masteryMin").value(10))
+                .andExpect(jsonPath("$.aggregates.masteryMax").value(90))
+                .andExpect(jsonPath("$.aggregates.masteryAvg").value(50.0));
+
+        mockMvc.perform(put("/api/nodes/" + grandchild)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"title\": \"Stats Grandchild\", \"mastery\": 0}"))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/api/nodes/" + root + "/subtree"))
+                .andExpect(jsonPath("$.aggregates.masterySum").value(60))
+                .andExpect(jsonPath("$.aggregates.masteryMin").value(0))
+                .andExpect(jsonPath("$.aggregates.masteryMax").value(50))
+                .andExpect(jsonPath("$.children[0].aggregates.descendantCount").value(1));
+
+        mockMvc.perform(patch("/api/nodes/" + child + "/move")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"newParentId\": \"" + other + "\"}"))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/api/nodes/" + root))
+                .andExpect(jsonPath("$.aggregates.descendantCount").value(0))
+                .andExpect(jsonPath("$.aggregates.masterySum").value(10))
+                .andExpect(jsonPath("$.aggregates.masteryMax").value(10));
+        mockMvc.perform(get("/api/nodes/" + other + "/subtree"))
+                .andExpect(jsonPath("$.aggregates.descendantCount").value(2))
+                .andExpect(jsonPath("$.aggregates.masterySum").value(70))
+                .andExpect(jsonPath("$.aggregates.masteryMin").value(0))
+                .andExpect(jsonPath("$.aggregates.masteryMax").value(50));
+
+        mockMvc.perform(delete("/api/nodes/" + child)).andExpect(status().isOk());
+        mockMvc.perform(get("/api/nodes/" + other))
+                .andExpect(jsonPath("$.aggregates.descendantCount").value(0))
+                .andExpect(jsonPath("$.aggregates.masteryMin").value(20))
+                .andExpect(jsonPath("$.aggregates.masteryMax").value(20));
+
+        // incremental maintenance must agree with a full recomputation
+        AggregateRebuildReport report = aggregates.rebuild();
+        assertEquals(0, report.drifted);
+        assertEquals(0, report.missing);
+        assertEquals(0, report.orphaned);
+    }
+
+    @Test
+    void rebuild_shouldRepairDriftedAndMissingRows() throws Exception {
+        String root = nodes.create("Drifted Root", null, 10);
+        String child = nodes.create("Missing Child", root, 20);
+        jdbc.update("UPDATE node_stats SET mastery_sum = 999 WHERE node_id = ?", UUID.fromString(root));
+        jdbc.update("DELETE FROM node_stats WHERE node_id = ?", UUID.fromString(child));
+
+        AggregateRebuildReport report = aggregates.rebuild();
+        assertEquals(1, report.drifted);
+        assertEquals(1, report.missing);
+        assertEquals(0, report.skipped);
+        mockMvc.perform(get("/api/nodes/" + root))
+                .andExpect(jsonPath("$.aggregates.masterySum").value(30));
+        mockMvc.perform(get("/api/nodes/" + child))
+                .andExpect(jsonPath("$.aggregates.masterySum").value(20));
+    }
+}
@@ -0,0 +1,10 @@
+package com.orang3i.skillvault;
+
+import org.springframework.boot.test.context.SpringBootTest;
+
+/**
+ * Runs the tree tests again with the snapshot cache switched off, so the database read paths stay covered.
+ */
+@SpringBootTest(properties = "skillvault.tree-cache.enabled=false")
+class NodeTreeUncachedTests extends NodeTreeTests {
+}
@@ -0,0 +1,193 @@
+package com.orang3i.skillvault;
+
+import com.jayway.jsonpath.JsonPath;
+import com.orang3i.skillvault.repository.NodeRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.context.WebApplicationContext;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.hasItem;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@SpringBootTest
+class NodeVaultTests {
+
+    private static final String HEADER = "X-Vault-Id";
+
+    @Autowired
+    private WebApplicationContext wac;
+
+    @Autowired
+    private NodeRepository nodeRepository;
+
+    @Autowired
+    private TransactionTemplate tx;
+
+    private MockMvc mockMvc;
+
+    private NodeFixtures nodes;
+
+    @BeforeEach
+    void setup() {
+        this.mockMvc = MockMvcBuilders.webAppContextSetup(wac).build();
+        this.nodes = new NodeFixtures(mockMvc);
+    }
+
+    private static String newVault() {
+        return "v-" + UUID.randomUUID().toString().substring(0, 8);
+    }
+
+    @Test
+    void vaults_shouldSeeOnlyTheirOwnNodes() throws Exception {
+        String alpha = newVault();
+        String beta = newVault();
+        String root = nodes.inVault(alpha).create("Alpha Root", null);
+        String child = nodes.inVault(alpha).create("Alpha Child", root);
+        String other = nodes.inVault(beta).create("Beta Root", null, 10, "Vaulted", null);
+
+        mockMvc.perform(get("/api/nodes/tree").header(HEADER, alpha))
+                .andExpect(status().isOk())
+                .andExpect(header().stringValues("Vary", hasItem(HEADER)))
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].id").value(root))
+                .andExpect(jsonPath("$[0].children[0].id").value(child));
+        mockMvc.perform(get("/api/nodes").header(HEADER, beta))
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].id").value(other));
+        mockMvc.perform(get("/api/nodes/by-category").header(HEADER, beta).param("category", "Vaulted"))
+                .andExpect(jsonPath("$.items.length()").value(1));
+
+        mockMvc.perform(get("/api/nodes/" + child).header(HEADER, alpha)).andExpect(status().isOk());
+        mockMvc.perform(get("/api/nodes/" + child).header(HEADER, beta)).andExpect(status().isNotFound());
+        mockMvc.perform(get("/api/nodes/" + child)).andExpect(status().isNotFound());
+        mockMvc.perform(get("/api/nodes/" + root + "/subtree").header(HEADER, beta)).andExpect(status().isNotFound());
+        mockMvc.perform(delete("/api/nodes/" + root).header(HEADER, beta)).andExpect(status().isNotFound());
+        mockMvc.perform(post("/api/nodes").header(HEADER, beta).contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"title\": \"Stray\", \"mastery\": 1, \"parentId\": \"" + root + "\"}"))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void move_shouldRejectAnotherVaultsParent() throws Exception {
+        String alpha = newVault();
+        String beta = newVault();
+        String node = nodes.inVault(alpha).create("Stays Home", null);
+        String foreignParent = nodes.inVault(beta).create("Foreign Parent", null);
+
+        mockMvc.perform(patch("/api/nodes/" + node + "/move").header(HEADER, alpha)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"newParentId\": \"" + foreignParent + "\"}"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(post("/api/nodes/batch").header(HEADER, alpha).contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"operations\": [{\"op\": \"move\", \"id\": \"" + node + "\", \"parentId\": \"" + foreignParent + "\"}]}"))
+                .andExpect(status().isBadRequest())
+                .andExpect(content().string(containsString("another vault")));
+
+        mockMvc.perform(get("/api/nodes/tree").header(HEADER, beta))
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].children.length()").value(0));
+    }
+
+    @Test
+    void searchAndDelta_shouldBeScopedToTheVault() throws Exception {
+        String alpha = newVault();
+        String beta = newVault();
+        String tag = "vq" + UUID.randomUUID().toString().substring(0, 8);
+        String token = JsonPath.read(mockMvc.perform(get("/api/nodes/delta").header(HEADER, beta))
+                .andReturn().getResponse().getContentAsString(), "$.token").toString();
+        String mine = nodes.inVault(alpha).create("Alpha " + tag, null);
+        nodes.inVault(beta).create("Beta Other", null);
+
+        mockMvc.perform(get("/api/nodes/search").header(HEADER, alpha).param("q", tag))
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].id").value(mine));
+        mockMvc.perform(get("/api/nodes/search").header(HEADER, beta).param("q", tag))
+                .andExpect(jsonPath("$.length()").value(0));
+        mockMvc.perform(get("/api/nodes/delta").header(HEADER, beta).param("since", token))
+                .andExpect(jsonPath("$.nodes.length()").value(1))
+                .andExpect(jsonPath("$.nodes[0].title").value("Beta Other"));
+    }
+
+    @Test
+    void asyncDeletes_shouldNotWaitForAnotherVaultsJobs() throws Exception {
+        String alpha = newVault();
+        String beta = newVault();
+        String stuck = nodes.inVault(alpha).create("Stuck Branch", null);
+        String next = nodes.inVault(alpha).create("Next Branch", null);
+        String other = nodes.inVault(beta).create("Other Branch", null);
+
+        // holds the row lock the first alpha delete needs until released
+        CountDownLatch locked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<Void> holder = CompletableFuture.runAsync(() -> tx.executeWithoutResult(s -> {
+            nodeRepository.lockAll(List.of(UUID.fromString(stuck)));
+            locked.countDown();
+            try {
+                release.await(30, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }));
+        locked.await(10, TimeUnit.SECONDS);
+
+        try {
+            String stuckJob = submitDelete(alpha, stuck);
+            String nextJob = submitDelete(alpha, next);
+            String otherJob = submitDelete(beta, other);
+
+            assertEquals("DONE", awaitJob(beta, otherJob));
+            assertEquals("RUNNING", jobStatus(alpha, stuckJob));
+            assertEquals("PENDING", jobStatus(alpha, nextJob), "one job at a time per vault");
+
+            release.countDown();
+            holder.get(10, TimeUnit.SECONDS);
+            assertEquals("DONE", awaitJob(alpha, stuckJob));
+            assertEquals("DONE", awaitJob(alpha, nextJob));
+        } finally {
+            release.countDown();
+        }
+    }
+
+    private String submitDelete(String vault, String id) throws Exception {
+        return JsonPath.read(mockMvc.perform(delete("/api/nodes/" + id).header(HEADER, vault).param("async", "true"))
+                .andExpect(status().isAccepted())
+                .andReturn().getResponse().getContentAsString(), "$.id");
+    }
+
+    private String jobStatus(String vault, String job) throws Exception {
+        return JsonPath.read(mockMvc.perform(get("/api/nodes/delete-jobs/" + job).header(HEADER, vault))
+                .andReturn().getResponse().getContentAsString(), "$.status");
+    }
+
+    private String awaitJob(String vault, String job) throws Exception {
+        String status = jobStatus(vault, job);
+        for (int i = 0; i < 200 && (status.equals("PENDING") || status.equals("RUNNING")); i++) {
+            Thread.sleep(25);
+            status = jobStatus(vault, job);
+        }
+        return status;
+    }
+
+    @Test
+    void invalidVaultHeader_shouldBeRejected() throws Exception {
+        mockMvc.perform(get("/api/nodes/tree").header(HEADER, "no spaces/allowed"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/api/nodes/tree").header(HEADER, "x".repeat(65)))
+                .andExpect(status().isBadRequest());
+    }
+}
@@ -0,0 +1,141 @@
+package com.orang3i.skillvault;
+
+import com.orang3i.skillvault.cache.TreeSnapshot;
+import com.orang3i.skillvault.cache.TreeSnapshotCache;
+import com.orang3i.skillvault.cache.TreeSnapshotStore;
+import com.orang3i.skillvault.dto.NodeCreateRequest;
+import com.orang3i.skillvault.entity.Node;
+import com.orang3i.skillvault.repository.NodeRepository;
+import com.orang3i.skillvault.service.NodeService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = {
+        "skillvault.snapshot.file=target/tree-snapshot-test.bin",
+        "skillvault.snapshot.interval-ms=3600000"})
+class TreeSnapshotFileTests {
+
+    private static final Path FILE = Path.of("target/tree-snapshot-test.bin");
+
+    @Autowired
+    private TreeSnapshotStore store;
+
+    @Autowired
+    private TreeSnapshotCache cache;
+
+    @Autowired
+    private NodeService nodeService;
+
+    @Autowired
+    private NodeRepository nodeRepository;
+
+    @Autowired
+    private TransactionTemplate tx;
+
+    private UUID createNode(String title, UUID parentId) {
+        NodeCreateRequest req = new NodeCreateRequest();
+        req.title = title;
+        req.description = "Snapshot été " + title;
+        req.category = "Snapshot";
+        req.mastery = 40;
+        req.parentId = parentId;
+        return nodeService.create(Node.DEFAULT_VAULT, req).id;
+    }
+
+    @Test
+    void savedSnapshot_shouldLoadBackAndVerify() throws Exception {
+        UUID root = createNode("File Root", null);
+        createNode("File Child", root);
+        cache.snapshot(Node.DEFAULT_VAULT);
+
+        assertTrue(store.save());
+        assertFalse(store.save(), "an unchanged tree is not written again");
+        assertTrue(Files.exists(FILE));
+
+        cache.invalidate();
+        assertTrue(store.load());
+        assertTrue(cache.peek(Node.DEFAULT_VAULT).sameContent(TreeSnapshot.of(nodeRepository.findAllRows(Node.DEFAULT_VAULT, true), 0)));
+        assertEquals(1, cache.peek(Node.DEFAULT_VAULT).get(root).childIds().length);
+        assertTrue(store.verify());
+    }
+
+    @Test
+    void staleSnapshot_shouldNotLoad() throws Exception {
+        createNode("Stale Root", null);
+        cache.snapshot(Node.DEFAULT_VAULT);
+        assertTrue(store.save());
+
+        createNode("Written After Save", null);
+        cache.invalidate();
+        assertFalse(store.load());
+        assertNull(cache.peek(Node.DEFAULT_VAULT));
+    }
+
+    @Test
+    void saveBetweenCommitAndCacheUpdate_shouldNotLoadAsCurrent() throws Exception {
+        createNode("Gap Root", null);
+        int before = cache.snapshot(Node.DEFAULT_VAULT).size();
+        CountDownLatch committed = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        // registered before the write, so it runs ahead of the cache's after-commit listener
+        CompletableFuture<Void> write = CompletableFuture.runAsync(() -> tx.executeWithoutResult(status -> {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    committed.countDown();
+                    try {
+                        release.await(10, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            });
+            createNode("Committed Not Cached", null);
+        }));
+        assertTrue(committed.await(10, TimeUnit.SECONDS));
+        assertEquals(before, cache.peek(Node.DEFAULT_VAULT).size(), "the cache has not applied the write yet");
+        assertTrue(store.save());
+        release.countDown();
+        write.get(10, TimeUnit.SECONDS);
+
+        cache.invalidate();
+        assertFalse(store.load(), "the file does not hold the committed write, so it must not claim it");
+    }
+
+    @Test
+    void damagedSnapshot_shouldNotLoad() throws Exception {
+        createNode("Damaged Root", null);
+        cache.snapshot(Node.DEFAULT_VAULT);
+        assertTrue(store.save());
+
+        byte[] bytes = Files.readAllBytes(FILE);
+        bytes[bytes.length / 2] ^= 0x5a;
+        Files.write(FILE, bytes);
+        cache.invalidate();
+        assertFalse(store.load());
+    }
+
+    @Test
+    void verify_shouldReplaceSnapshotThatDiffersFromDatabase() {
+        createNode("Verify Root", null);
+        cache.invalidate();
+        assertTrue(cache.preload(Node.DEFAULT_VAULT, List.of()));
+
+        assertFalse(store.verify());
+        assertTrue(cache.peek(Node.DEFAULT_VAULT).sameContent(TreeSnapshot.of(nodeRepository.findAllRows(Node.DEFAULT_VAULT, true), 0)));
+    }
+}
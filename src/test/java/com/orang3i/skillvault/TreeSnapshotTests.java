@@ -0,0 +1,116 @@
+package com.orang3i.skillvault;
+
+import com.orang3i.skillvault.cache.TreeSnapshot;
+import com.orang3i.skillvault.dto.NodeResponse;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TreeSnapshotTests {
+
+    private static final Instant T0 = Instant.parse("2026-01-01T00:00:00Z");
+
+    private static TreeSnapshot.CachedNode node(UUID id, UUID parentId, int mastery, int order) {
+        return new TreeSnapshot.CachedNode(id, parentId, "Node " + order, "About " + order, null, mastery,
+                T0.plusSeconds(order), T0.plusSeconds(order), null, null, 0);
+    }
+
+    private static NodeResponse response(TreeSnapshot.CachedNode n) {
+        NodeResponse r = new NodeResponse();
+        r.id = n.id();
+        r.parentId = n.parentId();
+        r.title = n.title();
+        r.description = n.description();
+        r.mastery = n.mastery();
+        r.createdAt = n.createdAt();
+        r.updatedAt = n.updatedAt();
+        return r;
+    }
+
+    @Test
+    void edit_shouldShareUntouchedNodesAndLeaveTheOriginalAlone() {
+        List<TreeSnapshot.CachedNode> fields = new ArrayList<>();
+        UUID root = UUID.randomUUID();
+        fields.add(node(root, null, 10, 0));
+        List<UUID> topics = new ArrayList<>();
+        for (int i = 1; i <= 2000; i++) {
+            UUID id = UUID.randomUUID();
+            UUID parent = (i <= 20) ? root : topics.get(i % 20);
+            fields.add(node(id, parent, i % 101, i));
+            if (i <= 20) topics.add(id);
+        }
+        TreeSnapshot before = TreeSnapshot.ofNodes(fields, 1);
+
+        UUID added = UUID.randomUUID();
+        TreeSnapshot after = before.edit(2)
+                .upsert(response(node(added, topics.get(3), 50, 5000)))
+                .move(topics.get(5), topics.get(6))
+                .remove(topics.get(7))
+                .done();
+
+        assertEquals(2001, before.size());
+        assertNull(before.get(added));
+        assertEquals(root, before.get(topics.get(5)).parentId());
+        assertNotNull(before.get(topics.get(7)));
+        assertEquals(2000, before.get(root).rollup().descendantCount());
+
+        long removed = before.get(topics.get(7)).rollup().descendantCount() + 1;
+        assertEquals(2001 + 1 - removed, after.size());
+        assertEquals(topics.get(3), after.get(added).parentId());
+        assertEquals(topics.get(6), after.get(topics.get(5)).parentId());
+        assertNull(after.get(topics.get(7)));
+        assertEquals(after.size() - 1, after.get(root).rollup().descendantCount());
+        assertEquals(after.size(), after.nodes().size());
+
+        // nodes off the changed paths are the same objects in both
+        UUID untouched = topics.get(10);
+        assertSame(before.get(untouched), after.get(untouched));
+        assertSame(before.get(fields.get(1000).id()), after.get(fields.get(1000).id()));
+    }
+
+    @Test
+    void edits_shouldMatchASnapshotBuiltFromScratch() {
+        SplittableRandom rnd = new SplittableRandom(42);
+        Map<UUID, TreeSnapshot.CachedNode> model = new HashMap<>();
+        List<UUID> ids = new ArrayList<>();
+        TreeSnapshot snapshot = TreeSnapshot.ofNodes(List.of(), 0);
+        int order = 0;
+        for (int round = 1; round <= 200; round++) {
+            TreeSnapshot.Edit edit = snapshot.edit(round);
+            for (int i = 0; i < 20; i++) {
+                if (ids.isEmpty() || rnd.nextInt(4) != 0) {
+                    UUID parent = ids.isEmpty() || rnd.nextInt(10) == 0 ? null : ids.get(rnd.nextInt(ids.size()));
+                    TreeSnapshot.CachedNode n = node(UUID.randomUUID(), parent, rnd.nextInt(101), ++order);
+                    edit.upsert(response(n));
+                    model.put(n.id(), n);
+                    ids.add(n.id());
+                } else {
+                    // removes the node and, in the model, its whole subtree
+                    UUID gone = ids.get(rnd.nextInt(ids.size()));
+                    edit.remove(gone);
+                    List<UUID> doomed = new ArrayList<>(List.of(gone));
+                    for (int d = 0; d < doomed.size(); d++) {
+                        UUID parent = doomed.get(d);
+                        model.values().stream().filter(n -> parent.equals(n.parentId())).forEach(n -> doomed.add(n.id()));
+                    }
+                    doomed.forEach(model::remove);
+                    ids.removeAll(doomed);
+                }
+            }
+            TreeSnapshot previous = snapshot;
+            int previousSize = previous.size();
+            snapshot = edit.done();
+
+            assertTrue(snapshot.sameContent(TreeSnapshot.ofNodes(model.values(), round)), "round " + round);
+            assertEquals(previousSize, previous.nodes().size(), "the previous snapshot is unchanged");
+        }
+    }
+}
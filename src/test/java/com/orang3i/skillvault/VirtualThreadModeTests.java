@@ -0,0 +1,44 @@
+package com.orang3i.skillvault;
+
+import com.orang3i.skillvault.config.ConnectionLimitingDataSource;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLTransientConnectionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = {
+        "spring.threads.virtual.enabled=true",
+        "skillvault.db.max-concurrent=2",
+        "skillvault.db.acquire-timeout-ms=100"
+})
+class VirtualThreadModeTests {
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Test
+    void dataSource_shouldCapConcurrentConnections() throws Exception {
+        ConnectionLimitingDataSource limited = assertInstanceOf(ConnectionLimitingDataSource.class, dataSource);
+        int before = limited.availablePermits();
+
+        Connection a = dataSource.getConnection();
+        Connection b = dataSource.getConnection();
+        try {
+            assertEquals(before - 2, limited.availablePermits());
+            if (before == 2) {
+                assertThrows(SQLTransientConnectionException.class, dataSource::getConnection);
+            }
+            a.close();
+            assertEquals(before - 1, limited.availablePermits());
+        } finally {
+            a.close(); // a second close must not hand out an extra permit
+            b.close();
+        }
+        assertEquals(before, limited.availablePermits());
+    }
+}
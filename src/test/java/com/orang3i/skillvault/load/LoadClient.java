@@ -0,0 +1,296 @@
+package com.orang3i.skillvault.load;
+
+import com.orang3i.skillvault.dto.MasteryIncrementRequest;
+import com.orang3i.skillvault.dto.NodeBatchOperation;
+import com.orang3i.skillvault.dto.NodeBatchRequest;
+import com.orang3i.skillvault.dto.NodeCreateRequest;
+import com.orang3i.skillvault.dto.NodeImportItem;
+import com.orang3i.skillvault.dto.NodeImportRequest;
+import com.orang3i.skillvault.dto.NodeMoveRequest;
+import com.orang3i.skillvault.dto.NodeUpdateRequest;
+import tools.jackson.databind.JsonNode;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.BooleanSupplier;
+
+/**
+ * One closed-loop client: picks an operation, sends it, records the latency, repeats.
+ * Clients share the Targets pools, so writes feed later requests: created nodes are deleted again,
+ * imported branches are bulk-deleted, delete jobs are polled. An operation whose pool is empty is
+ * skipped and another one picked, which keeps the node count roughly stable over long runs.
+ * With conditional GETs on, every client remembers the ETag per URL and sends If-None-Match,
+ * as the pollers of a real client do.
+ */
+final class LoadClient {
+
+    /** Ids the operations act on; the seeded arrays are fixed, the queues fill and drain with the load. */
+    static final class Targets {
+        final UUID[] topics; // seeded nodes with children: read targets and parents for writes
+        final UUID[] leaves; // seeded leaves: moved between topics, which can never form a cycle
+        final String[] categories;
+        final Queue<UUID> created = new ConcurrentLinkedQueue<>();
+        final Queue<UUID> branches = new ConcurrentLinkedQueue<>();
+        final Queue<UUID> jobs = new ConcurrentLinkedQueue<>();
+
+        Targets(UUID[] topics, UUID[] leaves, String[] categories) {
+            this.topics = topics;
+            this.leaves = leaves;
+            this.categories = categories;
+        }
+    }
+
+    private static final JsonMapper JSON = JsonMapper.builder().build();
+
+    private final HttpClient http;
+    private final String base;
+    private final String admin; // the actuator on the management port
+    private final Workload workload;
+    private final Targets targets;
+    private final boolean conditional;
+    private final SplittableRandom rnd;
+    private final Map<String, String> etags = new HashMap<>();
+    private Long deltaToken;
+    private int sequence;
+
+    LoadClient(HttpClient http, String base, String admin, Workload workload, Targets targets, boolean conditional,
+               long seed) {
+        this.http = http;
+        this.base = base;
+        this.admin = admin;
+        this.workload = workload;
+        this.targets = targets;
+        this.conditional = conditional;
+        this.rnd = new SplittableRandom(seed);
+    }
+
+    /** Runs until the condition turns false; records into the recorder unless it is null (warm-up). */
+    void run(BooleanSupplier running, Recorder recorder) {
+        while (running.getAsBoolean()) {
+            Workload.Op op = workload.pick(rnd);
+            Call call = prepare(op);
+            if (call == null) {
+                continue; // nothing to act on yet
+            }
+            long start = System.nanoTime();
+            int status;
+            byte[] body = new byte[0];
+            try {
+                HttpResponse<byte[]> res = http.send(call.request, HttpResponse.BodyHandlers.ofByteArray());
+                status = res.statusCode();
+                body = res.body();
+                if (status < 400) {
+                    call.onSuccess(res);
+                }
+            } catch (IOException e) {
+                status = 0;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if (recorder != null) {
+                recorder.record(op, status, System.nanoTime() - start, body.length);
+            }
+        }
+    }
+
+    private record Call(HttpRequest request, ResponseHandler handler) {
+        void onSuccess(HttpResponse<byte[]> res) throws IOException {
+            if (handler != null) handler.accept(res);
+        }
+    }
+
+    private interface ResponseHandler {
+        void accept(HttpResponse<byte[]> res) throws IOException;
+    }
+
+    private Call prepare(Workload.Op op) {
+        return switch (op) {
+            case TREE -> poll("/tree");
+            case TREE_STREAM -> poll("/tree?stream=true");
+            case SUBTREE -> poll("/" + topic() + "/subtree?depth=" + rnd.nextInt(1, 4));
+            case SUBTREE_STREAM -> poll("/" + topic() + "/subtree?stream=true");
+            case NODE -> poll("/" + anyNode());
+            case LIST -> poll("?parentId=" + topic());
+            case CHILDREN -> poll("/children?limit=20&parentId=" + topic());
+            case BY_CATEGORY -> poll("/by-category?limit=20&category=" + pick(targets.categories));
+            case CATEGORIES -> poll(rnd.nextBoolean() ? "/categories" : "/categories?root=" + topic());
+            case DESCENDANT_COUNT -> get("/" + topic() + "/descendant-count", null);
+            case SEARCH -> get("/search?q=skill%20" + rnd.nextInt(1000), null);
+            case DELTA -> get("/delta" + ((deltaToken == null) ? "" : "?since=" + deltaToken),
+                    res -> deltaToken = json(res).get("token").asLong());
+            case DELETE_JOB -> deleteJob();
+            case CACHE_STATS -> new Call(HttpRequest.newBuilder(URI.create(admin + "/treecache")).build(), null);
+            case CREATE -> create();
+            case UPDATE -> update();
+            case MASTERY -> send("/" + anyNode() + "/mastery", "POST", mastery(), null);
+            case MOVE -> send("/" + pick(targets.leaves) + "/move", "PATCH", move(), null);
+            case BATCH -> batch();
+            case IMPORT -> importBranch();
+            case DELETE -> delete();
+            case DELETE_ASYNC -> deleteBranch();
+            case REBUILD -> new Call(HttpRequest.newBuilder(URI.create(admin + "/aggregates"))
+                    .POST(HttpRequest.BodyPublishers.noBody()).build(), null);
+        };
+    }
+
+    private Call poll(String path) {
+        if (!conditional) {
+            return get(path, null);
+        }
+        HttpRequest.Builder b = HttpRequest.newBuilder(URI.create(base + path));
+        String tag = etags.get(path);
+        if (tag != null) {
+            b.header("If-None-Match", tag);
+        }
+        return new Call(b.build(), res -> res.headers().firstValue("ETag").ifPresent(t -> etags.put(path, t)));
+    }
+
+    private Call get(String path, ResponseHandler handler) {
+        return new Call(HttpRequest.newBuilder(URI.create(base + path)).build(), handler);
+    }
+
+    private Call send(String path, String method, Object body, ResponseHandler handler) {
+        HttpRequest.BodyPublisher publisher = (body == null)
+                ? HttpRequest.BodyPublishers.noBody()
+                : HttpRequest.BodyPublishers.ofByteArray(JSON.writeValueAsBytes(body));
+        return new Call(HttpRequest.newBuilder(URI.create(base + path))
+                .header("Content-Type", "application/json")
+                .method(method, publisher)
+                .build(), handler);
+    }
+
+    private Call create() {
+        NodeCreateRequest req = new NodeCreateRequest();
+        req.title = "Load " + (++sequence);
+        req.category = pick(targets.categories);
+        req.mastery = rnd.nextInt(101);
+        req.parentId = topic();
+        return send("", "POST", req, res -> targets.created.add(UUID.fromString(json(res).get("id").asString())));
+    }
+
+    private Call update() {
+        NodeUpdateRequest req = new NodeUpdateRequest();
+        req.title = "Edited " + (++sequence);
+        req.description = "edited by the load test";
+        req.category = pick(targets.categories);
+        req.mastery = rnd.nextInt(101);
+        return send("/" + anyNode(), "PUT", req, null);
+    }
+
+    private MasteryIncrementRequest mastery() {
+        MasteryIncrementRequest req = new MasteryIncrementRequest();
+        req.delta = rnd.nextInt(-2, 6);
+        return req;
+    }
+
+    private NodeMoveRequest move() {
+        NodeMoveRequest req = new NodeMoveRequest();
+        req.newParentId = topic();
+        return req;
+    }
+
+    // two creates under a topic, an update of the first and a delete of the second
+    private Call batch() {
+        List<NodeBatchOperation> ops = new ArrayList<>();
+        UUID parent = topic();
+        for (String ref : new String[]{"a", "b"}) {
+            NodeBatchOperation create = new NodeBatchOperation();
+            create.op = "create";
+            create.ref = ref;
+            create.parentId = parent;
+            create.title = "Batch " + (++sequence);
+            create.mastery = rnd.nextInt(101);
+            ops.add(create);
+        }
+        NodeBatchOperation update = new NodeBatchOperation();
+        update.op = "update";
+        update.nodeRef = "a";
+        update.title = "Batch edited " + sequence;
+        update.mastery = rnd.nextInt(101);
+        ops.add(update);
+        NodeBatchOperation delete = new NodeBatchOperation();
+        delete.op = "delete";
+        delete.nodeRef = "b";
+        ops.add(delete);
+
+        NodeBatchRequest req = new NodeBatchRequest();
+        req.operations = ops;
+        return send("/batch", "POST", req,
+                res -> targets.created.add(UUID.fromString(json(res).get("ids").get("a").asString())));
+    }
+
+    // a 20-node branch under a topic, removed again later by DELETE_ASYNC
+    private Call importBranch() {
+        List<NodeImportItem> items = new ArrayList<>();
+        NodeImportItem root = new NodeImportItem();
+        root.ref = "root";
+        root.parentId = topic();
+        root.title = "Imported " + (++sequence);
+        root.category = pick(targets.categories);
+        root.mastery = rnd.nextInt(101);
+        items.add(root);
+        for (int i = 0; i < 19; i++) {
+            NodeImportItem item = new NodeImportItem();
+            item.parentRef = "root";
+            item.title = "Imported skill " + i;
+            item.category = pick(targets.categories);
+            item.mastery = rnd.nextInt(101);
+            items.add(item);
+        }
+        NodeImportRequest req = new NodeImportRequest();
+        req.nodes = items;
+        return send("/import", "POST", req,
+                res -> targets.branches.add(UUID.fromString(json(res).get("ids").get("root").asString())));
+    }
+
+    private Call delete() {
+        UUID id = targets.created.poll();
+        return (id == null) ? null : send("/" + id, "DELETE", null, null);
+    }
+
+    private Call deleteBranch() {
+        UUID id = targets.branches.poll();
+        return (id == null) ? null : send("/" + id + "?async=true", "DELETE", null,
+                res -> targets.jobs.add(UUID.fromString(json(res).get("id").asString())));
+    }
+
+    // polls a job until it is finished; unfinished ones go back in the queue
+    private Call deleteJob() {
+        UUID job = targets.jobs.poll();
+        return (job == null) ? null : get("/delete-jobs/" + job, res -> {
+            String status = json(res).get("status").asString();
+            if ("PENDING".equals(status) || "RUNNING".equals(status)) {
+                targets.jobs.add(job);
+            }
+        });
+    }
+
+    private UUID topic() {
+        return pick(targets.topics);
+    }
+
+    private UUID anyNode() {
+        return rnd.nextInt(4) == 0 ? topic() : pick(targets.leaves);
+    }
+
+    private <T> T pick(T[] values) {
+        return values[rnd.nextInt(values.length)];
+    }
+
+    private static JsonNode json(HttpResponse<byte[]> res) {
+        return JSON.readTree(res.body());
+    }
+}
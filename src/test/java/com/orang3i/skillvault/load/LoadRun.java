@@ -0,0 +1,246 @@
+package com.orang3i.skillvault.load;
+
+import com.orang3i.skillvault.SkillVaultApplication;
+import com.orang3i.skillvault.dto.NodeImportItem;
+import com.orang3i.skillvault.dto.NodeImportRequest;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import tools.jackson.databind.JsonNode;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.io.BufferedReader;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The HTTP load harness shared by the load test and the virtual thread benchmark: boots the whole app on a
+ * random port, imports a balanced tree, then runs closed-loop LoadClients over a Workload for a fixed time
+ * after a warm-up, with a few subscribers on the SSE change feed alongside. The result is one report:
+ * throughput, p50/p99/p99.9 latency and status counts per endpoint, plus the run's config.
+ */
+final class LoadRun {
+
+    private static final int CATEGORIES = 20;
+    private static final JsonMapper JSON = JsonMapper.builder().build();
+
+    record Config(int clients, int seconds, int warmupSeconds, int nodes, int fanout, int subscribers,
+                  boolean conditional, boolean virtualThreads, String datasourceUrl, Workload workload) {
+    }
+
+    private LoadRun() {
+    }
+
+    /** Runs the load against a fresh app and returns the report. */
+    static Map<String, Object> run(Config config) throws Exception {
+        try (ConfigurableApplicationContext ctx = new SpringApplicationBuilder(SkillVaultApplication.class)
+                .properties(
+                        "server.port=0",
+                        "management.server.port=0",
+                        "spring.threads.virtual.enabled=" + config.virtualThreads(),
+                        "spring.datasource.url=" + config.datasourceUrl(),
+                        "spring.jpa.hibernate.ddl-auto=create-drop",
+                        "skillvault.snapshot.enabled=false",
+                        "skillvault.mastery.journal-dir=target/mastery-journal/load-" + UUID.randomUUID(),
+                        "logging.level.root=WARN")
+                .run()) {
+            String base = "http://localhost:" + ctx.getEnvironment().getProperty("local.server.port") + "/api/nodes";
+            String admin = "http://localhost:" + ctx.getEnvironment().getProperty("local.management.port") + "/actuator";
+            HttpClient http = HttpClient.newBuilder()
+                    .executor(Executors.newVirtualThreadPerTaskExecutor())
+                    .connectTimeout(Duration.ofSeconds(10))
+                    .build();
+            LoadClient.Targets targets = seed(http, base, config.nodes(), config.fanout());
+
+            AtomicLong events = new AtomicLong();
+            AtomicLong feedErrors = new AtomicLong();
+            for (int i = 0; i < config.subscribers(); i++) {
+                // half follow the whole tree, half one topic
+                String url = base + "/changes" + ((i % 2 == 0) ? "" : "?root=" + targets.topics[i % targets.topics.length]);
+                Thread.ofVirtual().name("load-subscriber-" + i).start(() -> subscribe(http, url, events, feedErrors));
+            }
+
+            List<LoadClient> clients = new ArrayList<>();
+            for (int c = 0; c < config.clients(); c++) {
+                clients.add(new LoadClient(http, base, admin, config.workload(), targets, config.conditional(), 31L * c + 7));
+            }
+            runFor(clients, config.warmupSeconds(), null);
+            long eventsBefore = events.get();
+            List<Recorder> recorders = new ArrayList<>();
+            for (int c = 0; c < config.clients(); c++) {
+                recorders.add(new Recorder());
+            }
+            Instant started = Instant.now();
+            runFor(clients, config.seconds(), recorders);
+
+            Map<String, Object> settings = new LinkedHashMap<>();
+            settings.put("clients", config.clients());
+            settings.put("seconds", config.seconds());
+            settings.put("warmupSeconds", config.warmupSeconds());
+            settings.put("nodes", config.nodes());
+            settings.put("fanout", config.fanout());
+            settings.put("subscribers", config.subscribers());
+            settings.put("conditionalGets", config.conditional());
+            settings.put("virtualThreads", config.virtualThreads());
+            settings.put("datasourceUrl", config.datasourceUrl());
+            settings.put("mixPercent", config.workload().shares());
+
+            Map<String, Object> report = new LinkedHashMap<>();
+            report.put("startedAt", started.toString());
+            report.put("java", System.getProperty("java.version"));
+            report.put("config", settings);
+            report.put("total", Recorder.total(recorders, config.seconds()));
+            report.put("endpoints", Recorder.summarize(recorders, config.seconds()));
+            report.put("changeFeed", Map.of("subscribers", config.subscribers(),
+                    "events", events.get() - eventsBefore, "errors", feedErrors.get()));
+            return report;
+        }
+    }
+
+    static void write(Map<String, Object> report, Path file) throws Exception {
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        JSON.writerWithDefaultPrettyPrinter().writeValue(file.toFile(), report);
+    }
+
+    static JsonNode read(Path file) {
+        return JSON.readTree(file.toFile());
+    }
+
+    static JsonNode toJson(Map<String, Object> report) {
+        return JSON.valueToTree(report);
+    }
+
+    static void print(Map<String, Object> report, Path file) {
+        System.out.printf("%n%-18s %9s %9s %8s %8s %8s %8s %7s%n",
+                "endpoint", "requests", "req/s", "p50 ms", "p99 ms", "p999 ms", "max ms", "errors");
+        @SuppressWarnings("unchecked")
+        Map<String, Recorder.EndpointReport> endpoints = (Map<String, Recorder.EndpointReport>) report.get("endpoints");
+        endpoints.forEach(LoadRun::printRow);
+        printRow("total", (Recorder.EndpointReport) report.get("total"));
+        System.out.println("change feed: " + report.get("changeFeed"));
+        System.out.println("report: " + file.toAbsolutePath());
+    }
+
+    // throughput and p99 of this run relative to the baseline report, per endpoint present in both
+    static void compare(String baselineName, JsonNode baseline, JsonNode current) {
+        System.out.printf("%nagainst %s%n%-18s %12s %12s %14s%n", baselineName, "endpoint", "req/s", "p99", "error rate");
+        JsonNode before = baseline.get("endpoints");
+        for (Map.Entry<String, JsonNode> e : current.get("endpoints").properties()) {
+            JsonNode old = before.get(e.getKey());
+            if (old != null) {
+                printDelta(e.getKey(), old, e.getValue());
+            }
+        }
+        printDelta("total", baseline.get("total"), current.get("total"));
+    }
+
+    private static void runFor(List<LoadClient> clients, int seconds, List<Recorder> recorders) throws Exception {
+        long deadline = System.nanoTime() + Duration.ofSeconds(seconds).toNanos();
+        List<Future<?>> running = new ArrayList<>();
+        try (ExecutorService pool = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int c = 0; c < clients.size(); c++) {
+                LoadClient client = clients.get(c);
+                Recorder recorder = (recorders == null) ? null : recorders.get(c);
+                running.add(pool.submit(() -> client.run(() -> System.nanoTime() < deadline, recorder)));
+            }
+            for (Future<?> f : running) {
+                f.get(); // a client that died on an unexpected response fails the run
+            }
+        }
+    }
+
+    // one request importing a balanced tree: n0 is the root, node i hangs under (i - 1) / fanout
+    private static LoadClient.Targets seed(HttpClient http, String base, int size, int fanout) throws Exception {
+        List<NodeImportItem> items = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            NodeImportItem item = new NodeImportItem();
+            item.ref = "n" + i;
+            item.parentRef = (i == 0) ? null : "n" + (i - 1) / fanout;
+            item.title = "Skill " + i;
+            item.description = "Seeded node " + i;
+            item.category = "cat-" + (i % CATEGORIES);
+            item.mastery = (int) ((i * 2654435761L) % 101);
+            items.add(item);
+        }
+        NodeImportRequest req = new NodeImportRequest();
+        req.nodes = items;
+        HttpResponse<byte[]> res = http.send(HttpRequest.newBuilder(URI.create(base + "/import"))
+                        .header("Content-Type", "application/json")
+                        .POST(HttpRequest.BodyPublishers.ofByteArray(JSON.writeValueAsBytes(req)))
+                        .build(),
+                HttpResponse.BodyHandlers.ofByteArray());
+        if (res.statusCode() != 200) {
+            throw new IllegalStateException("Seeding failed with " + res.statusCode() + ": " + new String(res.body()));
+        }
+        JsonNode ids = JSON.readTree(res.body()).get("ids");
+
+        List<UUID> topics = new ArrayList<>();
+        List<UUID> leaves = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            UUID id = UUID.fromString(ids.get("n" + i).asString());
+            // node i has children if its first child index, i * fanout + 1, exists
+            ((long) i * fanout + 1 < size ? topics : leaves).add(id);
+        }
+        String[] categories = new String[CATEGORIES];
+        for (int i = 0; i < CATEGORIES; i++) {
+            categories[i] = "cat-" + i;
+        }
+        return new LoadClient.Targets(topics.toArray(UUID[]::new), leaves.toArray(UUID[]::new), categories);
+    }
+
+    // counts "data:" lines until the stream ends, which it does when the context shuts down
+    private static void subscribe(HttpClient http, String url, AtomicLong events, AtomicLong errors) {
+        try {
+            HttpResponse<InputStream> res = http.send(HttpRequest.newBuilder(URI.create(url)).build(),
+                    HttpResponse.BodyHandlers.ofInputStream());
+            if (res.statusCode() != 200) {
+                errors.incrementAndGet();
+                return;
+            }
+            try (BufferedReader lines = new BufferedReader(new InputStreamReader(res.body(), StandardCharsets.UTF_8))) {
+                for (String line; (line = lines.readLine()) != null; ) {
+                    if (line.startsWith("data:")) {
+                        events.incrementAndGet();
+                    }
+                }
+            }
+        } catch (Exception e) {
+            // the server going away at the end of the run ends the stream this way too
+        }
+    }
+
+    private static void printRow(String name, Recorder.EndpointReport r) {
+        System.out.printf(Locale.ROOT, "%-18s %9d %9.1f %8.2f %8.2f %8.2f %8.2f %7d%n",
+                name, r.requests(), r.throughput(), r.p50Millis(), r.p99Millis(), r.p999Millis(), r.maxMillis(),
+                r.errors());
+    }
+
+    private static void printDelta(String name, JsonNode old, JsonNode now) {
+        System.out.printf(Locale.ROOT, "%-18s %+11.1f%% %+11.1f%% %6.4f -> %.4f%n", name,
+                change(old.get("throughput").asDouble(), now.get("throughput").asDouble()),
+                change(old.get("p99Millis").asDouble(), now.get("p99Millis").asDouble()),
+                old.get("errorRate").asDouble(), now.get("errorRate").asDouble());
+    }
+
+    private static double change(double before, double after) {
+        return (before == 0) ? 0 : (after - before) / before * 100;
+    }
+}
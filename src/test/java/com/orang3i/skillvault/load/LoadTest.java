@@ -0,0 +1,52 @@
+package com.orang3i.skillvault.load;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Path;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * End-to-end load test: one LoadRun with an embedded H2 database over the default Workload mix.
+ * The report goes to target/load-test-report.json by default; pass an earlier report as -Dload.baseline
+ * to print the change per endpoint.
+ * <p>
+ * Run with {@code mvn test -Pbenchmark -Dtest=LoadTest}; tune with -Dload.clients, -Dload.seconds,
+ * -Dload.warmupSeconds, -Dload.nodes, -Dload.fanout, -Dload.subscribers, -Dload.mix,
+ * -Dload.writePercent, -Dload.conditional (If-None-Match on polls), -Dload.virtualThreads,
+ * -Dload.datasourceUrl (e.g. a file database) and -Dload.report.
+ */
+@Tag("benchmark")
+class LoadTest {
+
+    private static final Path REPORT = Path.of(System.getProperty("load.report", "target/load-test-report.json"));
+    private static final String BASELINE = System.getProperty("load.baseline");
+
+    @Test
+    void mixedWorkload() throws Exception {
+        String writePercent = System.getProperty("load.writePercent");
+        Workload workload = Workload.of(System.getProperty("load.mix"),
+                (writePercent == null) ? null : Integer.valueOf(writePercent));
+        LoadRun.Config config = new LoadRun.Config(
+                Integer.getInteger("load.clients", 32),
+                Integer.getInteger("load.seconds", 30),
+                Integer.getInteger("load.warmupSeconds", 5),
+                Integer.getInteger("load.nodes", 5000),
+                Integer.getInteger("load.fanout", 10),
+                Integer.getInteger("load.subscribers", 4),
+                Boolean.parseBoolean(System.getProperty("load.conditional", "true")),
+                Boolean.getBoolean("load.virtualThreads"),
+                System.getProperty("load.datasourceUrl", "jdbc:h2:mem:load;DB_CLOSE_DELAY=-1"),
+                workload);
+
+        Map<String, Object> report = LoadRun.run(config);
+        LoadRun.write(report, REPORT);
+        LoadRun.print(report, REPORT);
+        if (BASELINE != null) {
+            LoadRun.compare(BASELINE, LoadRun.read(Path.of(BASELINE)), LoadRun.toJson(report));
+        }
+        assertTrue(((Recorder.EndpointReport) report.get("total")).requests() > 0, "no requests completed");
+    }
+}
@@ -0,0 +1,95 @@
+package com.orang3i.skillvault.load;
+
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Latencies and status codes of one client, per operation. Each client thread owns its recorder,
+ * so recording never contends; the recorders are merged once the run is over.
+ * Status 0 stands for a request that failed without a response (connect error, timeout).
+ */
+final class Recorder {
+
+    private final Map<Workload.Op, Samples> samples = new EnumMap<>(Workload.Op.class);
+
+    void record(Workload.Op op, int status, long nanos, long bytes) {
+        samples.computeIfAbsent(op, k -> new Samples()).add(status, nanos, bytes);
+    }
+
+    /** Per-endpoint figures over all recorders, in the order of Workload.Op. */
+    static Map<String, EndpointReport> summarize(List<Recorder> recorders, double seconds) {
+        Map<String, EndpointReport> out = new LinkedHashMap<>();
+        for (Workload.Op op : Workload.Op.values()) {
+            Samples all = new Samples();
+            for (Recorder r : recorders) {
+                Samples s = r.samples.get(op);
+                if (s != null) all.addAll(s);
+            }
+            if (all.count > 0) {
+                out.put(op.key(), all.report(op, seconds));
+            }
+        }
+        return out;
+    }
+
+    /** Totals over every endpoint. */
+    static EndpointReport total(List<Recorder> recorders, double seconds) {
+        Samples all = new Samples();
+        for (Recorder r : recorders) {
+            for (Samples s : r.samples.values()) all.addAll(s);
+        }
+        return all.report(null, seconds);
+    }
+
+    record EndpointReport(String endpoint, long requests, long errors, double errorRate, double throughput,
+                          double p50Millis, double p99Millis, double p999Millis, double maxMillis,
+                          long bytes, Map<Integer, Long> statuses) {
+    }
+
+    private static final class Samples {
+        long[] nanos = new long[256];
+        int count;
+        long bytes;
+        final Map<Integer, Long> statuses = new TreeMap<>();
+
+        void add(int status, long latency, long size) {
+            if (count == nanos.length) nanos = Arrays.copyOf(nanos, count * 2);
+            nanos[count++] = latency;
+            bytes += size;
+            statuses.merge(status, 1L, Long::sum);
+        }
+
+        void addAll(Samples other) {
+            if (count + other.count > nanos.length) nanos = Arrays.copyOf(nanos, count + other.count);
+            System.arraycopy(other.nanos, 0, nanos, count, other.count);
+            count += other.count;
+            bytes += other.bytes;
+            other.statuses.forEach((k, v) -> statuses.merge(k, v, Long::sum));
+        }
+
+        EndpointReport report(Workload.Op op, double seconds) {
+            long[] sorted = Arrays.copyOf(nanos, count);
+            Arrays.sort(sorted);
+            long errors = statuses.entrySet().stream()
+                    .filter(e -> e.getKey() == 0 || e.getKey() >= 400)
+                    .mapToLong(Map.Entry::getValue).sum();
+            return new EndpointReport((op == null) ? "all" : op.endpoint, count, errors,
+                    round((double) errors / count, 4), round(count / seconds, 1),
+                    percentile(sorted, 0.50), percentile(sorted, 0.99), percentile(sorted, 0.999),
+                    round(sorted[count - 1] / 1e6, 2), bytes, statuses);
+        }
+    }
+
+    private static double percentile(long[] sorted, double p) {
+        return round(sorted[Math.min(sorted.length - 1, (int) (sorted.length * p))] / 1e6, 2);
+    }
+
+    private static double round(double value, int digits) {
+        double scale = Math.pow(10, digits);
+        return Math.round(value * scale) / scale;
+    }
+}
@@ -0,0 +1,47 @@
+package com.orang3i.skillvault.load;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Path;
+import java.util.Map;
+
+/**
+ * Throughput and latency of a polling-heavy workload with virtual threads off and on: one LoadRun per mode,
+ * each with its own in-memory database and many clients, mostly on /tree, some child listings and the odd
+ * import. The reports, in the load test's format, go to target/virtual-thread-benchmark-platform.json and
+ * -virtual.json, and the virtual run is printed against the platform one.
+ * <p>
+ * Run with {@code mvn test -Pbenchmark -Dtest=VirtualThreadBenchmark}; tune with
+ * -Dbench.clients, -Dbench.seconds, -Dbench.nodes and -Dbench.mix (see Workload).
+ */
+@Tag("benchmark")
+class VirtualThreadBenchmark {
+
+    private static final int CLIENTS = Integer.getInteger("bench.clients", 400);
+    private static final int SECONDS = Integer.getInteger("bench.seconds", 15);
+    private static final int NODES = Integer.getInteger("bench.nodes", 2000);
+    private static final String MIX = System.getProperty("bench.mix", "tree=80,list=18,import=2");
+
+    @Test
+    void compareModes() throws Exception {
+        Path platform = report("platform");
+        Path virtual = report("virtual");
+        run(false, platform);
+        Map<String, Object> report = run(true, virtual);
+        LoadRun.compare(platform.toString(), LoadRun.read(platform), LoadRun.toJson(report));
+    }
+
+    private static Map<String, Object> run(boolean virtualThreads, Path file) throws Exception {
+        LoadRun.Config config = new LoadRun.Config(CLIENTS, SECONDS, 3, NODES, 10, 0, false, virtualThreads,
+                "jdbc:h2:mem:bench-" + virtualThreads + ";DB_CLOSE_DELAY=-1", Workload.only(MIX));
+        Map<String, Object> report = LoadRun.run(config);
+        LoadRun.write(report, file);
+        LoadRun.print(report, file);
+        return report;
+    }
+
+    private static Path report(String mode) {
+        return Path.of("target", "virtual-thread-benchmark-" + mode + ".json");
+    }
+}
@@ -0,0 +1,144 @@
+package com.orang3i.skillvault.load;
+
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.random.RandomGenerator;
+
+/**
+ * The operation mix: one weighted entry per NodeController endpoint except the SSE feed, which the
+ * load test keeps open on separate subscriber threads, plus the two actuator endpoints of the admin port. The default weights model many pollers on
+ * /tree, editors updating and moving nodes, and the occasional import or bulk delete.
+ * <p>
+ * -Dload.mix=tree=100,move=0 overrides single weights (names are the lower-case op names, with
+ * dashes for underscores). -Dload.writePercent=N then rescales the write weights so writes make up
+ * N percent of the requests, keeping the relative weights within reads and within writes.
+ */
+final class Workload {
+
+    enum Op {
+        TREE("GET /tree", false, 254),
+        TREE_STREAM("GET /tree?stream=true", false, 40),
+        SUBTREE("GET /{id}/subtree", false, 80),
+        SUBTREE_STREAM("GET /{id}/subtree?stream=true", false, 20),
+        NODE("GET /{id}", false, 90),
+        LIST("GET ?parentId=", false, 50),
+        CHILDREN("GET /children", false, 60),
+        BY_CATEGORY("GET /by-category", false, 30),
+        CATEGORIES("GET /categories", false, 30),
+        DESCENDANT_COUNT("GET /{id}/descendant-count", false, 20),
+        SEARCH("GET /search", false, 60),
+        DELTA("GET /delta", false, 50),
+        DELETE_JOB("GET /delete-jobs/{jobId}", false, 10),
+        CACHE_STATS("GET /actuator/treecache", false, 5),
+        CREATE("POST", true, 50),
+        UPDATE("PUT /{id}", true, 60),
+        MASTERY("POST /{id}/mastery", true, 60),
+        MOVE("PATCH /{id}/move", true, 40),
+        BATCH("POST /batch", true, 15),
+        IMPORT("POST /import", true, 5),
+        DELETE("DELETE /{id}", true, 25),
+        DELETE_ASYNC("DELETE /{id}?async=true", true, 5),
+        REBUILD("POST /actuator/aggregates", true, 1);
+
+        final String endpoint;
+        final boolean write;
+        final int defaultWeight;
+
+        Op(String endpoint, boolean write, int defaultWeight) {
+            this.endpoint = endpoint;
+            this.write = write;
+            this.defaultWeight = defaultWeight;
+        }
+
+        String key() {
+            return name().toLowerCase(Locale.ROOT).replace('_', '-');
+        }
+    }
+
+    private final Map<Op, Double> weights;
+    private final Op[] ops;
+    private final double[] cumulative;
+
+    private Workload(Map<Op, Double> weights) {
+        this.weights = weights;
+        this.ops = weights.keySet().stream().filter(op -> weights.get(op) > 0).toArray(Op[]::new);
+        this.cumulative = new double[ops.length];
+        double sum = 0;
+        for (int i = 0; i < ops.length; i++) {
+            sum += weights.get(ops[i]);
+            cumulative[i] = sum;
+        }
+        if (ops.length == 0) {
+            throw new IllegalArgumentException("load.mix leaves no operation with a positive weight");
+        }
+    }
+
+    /** Just the operations the mix names, with the weights it gives them. */
+    static Workload only(String mix) {
+        Map<Op, Double> weights = new EnumMap<>(Op.class);
+        for (Op op : Op.values()) {
+            weights.put(op, 0.0);
+        }
+        override(weights, mix);
+        return new Workload(weights);
+    }
+
+    static Workload of(String mix, Integer writePercent) {
+        Map<Op, Double> weights = new EnumMap<>(Op.class);
+        for (Op op : Op.values()) {
+            weights.put(op, (double) op.defaultWeight);
+        }
+        override(weights, mix);
+        if (writePercent != null) {
+            if (writePercent < 0 || writePercent > 100) {
+                throw new IllegalArgumentException("load.writePercent must be between 0 and 100");
+            }
+            double reads = 0;
+            double writes = 0;
+            for (Map.Entry<Op, Double> e : weights.entrySet()) {
+                if (e.getKey().write) writes += e.getValue();
+                else reads += e.getValue();
+            }
+            // scale writes to writePercent of the total, with the read total held fixed
+            double target = (writePercent == 100) ? 1 : reads * writePercent / (100.0 - writePercent);
+            double factor = (writes == 0) ? 0 : target / writes;
+            for (Map.Entry<Op, Double> e : weights.entrySet()) {
+                if (e.getKey().write) e.setValue(e.getValue() * factor);
+                else if (writePercent == 100) e.setValue(0.0);
+            }
+        }
+        return new Workload(weights);
+    }
+
+    private static void override(Map<Op, Double> weights, String mix) {
+        if (mix != null && !mix.isBlank()) {
+            for (String entry : mix.split(",")) {
+                String[] kv = entry.trim().split("=");
+                Op op = Op.valueOf(kv[0].trim().toUpperCase(Locale.ROOT).replace('-', '_'));
+                weights.put(op, Double.parseDouble(kv[1].trim()));
+            }
+        }
+    }
+
+    Op pick(RandomGenerator rnd) {
+        double x = rnd.nextDouble() * cumulative[cumulative.length - 1];
+        for (int i = 0; i < cumulative.length; i++) {
+            if (x < cumulative[i]) {
+                return ops[i];
+            }
+        }
+        return ops[ops.length - 1];
+    }
+
+    /** Share of each operation in the mix, in percent. */
+    Map<String, Double> shares() {
+        double total = cumulative[cumulative.length - 1];
+        Map<String, Double> out = new LinkedHashMap<>();
+        for (Op op : ops) {
+            out.put(op.key(), Math.round(weights.get(op) / total * 10000) / 100.0);
+        }
+        return out;
+    }
+}